@@ -0,0 +1,96 @@
+package org.drools.completion;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+/**
+ * Token source ending the stream right after the first token reaching the caret, i.e. the last token that
+ * {@link org.drools.parser.DRLParserHelper#computeTokenIndex} needs to locate the caret. This way completion only
+ * lexes the text preceding the caret, no matter how long the rest of the document is.
+ */
+public class CaretTruncatingTokenSource implements TokenSource {
+
+    private final TokenSource delegate;
+    private final int row;
+    private final int col;
+    private final CancelChecker cancelChecker;
+
+    private Token eof;
+
+    /**
+     * @param row 1-based line of the caret, as ANTLR tokens' lines
+     * @param col 0-based column of the caret
+     */
+    public CaretTruncatingTokenSource(TokenSource delegate, int row, int col) {
+        this(delegate, row, col, () -> { });
+    }
+
+    /**
+     * @param cancelChecker checked before lexing each token, so that a cancelled request stops lexing
+     */
+    public CaretTruncatingTokenSource(TokenSource delegate, int row, int col, CancelChecker cancelChecker) {
+        this.delegate = delegate;
+        this.row = row;
+        this.col = col;
+        this.cancelChecker = cancelChecker;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (eof != null) {
+            return eof;
+        }
+        cancelChecker.checkCanceled();
+        Token token = delegate.nextToken();
+        if (token.getType() == Token.EOF) {
+            eof = token;
+        } else if (reachesCaret(token)) {
+            eof = createEof(token);
+        }
+        return token;
+    }
+
+    private boolean reachesCaret(Token token) {
+        return token.getLine() > row || (token.getLine() == row && token.getCharPositionInLine() + token.getText().length() >= col);
+    }
+
+    private Token createEof(Token last) {
+        int stop = last.getStopIndex();
+        Pair<TokenSource, CharStream> source = new Pair<>(this, delegate.getInputStream());
+        return getTokenFactory().create(source, Token.EOF, null, Token.DEFAULT_CHANNEL, stop + 1, stop, last.getLine(), last.getCharPositionInLine());
+    }
+
+    @Override
+    public int getLine() {
+        return delegate.getLine();
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return delegate.getCharPositionInLine();
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return delegate.getInputStream();
+    }
+
+    @Override
+    public String getSourceName() {
+        return delegate.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory<?> factory) {
+        delegate.setTokenFactory(factory);
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return delegate.getTokenFactory();
+    }
+}
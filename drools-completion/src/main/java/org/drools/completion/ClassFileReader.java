@@ -0,0 +1,214 @@
+package org.drools.completion;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the name, superclass, public fields and getters of a class straight from its class file bytes, so that
+ * indexing a classpath never loads, links or initializes any of its classes.
+ */
+class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_MODULE = 0x8000;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private ClassFileReader() {
+    }
+
+    /**
+     * @return the type described by the class file, or null if it is not a public, named class
+     */
+    static TypeInfo read(byte[] classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int constantPoolCount = in.readUnsignedShort();
+        String[] utf8s = new String[constantPoolCount];
+        int[] classNameIndexes = new int[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8s[i] = in.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classNameIndexes[i] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    in.skipBytes(2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    in.skipBytes(3);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    in.skipBytes(4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    in.skipBytes(8);
+                    i++; // 8 bytes constants take two entries
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        int access = in.readUnsignedShort();
+        String internalName = utf8s[classNameIndexes[in.readUnsignedShort()]];
+        int superIndex = in.readUnsignedShort();
+        String superName = superIndex == 0 ? null : toQualifiedName(utf8s[classNameIndexes[superIndex]]);
+        if ((access & ACC_PUBLIC) == 0 || (access & (ACC_SYNTHETIC | ACC_MODULE)) != 0 || !isNamed(internalName)) {
+            return null;
+        }
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            int fieldAccess = in.readUnsignedShort();
+            String name = utf8s[in.readUnsignedShort()];
+            String descriptor = utf8s[in.readUnsignedShort()];
+            skipAttributes(in);
+            if (isPublicInstanceMember(fieldAccess)) {
+                fields.put(name, typeName(descriptor, 0));
+            }
+        }
+
+        int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            int methodAccess = in.readUnsignedShort();
+            String name = utf8s[in.readUnsignedShort()];
+            String descriptor = utf8s[in.readUnsignedShort()];
+            skipAttributes(in);
+            if (isPublicInstanceMember(methodAccess)) {
+                String property = getterProperty(name, descriptor);
+                if (property != null) {
+                    fields.putIfAbsent(property, typeName(descriptor, 2));
+                }
+            }
+        }
+
+        return new TypeInfo(toQualifiedName(internalName), superName, fields);
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            in.skipBytes(2);
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    private static boolean isPublicInstanceMember(int access) {
+        return (access & ACC_PUBLIC) != 0 && (access & (ACC_STATIC | ACC_SYNTHETIC)) == 0;
+    }
+
+    /**
+     * Excludes package-info, module-info and anonymous or local classes
+     */
+    private static boolean isNamed(String internalName) {
+        if (internalName.endsWith("package-info") || internalName.endsWith("module-info")) {
+            return false;
+        }
+        int dollar = internalName.indexOf('$');
+        while (dollar >= 0) {
+            if (dollar + 1 < internalName.length() && Character.isDigit(internalName.charAt(dollar + 1))) {
+                return false;
+            }
+            dollar = internalName.indexOf('$', dollar + 1);
+        }
+        return true;
+    }
+
+    private static String getterProperty(String name, String descriptor) {
+        if (!descriptor.startsWith("()") || descriptor.endsWith(")V") || name.equals("getClass")) {
+            return null;
+        }
+        if (name.startsWith("get") && name.length() > 3) {
+            return decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && descriptor.endsWith(")Z")) {
+            return decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    /**
+     * Same rule as java.beans.Introspector.decapitalize, without depending on the java.desktop module
+     */
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * @param descriptor a field descriptor, or a getter descriptor with start pointing after its "()"
+     */
+    static String typeName(String descriptor, int start) {
+        int dimensions = 0;
+        while (descriptor.charAt(start + dimensions) == '[') {
+            dimensions++;
+        }
+        int index = start + dimensions;
+        String name;
+        switch (descriptor.charAt(index)) {
+            case 'Z': name = "boolean"; break;
+            case 'B': name = "byte"; break;
+            case 'C': name = "char"; break;
+            case 'S': name = "short"; break;
+            case 'I': name = "int"; break;
+            case 'J': name = "long"; break;
+            case 'F': name = "float"; break;
+            case 'D': name = "double"; break;
+            default:
+                String qualifiedName = toQualifiedName(descriptor.substring(index + 1, descriptor.indexOf(';', index)));
+                name = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+        }
+        return name + "[]".repeat(dimensions);
+    }
+
+    static String toQualifiedName(String internalName) {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+}
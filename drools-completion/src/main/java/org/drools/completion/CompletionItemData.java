@@ -0,0 +1,52 @@
+package org.drools.completion;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * What {@link CompletionResolver} needs to fill the details of a completion item, carried as its data. After a round
+ * trip to the client the data comes back as JSON, see {@link #of(Object)}.
+ */
+public class CompletionItemData {
+
+    private final String type;
+    private final String owner;
+
+    public CompletionItemData(String type, String owner) {
+        this.type = type;
+        this.owner = owner;
+    }
+
+    /**
+     * @return the data of an item as received back from the client or as set on the server, null if there is none
+     */
+    public static CompletionItemData of(Object data) {
+        if (data instanceof CompletionItemData) {
+            return (CompletionItemData) data;
+        }
+        if (data instanceof JsonObject) {
+            JsonObject json = (JsonObject) data;
+            return new CompletionItemData(getString(json, "type"), getString(json, "owner"));
+        }
+        return null;
+    }
+
+    private static String getString(JsonObject json, String member) {
+        JsonElement element = json.get(member);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    /**
+     * The qualified name of a fact type, the type of a field or symbol, the return type of a function
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * The qualified name of the fact type a field belongs to
+     */
+    public String getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,59 @@
+package org.drools.completion;
+
+import java.util.Map;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.MarkupContent;
+import org.eclipse.lsp4j.MarkupKind;
+
+/**
+ * Fills detail and documentation of a completion item once the client focuses it, so that completion lists only
+ * carry labels, kinds and ranks.
+ */
+public class CompletionResolver {
+
+    private CompletionResolver() {
+    }
+
+    /**
+     * @return the item itself, with its detail and documentation set when they are known
+     */
+    public static CompletionItem resolve(CompletionItem item, TypeIndex typeIndex) {
+        if (item.getKind() == CompletionItemKind.Keyword) {
+            item.setDetail("keyword");
+            return item;
+        }
+        CompletionItemData data = CompletionItemData.of(item.getData());
+        if (data == null || data.getType() == null) {
+            return item;
+        }
+        item.setDetail(data.getType());
+        if (item.getKind() == CompletionItemKind.Class) {
+            TypeInfo type = typeIndex.get(data.getType());
+            if (type != null) {
+                item.setDocumentation(markdown(typeDocumentation(type, typeIndex)));
+            }
+        } else if (item.getKind() == CompletionItemKind.Field && data.getOwner() != null) {
+            item.setDocumentation(markdown("`" + data.getType() + " " + item.getLabel() + "` of `" + data.getOwner() + "`"));
+        }
+        return item;
+    }
+
+    private static String typeDocumentation(TypeInfo type, TypeIndex typeIndex) {
+        StringBuilder documentation = new StringBuilder("`").append(type.getQualifiedName()).append('`');
+        if (type.getSuperName() != null && !type.getSuperName().equals("java.lang.Object")) {
+            documentation.append(" extends `").append(type.getSuperName()).append('`');
+        }
+        Map<String, String> fields = typeIndex.getFields(type);
+        if (!fields.isEmpty()) {
+            documentation.append("\n\n");
+            fields.forEach((name, fieldType) -> documentation.append("- `").append(fieldType).append(' ').append(name).append("`\n"));
+        }
+        return documentation.toString();
+    }
+
+    private static MarkupContent markdown(String value) {
+        return new MarkupContent(MarkupKind.MARKDOWN, value);
+    }
+}
@@ -0,0 +1,241 @@
+package org.drools.completion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.CompletionList;
+
+/**
+ * Immutable prefix trie of completion candidates, ranking them against the word being typed with a fuzzy subsequence
+ * match. Candidates sharing a prefix share the matching work, and subtrees too shallow to match the rest of the word
+ * are skipped. A trie is built once per set of candidates and can be shared by any number of threads, and tries can
+ * be combined without copying them with {@link #union}, so that a trie of candidates common to many requests, like
+ * the keywords, is built once.
+ * <p>
+ * The candidates are templates: they are never modified, the ranked items handed out are copies carrying only label,
+ * kind, rank as sortText and the data to {@link CompletionResolver resolve} them later.
+ */
+public class CompletionTrie {
+
+    public static final CompletionTrie EMPTY = new CompletionTrie(new Node[0], 0);
+
+    static final int MAX_RESULTS = 200;
+
+    private static final String[] SORT_TEXTS = new String[MAX_RESULTS];
+
+    static {
+        for (int i = 0; i < MAX_RESULTS; i++) {
+            SORT_TEXTS[i] = String.format("%04d", i);
+        }
+    }
+
+    private static final int MATCH_SCORE = 1;
+    private static final int CONSECUTIVE_BONUS = 4;
+    private static final int START_BONUS = 8;
+    private static final int WORD_START_BONUS = 3;
+    private static final int SAME_CASE_BONUS = 1;
+
+    /**
+     * Best score first, then symbols before fields, types and keywords, then shortest label
+     */
+    private static final Comparator<Match> BEST_FIRST = Comparator.comparingInt((Match match) -> -match.score)
+            .thenComparingInt(match -> kindOrder(match.candidate.getKind()))
+            .thenComparingInt(match -> match.candidate.getLabel().length())
+            .thenComparing(match -> match.candidate.getLabel());
+
+    private final Node[] roots;
+    private final int size;
+
+    private CompletionTrie(Node[] roots, int size) {
+        this.roots = roots;
+        this.size = size;
+    }
+
+    public static CompletionTrie of(Collection<CompletionItem> candidates) {
+        Builder root = new Builder();
+        for (CompletionItem candidate : candidates) {
+            Builder node = root;
+            String label = candidate.getLabel();
+            for (int i = 0; i < label.length(); i++) {
+                node = node.children.computeIfAbsent(label.charAt(i), c -> new Builder());
+            }
+            node.items.add(candidate);
+        }
+        return new CompletionTrie(new Node[]{root.build()}, candidates.size());
+    }
+
+    /**
+     * @return a trie ranking the candidates of all the given tries together, sharing their nodes
+     */
+    public static CompletionTrie union(CompletionTrie... tries) {
+        List<Node> roots = new ArrayList<>();
+        int size = 0;
+        for (CompletionTrie trie : tries) {
+            Collections.addAll(roots, trie.roots);
+            size += trie.size;
+        }
+        return new CompletionTrie(roots.toArray(new Node[0]), size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param word the word being typed, possibly empty
+     * @return copies of the candidates matching the word, best first, with their rank as sortText. Candidates
+     * match when the characters of the word appear in their label in the same order, ignoring case, the first one
+     * starting the label or one of its words.
+     */
+    public List<CompletionItem> rank(String word) {
+        return complete(word).getItems();
+    }
+
+    /**
+     * @return the {@link #rank ranked} candidates, at most {@value #MAX_RESULTS}, incomplete if more matched: clients
+     * then ask again as the word grows, instead of filtering the ones they have
+     */
+    public CompletionList complete(String word) {
+        List<Match> matches = new ArrayList<>();
+        for (Node root : roots) {
+            collect(root, word, 0, 0, 0, (char) 0, false, matches);
+        }
+        matches.sort(BEST_FIRST);
+
+        int resultCount = Math.min(matches.size(), MAX_RESULTS);
+        List<CompletionItem> completionItems = new ArrayList<>(resultCount);
+        for (int i = 0; i < resultCount; i++) {
+            completionItems.add(copy(matches.get(i).candidate, SORT_TEXTS[i]));
+        }
+        return new CompletionList(matches.size() > MAX_RESULTS, completionItems);
+    }
+
+    /**
+     * Depth first walk carrying the greedy left-most match of the word along the path
+     *
+     * @param depth length of the label prefix leading to the node
+     * @param matched number of characters of the word matched so far
+     * @param previous last character of the label prefix
+     * @param previousMatched true if the previous character matched a character of the word
+     */
+    private static void collect(Node node, String word, int depth, int matched, int score, char previous, boolean previousMatched, List<Match> matches) {
+        if (matched == word.length()) {
+            node.addAll(score, matches);
+            return;
+        }
+        if (node.height < word.length() - matched) {
+            return; // no label below is long enough
+        }
+        for (int i = 0; i < node.keys.length; i++) {
+            char c = node.keys[i];
+            char expected = word.charAt(matched);
+            boolean wordStart = depth == 0 || isWordStart(previous, c);
+            if (Character.toLowerCase(c) == Character.toLowerCase(expected) && (matched > 0 || wordStart)) {
+                int charScore = MATCH_SCORE
+                        + (depth == 0 ? START_BONUS : wordStart ? WORD_START_BONUS : 0)
+                        + (previousMatched ? CONSECUTIVE_BONUS : 0)
+                        + (c == expected ? SAME_CASE_BONUS : 0);
+                collect(node.children[i], word, depth + 1, matched + 1, score + charScore, c, true, matches);
+            } else {
+                collect(node.children[i], word, depth + 1, matched, score, c, false, matches);
+            }
+        }
+    }
+
+    private static boolean isWordStart(char previous, char c) {
+        return previous == '-' || previous == '_' || previous == '.' || previous == '$'
+                || (Character.isUpperCase(c) && !Character.isUpperCase(previous));
+    }
+
+    /**
+     * Symbols first, bindings, globals and then functions, as they are the most specific to the caret, then fields and
+     * types, keywords last
+     */
+    private static int kindOrder(CompletionItemKind kind) {
+        if (kind == null) {
+            return 4;
+        }
+        switch (kind) {
+            case Variable:
+                return 0;
+            case Function:
+                return 1;
+            case Field:
+                return 2;
+            case Class:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    private static CompletionItem copy(CompletionItem candidate, String sortText) {
+        CompletionItem completionItem = new CompletionItem(candidate.getLabel());
+        completionItem.setKind(candidate.getKind());
+        completionItem.setSortText(sortText);
+        completionItem.setData(candidate.getData());
+        return completionItem;
+    }
+
+    private static class Match {
+
+        private final CompletionItem candidate;
+        private final int score;
+
+        private Match(CompletionItem candidate, int score) {
+            this.candidate = candidate;
+            this.score = score;
+        }
+    }
+
+    private static class Node {
+
+        private final char[] keys;
+        private final Node[] children;
+        private final CompletionItem[] items;
+        /** length of the longest label suffix below this node */
+        private final int height;
+
+        private Node(Map<Character, Node> children, List<CompletionItem> items) {
+            this.keys = new char[children.size()];
+            this.children = new Node[children.size()];
+            int i = 0;
+            int maxChildHeight = -1;
+            for (Map.Entry<Character, Node> child : children.entrySet()) {
+                keys[i] = child.getKey();
+                this.children[i++] = child.getValue();
+                maxChildHeight = Math.max(maxChildHeight, child.getValue().height);
+            }
+            this.items = items.toArray(new CompletionItem[0]);
+            this.height = maxChildHeight + 1;
+        }
+
+        private void addAll(int score, List<Match> matches) {
+            for (CompletionItem item : items) {
+                matches.add(new Match(item, score));
+            }
+            for (Node child : children) {
+                child.addAll(score, matches);
+            }
+        }
+    }
+
+    private static class Builder {
+
+        private final Map<Character, Builder> children = new TreeMap<>();
+        private final List<CompletionItem> items = new ArrayList<>();
+
+        private Node build() {
+            Map<Character, Node> built = new TreeMap<>();
+            children.forEach((c, child) -> built.put(c, child.build()));
+            return new Node(built, items);
+        }
+    }
+}
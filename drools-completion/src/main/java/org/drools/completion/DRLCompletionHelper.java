@@ -15,47 +15,356 @@
  */
 package org.drools.completion;
 
-import com.vmware.antlr4c3.CodeCompletionCore;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.drools.parser.DRLLexer;
 import org.drools.parser.DRLParser;
+import org.drools.parser.Rope;
+import org.drools.parser.RopeCharStream;
 import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.services.LanguageClient;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.drools.parser.DRLParserHelper.computeTokenIndex;
 import static org.drools.parser.DRLParserHelper.createDrlParser;
 
 public class DRLCompletionHelper {
 
+    private static final long CANCEL_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final int MAX_KEYWORD_TRIES = 1024;
+
+    private static final Map<String, CompletionItem> KEYWORD_ITEMS = new ConcurrentHashMap<>();
+
+    // keyword candidates only depend on the parser state at the caret, so there are few distinct lists of them
+    private static final Map<List<String>, CompletionTrie> KEYWORD_TRIES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, CompletionTrie> eldest) {
+            return size() > MAX_KEYWORD_TRIES;
+        }
+    };
+
     private DRLCompletionHelper() {
     }
 
     public static List<CompletionItem> getCompletionItems(String text, Position caretPosition, LanguageClient client) {
-        DRLParser drlParser = createDrlParser(text);
-
         int row = caretPosition == null ? -1 : caretPosition.getLine() + 1; // caret line position is zero based
         int col = caretPosition == null ? -1 : caretPosition.getCharacter();
 
-        drlParser.compilationUnit();
+        DRLParser drlParser = caretPosition == null ? createDrlParser(text) : createCaretTruncatedDrlParser(text, row, col);
+        // c3 only needs the tokens preceding the caret, not a parse tree, so there is no need to run the parser
+        ((CommonTokenStream) drlParser.getInputStream()).fill();
         Integer nodeIndex = computeTokenIndex(drlParser, row, col);
+        if (nodeIndex == null) {
+            // the caret is past the end of the text
+            return new ArrayList<>();
+        }
+
+        return getCompletionItems(drlParser, nodeIndex, findStatementContext(drlParser.getInputStream(), nodeIndex));
+    }
+
+    /**
+     * Cheap scan for the statement of the caret, so that c3 does not walk the statements preceding it: goes through
+     * the default channel tokens up to the caret, keeping track of the last top level statement keyword and of the
+     * last statement end, that is an <code>end</code>, a <code>;</code> or the closing brace of a function.
+     * @return a ruledef context starting at the <code>rule</code> token when the caret is inside a rule, a
+     * drlStatementdef context starting after the statement end when the caret is between two statements, a
+     * compilationUnit context starting at the statement keyword when the caret is inside another statement, so that
+     * c3 still proposes the next statements once it is complete, or null when the caret is in the package header
+     */
+    static ParserRuleContext findStatementContext(TokenStream tokenStream, int caretTokenIndex) {
+        Token statementStart = null;
+        int statementEnd = -1;
+        boolean inRule = false;
+        int depth = 0;
+        int previousType = Token.INVALID_TYPE;
+        for (int i = 0; i < caretTokenIndex; i++) {
+            Token token = tokenStream.get(i);
+            if (token.getChannel() != Token.DEFAULT_CHANNEL) {
+                continue;
+            }
+            int type = token.getType();
+            if (type == DRLParser.DRL_RULE && (inRule || depth == 0)) {
+                // a rule keyword within a rule means its end is missing, the caret belongs to the latest rule anyway
+                statementStart = token;
+                inRule = true;
+            } else if (inRule) {
+                if (type == DRLParser.DRL_END) {
+                    statementEnd = i;
+                    inRule = false;
+                }
+            } else if (type == DRLParser.LBRACE) {
+                depth++;
+            } else if (type == DRLParser.RBRACE) {
+                if (depth > 0 && --depth == 0) {
+                    statementEnd = i;
+                }
+            } else if (depth == 0) {
+                if (type == DRLParser.SEMI) {
+                    statementEnd = i;
+                } else if (type == DRLParser.IMPORT || type == DRLParser.DRL_GLOBAL || (type == DRLParser.DRL_FUNCTION && previousType != DRLParser.IMPORT)) {
+                    statementStart = token;
+                }
+            }
+            previousType = type;
+        }
+
+        if (statementStart == null) {
+            // only the package and unit declarations precede the caret, there is little to walk
+            return null;
+        }
+        ParserRuleContext statementContext;
+        if (inRule) {
+            statementContext = new DRLParser.RuledefContext(null, ATNState.INVALID_STATE_NUMBER);
+            statementContext.start = statementStart;
+        } else if (statementEnd > statementStart.getTokenIndex()) {
+            statementContext = new DRLParser.DrlStatementdefContext(null, ATNState.INVALID_STATE_NUMBER);
+            statementContext.start = tokenStream.get(caretTokenIndex);
+            for (int i = statementEnd + 1; i < caretTokenIndex; i++) {
+                if (tokenStream.get(i).getChannel() == Token.DEFAULT_CHANNEL) {
+                    statementContext.start = tokenStream.get(i);
+                    break;
+                }
+            }
+        } else {
+            statementContext = new DRLParser.CompilationUnitContext(null, ATNState.INVALID_STATE_NUMBER);
+            statementContext.start = statementStart;
+        }
+        return statementContext;
+    }
+
+    /**
+     * Completion bounded by a time budget. When the budget runs out before the candidates are known, or when the
+     * server is too busy to compute them, an empty list flagged as incomplete is returned, so that the client asks
+     * again. The keyword walk is not bound by the budget: it goes on in the background until done or until the
+     * cancelChecker throws, and the request asking again finds its outcome in the {@link KeywordCompletionTable}.
+     * @throws java.util.concurrent.CancellationException when the cancelChecker reports the request as cancelled
+     */
+    public static CompletionList getCompletionList(CharSequence text, Position caretPosition, Duration budget, CancelChecker cancelChecker) {
+        return getCompletionList(text, caretPosition, budget, cancelChecker, TypeIndex.EMPTY);
+    }
+
+    /**
+     * Same as {@link #getCompletionList(CharSequence, Position, Duration, CancelChecker)}, also proposing the fact types
+     * and fields of the given index
+     */
+    public static CompletionList getCompletionList(CharSequence text, Position caretPosition, Duration budget, CancelChecker cancelChecker, TypeIndex typeIndex) {
+        return getCompletionList(text, caretPosition, budget, cancelChecker, typeIndex, SymbolTable.EMPTY);
+    }
+
+    /**
+     * Same as {@link #getCompletionList(CharSequence, Position, Duration, CancelChecker, TypeIndex)}, also proposing the
+     * bindings, globals and functions of the given symbol table
+     */
+    public static CompletionList getCompletionList(CharSequence text, Position caretPosition, Duration budget, CancelChecker cancelChecker, TypeIndex typeIndex, SymbolTable symbolTable) {
+        return getCompletionList(text, caretPosition, budget, cancelChecker, typeIndex, symbolTable, null);
+    }
+
+    /**
+     * Same as {@link #getCompletionList(CharSequence, Position, Duration, CancelChecker, TypeIndex, SymbolTable)}, reading
+     * the tokens preceding the caret from the given ones instead of lexing the text
+     *
+     * @param documentTokens all the tokens of the text, as kept by a {@link org.drools.parser.ParseResult}, or null
+     */
+    public static CompletionList getCompletionList(CharSequence text, Position caretPosition, Duration budget, CancelChecker cancelChecker, TypeIndex typeIndex, SymbolTable symbolTable,
+                                                   List<Token> documentTokens) {
+        Candidates candidates = collectCandidates(text, caretPosition, budget, cancelChecker, typeIndex, symbolTable, documentTokens);
+        if (candidates == null) {
+            return new CompletionList(true, new ArrayList<>());
+        }
+        List<CompletionItem> completionItems = new ArrayList<>(candidates.items);
+        completionItems.addAll(toCompletionItems(candidates.keywords));
+        return new CompletionList(false, completionItems);
+    }
+
+    /**
+     * Same as {@link #getCompletionList(CharSequence, Position, Duration, CancelChecker, TypeIndex, SymbolTable, List)},
+     * returning the candidates as a trie to rank them. The keywords part of the trie is shared by all the requests
+     * with the same keyword candidates.
+     *
+     * @return the candidates, or null when they are not known within the budget
+     */
+    public static CompletionTrie getCompletionCandidates(CharSequence text, Position caretPosition, Duration budget, CancelChecker cancelChecker, TypeIndex typeIndex,
+                                                         SymbolTable symbolTable, List<Token> documentTokens) {
+        Candidates candidates = collectCandidates(text, caretPosition, budget, cancelChecker, typeIndex, symbolTable, documentTokens);
+        if (candidates == null) {
+            return null;
+        }
+        return candidates.items.isEmpty() ? keywordTrie(candidates.keywords) : CompletionTrie.union(keywordTrie(candidates.keywords), CompletionTrie.of(candidates.items));
+    }
+
+    /**
+     * @return the candidates, or null when they are not known within the budget
+     */
+    private static Candidates collectCandidates(CharSequence text, Position caretPosition, Duration budget, CancelChecker cancelChecker, TypeIndex typeIndex, SymbolTable symbolTable,
+                                                List<Token> documentTokens) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        int row = caretPosition.getLine() + 1; // caret line position is zero based
+        int col = caretPosition.getCharacter();
+
+        try {
+            CancelChecker budgetChecker = () -> {
+                cancelChecker.checkCanceled();
+                checkDeadline(deadline);
+            };
+            DRLParser drlParser = documentTokens == null ?
+                    createCaretTruncatedDrlParser(text, row, col, budgetChecker) :
+                    new DRLParser(new CommonTokenStream(new CaretTruncatingTokenSource(new ListTokenSource(documentTokens), row, col, budgetChecker)));
+            ((CommonTokenStream) drlParser.getInputStream()).fill();
+            Integer nodeIndex = computeTokenIndex(drlParser, row, col);
+            if (nodeIndex == null) {
+                return Candidates.NONE;
+            }
+
+            // only a cancelled request stops the walk, one outlasting the budget completes the table for the next request
+            CompletableFuture<List<String>> keywords = KeywordCompletionTable.getKeywordsAsync(drlParser, nodeIndex, findStatementContext(drlParser.getInputStream(), nodeIndex), cancelChecker);
+            while (!keywords.isDone()) {
+                cancelChecker.checkCanceled();
+                checkDeadline(deadline);
+                try {
+                    keywords.get(Math.min(CANCEL_CHECK_INTERVAL_NANOS, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    // check again
+                }
+            }
+            int caretOffset = offsetOf(text, caretPosition);
+            int contextEnd = caretOffset - typedPrefix(text, caretOffset).length();
+            List<CompletionItem> completionItems = new ArrayList<>(SymbolCompletion.getCompletionItems(drlParser.getInputStream(), contextEnd, symbolTable));
+            completionItems.addAll(TypeCompletion.getCompletionItems(drlParser.getInputStream(), contextEnd, typeIndex));
+            return new Candidates(completionItems, keywords.get());
+        } catch (BudgetExceededException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BudgetExceededException || e.getCause() instanceof RejectedExecutionException) {
+                return null;
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void checkDeadline(long deadline) {
+        if (System.nanoTime() - deadline >= 0) {
+            throw BudgetExceededException.INSTANCE;
+        }
+    }
+
+    static DRLParser createCaretTruncatedDrlParser(CharSequence text, int row, int col) {
+        return createCaretTruncatedDrlParser(text, row, col, () -> { });
+    }
 
-        return getCompletionItems(drlParser, nodeIndex);
+    static DRLParser createCaretTruncatedDrlParser(CharSequence text, int row, int col, CancelChecker cancelChecker) {
+        DRLLexer drlLexer = new DRLLexer(text instanceof Rope ? new RopeCharStream((Rope) text) : CharStreams.fromString(text.toString()));
+        CommonTokenStream commonTokenStream = new CommonTokenStream(new CaretTruncatingTokenSource(drlLexer, row, col, cancelChecker));
+        return new DRLParser(commonTokenStream);
     }
 
     static List<CompletionItem> getCompletionItems(DRLParser drlParser, int nodeIndex) {
-        CodeCompletionCore core = new CodeCompletionCore(drlParser, null, null);
-        CodeCompletionCore.CandidatesCollection candidates = core.collectCandidates(nodeIndex, null);
+        return getCompletionItems(drlParser, nodeIndex, null);
+    }
 
-        return candidates.tokens.keySet().stream().filter(Objects::nonNull)
-                .filter(integer -> !Tokens.IGNORED.contains(integer))
-                .map(integer -> drlParser.getVocabulary().getDisplayName(integer).replace("'", ""))
-                .map(String::toLowerCase)
-                .map(k -> createCompletionItem(k, CompletionItemKind.Keyword))
-                .collect(Collectors.toList());
+    /**
+     * When a statement context is given, c3 only walks the tokens from its start to the caret, starting from the
+     * statement's rule in the ATN instead of compilationUnit. Token indexes are the ones of the whole document.
+     */
+    static List<CompletionItem> getCompletionItems(DRLParser drlParser, int nodeIndex, ParserRuleContext statementContext) {
+        return toCompletionItems(KeywordCompletionTable.getKeywords(drlParser, nodeIndex, statementContext));
+    }
+
+    /**
+     * Copies of the keyword templates, which callers are free to modify
+     */
+    private static List<CompletionItem> toCompletionItems(List<String> keywords) {
+        List<CompletionItem> completionItems = new ArrayList<>(keywords.size());
+        for (String keyword : keywords) {
+            CompletionItem template = keywordItem(keyword);
+            completionItems.add(createCompletionItem(template.getLabel(), template.getKind()));
+        }
+        return completionItems;
+    }
+
+    /**
+     * The keyword items are templates shared by all the requests, never handed out but through
+     * {@link CompletionTrie#rank}, which copies them
+     */
+    private static CompletionItem keywordItem(String keyword) {
+        return KEYWORD_ITEMS.computeIfAbsent(keyword, k -> createCompletionItem(k, CompletionItemKind.Keyword));
+    }
+
+    /**
+     * @param keywords candidates computed by {@link KeywordCompletionTable}, the same list for the same signature
+     */
+    static CompletionTrie keywordTrie(List<String> keywords) {
+        synchronized (KEYWORD_TRIES) {
+            CompletionTrie trie = KEYWORD_TRIES.get(keywords);
+            if (trie == null) {
+                List<CompletionItem> items = new ArrayList<>(keywords.size());
+                for (String keyword : keywords) {
+                    items.add(keywordItem(keyword));
+                }
+                trie = CompletionTrie.of(items);
+                KEYWORD_TRIES.put(keywords, trie);
+            }
+            return trie;
+        }
+    }
+
+    /**
+     * @return the part of the word being typed that precedes the offset, '-' included as in keywords like no-loop
+     */
+    public static String typedPrefix(CharSequence text, int offset) {
+        int start = offset;
+        while (start > 0 && isWordPart(text.charAt(start - 1))) {
+            start--;
+        }
+        return text.subSequence(start, offset).toString();
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isJavaIdentifierPart(c) || c == '-';
+    }
+
+    /**
+     * @return the offset of the position in the text, 0-based lines and characters as in LSP positions
+     */
+    public static int offsetOf(CharSequence document, Position position) {
+        if (document instanceof Rope) {
+            return ((Rope) document).offsetOf(position.getLine(), position.getCharacter());
+        }
+        String text = document.toString();
+        int offset = 0;
+        for (int line = 0; line < position.getLine(); line++) {
+            int newLine = text.indexOf('\n', offset);
+            if (newLine < 0) {
+                return text.length();
+            }
+            offset = newLine + 1;
+        }
+        return Math.min(offset + position.getCharacter(), text.length());
     }
 
     static CompletionItem createCompletionItem(String label, CompletionItemKind itemKind) {
@@ -66,4 +375,26 @@ public class DRLCompletionHelper {
         completionItem.setKind(itemKind);
         return completionItem;
     }
+
+    private static final class Candidates {
+
+        private static final Candidates NONE = new Candidates(Collections.emptyList(), Collections.emptyList());
+
+        private final List<CompletionItem> items;
+        private final List<String> keywords;
+
+        private Candidates(List<CompletionItem> items, List<String> keywords) {
+            this.items = items;
+            this.keywords = keywords;
+        }
+    }
+
+    private static class BudgetExceededException extends RuntimeException {
+
+        private static final BudgetExceededException INSTANCE = new BudgetExceededException();
+
+        private BudgetExceededException() {
+            super("Completion time budget exceeded", null, false, false);
+        }
+    }
 }
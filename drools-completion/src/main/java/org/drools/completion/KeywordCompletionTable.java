@@ -0,0 +1,325 @@
+package org.drools.completion;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.vmware.antlr4c3.CodeCompletionCore;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.drools.parser.DRLParser;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+/**
+ * Keyword candidates shared by all completion requests. The candidates computed by c3 only depend on the ATN rule
+ * the walk starts from and on the types of the default channel tokens between the start of that rule and the caret,
+ * so they are stored under that signature, with {@link Tokens#IGNORED} already applied, and c3 only runs for
+ * signatures never seen before. Signatures keep a digest of the token types rather than the types, so that an entry
+ * takes the same memory however long the context, and the least recently used signatures are dropped beyond
+ * {@link #MAX_ENTRIES}.
+ */
+public class KeywordCompletionTable {
+
+    static final int MAX_ENTRIES = 10_000;
+
+    static final int MAX_QUEUED_WALKS = 64;
+
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    // c3 walks run on their own bounded pool and not on the threads serving requests; when too many are queued, new
+    // ones are rejected, and their requests answered as incomplete, rather than piling up
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+                                                                           0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_WALKS), runnable -> {
+        Thread thread = new Thread(runnable, "drl-keyword-completion");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<Signature, CompletableFuture<List<String>>> TABLE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Signature, CompletableFuture<List<String>>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private KeywordCompletionTable() {
+    }
+
+    /**
+     * @param statementContext the context c3 starts from, or null to start from compilationUnit
+     */
+    public static List<String> getKeywords(DRLParser drlParser, int caretTokenIndex, ParserRuleContext statementContext) {
+        return lookup(drlParser, caretTokenIndex, statementContext, null, Runnable::run).join();
+    }
+
+    /**
+     * Same as {@link #getKeywords} but a missing signature is computed on a background pool. The c3 walk checks the
+     * cancelChecker as it goes and stops as soon as it throws, leaving the signature to be computed by a later request.
+     * Callers giving up on the future without a reason to stop the walk pass a cancelChecker that does not throw then,
+     * so that the walk still fills the table.
+     * The returned future then fails with the exception thrown by the cancelChecker, or with a
+     * {@link java.util.concurrent.RejectedExecutionException} when too many walks are already queued.
+     */
+    public static CompletableFuture<List<String>> getKeywordsAsync(DRLParser drlParser, int caretTokenIndex, ParserRuleContext statementContext, CancelChecker cancelChecker) {
+        return lookup(drlParser, caretTokenIndex, statementContext, cancelChecker, EXECUTOR);
+    }
+
+    private static CompletableFuture<List<String>> lookup(DRLParser drlParser, int caretTokenIndex, ParserRuleContext statementContext, CancelChecker cancelChecker,
+                                                          Executor executor) {
+        Signature signature = Signature.of(drlParser.getInputStream(), caretTokenIndex, statementContext);
+        CompletableFuture<List<String>> computed = new CompletableFuture<>();
+        CompletableFuture<List<String>> keywords;
+        synchronized (TABLE) {
+            // when found, another request already computed the same signature, or is computing it
+            keywords = TABLE.putIfAbsent(signature, computed);
+        }
+        if (keywords != null) {
+            HITS.increment();
+            // the request computing the signature may give up on it, this one then computes it on its own terms
+            return keywords.handle((found, e) -> e == null ?
+                    CompletableFuture.completedFuture(found) :
+                    lookup(drlParser, caretTokenIndex, statementContext, cancelChecker, executor)).thenCompose(Function.identity());
+        }
+        MISSES.increment();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    computed.complete(cancelChecker == null ?
+                                              collectKeywords(drlParser, caretTokenIndex, statementContext) :
+                                              collectKeywords(drlParser, caretTokenIndex, statementContext, cancelChecker));
+                } catch (Throwable t) {
+                    fail(signature, computed, t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(signature, computed, e);
+        }
+        return computed;
+    }
+
+    private static void fail(Signature signature, CompletableFuture<List<String>> computed, Throwable e) {
+        synchronized (TABLE) {
+            TABLE.remove(signature, computed);
+        }
+        computed.completeExceptionally(e);
+    }
+
+    /**
+     * c3 copies the tokens preceding the caret out of the parser's stream and then reads their types all along its
+     * walk, without calling back anything else. So the walk runs on a copy of the stream whose tokens check the
+     * cancelChecker every {@link #CANCEL_CHECK_INTERVAL} reads of their type.
+     */
+    static List<String> collectKeywords(DRLParser drlParser, int caretTokenIndex, ParserRuleContext statementContext, CancelChecker cancelChecker) {
+        cancelChecker.checkCanceled();
+        TokenStream tokenStream = drlParser.getInputStream();
+        CheckedToken.Reads reads = new CheckedToken.Reads(cancelChecker);
+        List<Token> tokens = new ArrayList<>(caretTokenIndex + 1);
+        for (int i = 0; i <= caretTokenIndex && i < tokenStream.size(); i++) {
+            tokens.add(new CheckedToken(tokenStream.get(i), reads));
+        }
+        CommonTokenStream checkedTokenStream = new CommonTokenStream(new ListTokenSource(tokens));
+        checkedTokenStream.fill();
+        return collectKeywords(new DRLParser(checkedTokenStream), caretTokenIndex, statementContext);
+    }
+
+    static List<String> collectKeywords(DRLParser drlParser, int caretTokenIndex, ParserRuleContext statementContext) {
+        // c3 stores the epsilon candidate without following tokens and then fails comparing them, unless it is ignored
+        CodeCompletionCore core = new CodeCompletionCore(drlParser, null, Tokens.IGNORED);
+        CodeCompletionCore.CandidatesCollection candidates = core.collectCandidates(caretTokenIndex, statementContext);
+
+        return candidates.tokens.keySet().stream().filter(Objects::nonNull)
+                .filter(integer -> !Tokens.IGNORED.contains(integer))
+                .map(integer -> drlParser.getVocabulary().getDisplayName(integer).replace("'", ""))
+                .map(String::toLowerCase)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static int size() {
+        synchronized (TABLE) {
+            return TABLE.size();
+        }
+    }
+
+    static void clear() {
+        synchronized (TABLE) {
+            TABLE.clear();
+        }
+        HITS.reset();
+        MISSES.reset();
+    }
+
+    private static final class CheckedToken implements Token {
+
+        private static final class Reads {
+
+            private final CancelChecker cancelChecker;
+            private int count;
+
+            private Reads(CancelChecker cancelChecker) {
+                this.cancelChecker = cancelChecker;
+            }
+
+            private void increment() {
+                if (count++ % CANCEL_CHECK_INTERVAL == 0) {
+                    cancelChecker.checkCanceled();
+                }
+            }
+        }
+
+        private final Token delegate;
+        private final Reads reads;
+
+        private CheckedToken(Token delegate, Reads reads) {
+            this.delegate = delegate;
+            this.reads = reads;
+        }
+
+        @Override
+        public int getType() {
+            reads.increment();
+            return delegate.getType();
+        }
+
+        @Override
+        public String getText() {
+            return delegate.getText();
+        }
+
+        @Override
+        public int getLine() {
+            return delegate.getLine();
+        }
+
+        @Override
+        public int getCharPositionInLine() {
+            return delegate.getCharPositionInLine();
+        }
+
+        @Override
+        public int getChannel() {
+            return delegate.getChannel();
+        }
+
+        @Override
+        public int getTokenIndex() {
+            return delegate.getTokenIndex();
+        }
+
+        @Override
+        public int getStartIndex() {
+            return delegate.getStartIndex();
+        }
+
+        @Override
+        public int getStopIndex() {
+            return delegate.getStopIndex();
+        }
+
+        @Override
+        public TokenSource getTokenSource() {
+            return delegate.getTokenSource();
+        }
+
+        @Override
+        public CharStream getInputStream() {
+            return delegate.getInputStream();
+        }
+    }
+
+    /**
+     * Start rule plus the types of the tokens c3 consumes before reaching the caret token, collected the same way
+     * c3 does. The type of the caret token itself is left out, as c3 never matches it. The types are kept as their
+     * count and two independent 64 bits hashes: telling two contexts apart only fails if both hashes collide.
+     */
+    static class Signature {
+
+        private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+        private static final long MIX = 0xbf58476d1ce4e5b9L;
+
+        private final int startRule;
+        private final int tokenCount;
+        private final long fnvHash;
+        private final long mixHash;
+
+        private Signature(int startRule, int tokenCount, long fnvHash, long mixHash) {
+            this.startRule = startRule;
+            this.tokenCount = tokenCount;
+            this.fnvHash = fnvHash;
+            this.mixHash = mixHash;
+        }
+
+        static Signature of(TokenStream tokenStream, int caretTokenIndex, ParserRuleContext statementContext) {
+            int startRule = statementContext == null ? 0 : statementContext.getRuleIndex();
+            int startIndex = statementContext == null || statementContext.start == null ? 0 : statementContext.start.getTokenIndex();
+
+            int count = 0;
+            long fnvHash = FNV_OFFSET;
+            long mixHash = GOLDEN_GAMMA;
+            int currentIndex = tokenStream.index();
+            tokenStream.seek(startIndex);
+            try {
+                for (int offset = 1; ; offset++) {
+                    Token token = tokenStream.LT(offset);
+                    if (token.getTokenIndex() >= caretTokenIndex || token.getType() == Token.EOF) {
+                        break;
+                    }
+                    int type = token.getType();
+                    fnvHash = (fnvHash ^ type) * FNV_PRIME;
+                    mixHash = Long.rotateLeft(mixHash ^ (type * GOLDEN_GAMMA), 31) * MIX;
+                    count++;
+                }
+            } finally {
+                tokenStream.seek(currentIndex);
+            }
+            return new Signature(startRule, count, fnvHash, mixHash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Signature signature = (Signature) o;
+            return startRule == signature.startRule && tokenCount == signature.tokenCount && fnvHash == signature.fnvHash && mixHash == signature.mixHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * startRule + Long.hashCode(fnvHash);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.drools.completion;
+
+/**
+ * A name a rule can refer to: a pattern binding or constraint label of the rule, a global or a function.
+ */
+public class Symbol {
+
+    public enum Kind {
+        BINDING,
+        GLOBAL,
+        FUNCTION
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final String type;
+
+    public Symbol(Kind kind, String name, String type) {
+        this.kind = kind;
+        this.name = name;
+        this.type = type;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The pattern type of a binding, the expression of a constraint label, the type of a global or the return type
+     * of a function
+     */
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return kind + ":" + name;
+    }
+}
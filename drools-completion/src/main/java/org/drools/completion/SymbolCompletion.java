@@ -0,0 +1,68 @@
+package org.drools.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.drools.parser.DRLParser;
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+
+import static org.drools.parser.ParserStringUtils.safeStripStringDelimiters;
+
+/**
+ * Binding, global and function candidates, taken from a {@link SymbolTable}. They are proposed where a constraint can
+ * start inside the parentheses of a pattern, seeing the bindings declared before the caret, and in a consequence,
+ * seeing all the bindings of the rule.
+ */
+public class SymbolCompletion {
+
+    private SymbolCompletion() {
+    }
+
+    /**
+     * @param contextEnd offset where the word being completed starts
+     */
+    public static List<CompletionItem> getCompletionItems(TokenStream tokens, int contextEnd, SymbolTable symbolTable) {
+        List<Token> preceding = TypeCompletion.precedingTokens(tokens, contextEnd);
+        if (preceding.isEmpty() || preceding.get(preceding.size() - 1).getType() == DRLParser.DOT) {
+            return Collections.emptyList(); // a member is expected
+        }
+
+        Boolean inConsequence = null;
+        for (int i = preceding.size() - 1; i >= 0; i--) {
+            Token token = preceding.get(i);
+            if (token.getType() == DRLParser.DRL_END) {
+                return Collections.emptyList();
+            }
+            if (token.getType() == DRLParser.DRL_THEN && inConsequence == null) {
+                inConsequence = true;
+            } else if (token.getType() == DRLParser.DRL_WHEN && inConsequence == null) {
+                if (TypeCompletion.unclosedPatternParenthesis(preceding) < 0) {
+                    return Collections.emptyList();
+                }
+                inConsequence = false;
+            } else if (token.getType() == DRLParser.DRL_RULE) {
+                if (inConsequence == null || i + 1 >= preceding.size()) {
+                    return Collections.emptyList();
+                }
+                String ruleName = safeStripStringDelimiters(preceding.get(i + 1).getText());
+                return toCompletionItems(symbolTable.getVisibleSymbols(ruleName, contextEnd - token.getStartIndex(), inConsequence));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<CompletionItem> toCompletionItems(List<Symbol> symbols) {
+        List<CompletionItem> items = new ArrayList<>();
+        for (Symbol symbol : symbols) {
+            CompletionItemKind kind = symbol.getKind() == Symbol.Kind.FUNCTION ? CompletionItemKind.Function : CompletionItemKind.Variable;
+            CompletionItem item = DRLCompletionHelper.createCompletionItem(symbol.getName(), kind);
+            item.setData(new CompletionItemData(symbol.getType(), null));
+            items.add(item);
+        }
+        return items;
+    }
+}
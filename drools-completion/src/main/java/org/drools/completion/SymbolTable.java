@@ -0,0 +1,228 @@
+package org.drools.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.drl.ast.descr.BaseDescr;
+import org.drools.drl.ast.descr.ConditionalElementDescr;
+import org.drools.drl.ast.descr.ExistsDescr;
+import org.drools.drl.ast.descr.ExprConstraintDescr;
+import org.drools.drl.ast.descr.FunctionDescr;
+import org.drools.drl.ast.descr.GlobalDescr;
+import org.drools.drl.ast.descr.NotDescr;
+import org.drools.drl.ast.descr.PackageDescr;
+import org.drools.drl.ast.descr.PatternDescr;
+import org.drools.drl.ast.descr.RuleDescr;
+import org.drools.parser.ParseResult;
+import org.drools.parser.StatementFingerprint;
+import org.drools.parser.StatementKey;
+
+/**
+ * Immutable table of the symbols of a document: the globals and functions of the package, and the bindings of every
+ * rule. When built from a previous table, the bindings of a rule are taken over as they are if the rule did not change,
+ * so only the edited rules are walked again.
+ * <p>
+ * Offsets of bindings are relative to the start of their rule, so they stay valid when the text before the rule
+ * changes. Bindings inside a not or an exists are left out, as they are not visible outside of them.
+ */
+public class SymbolTable {
+
+    public static final SymbolTable EMPTY = new SymbolTable(-1, Collections.emptyList(), Collections.emptyList(), Collections.emptyMap(), 0);
+
+    private final int version;
+    private final List<Symbol> globals;
+    private final List<Symbol> functions;
+    private final Map<StatementKey, RuleSymbols> rules;
+    private final Map<String, RuleSymbols> rulesByName = new HashMap<>();
+    private final int rebuiltRuleCount;
+
+    private SymbolTable(int version, List<Symbol> globals, List<Symbol> functions, Map<StatementKey, RuleSymbols> rules, int rebuiltRuleCount) {
+        this.version = version;
+        this.globals = globals;
+        this.functions = functions;
+        this.rules = rules;
+        this.rebuiltRuleCount = rebuiltRuleCount;
+        rules.forEach((key, ruleSymbols) -> rulesByName.putIfAbsent(key.getName(), ruleSymbols));
+    }
+
+    /**
+     * @param previous the table of a previous version of the same document, or {@link #EMPTY}
+     * @param version the version of the parsed document
+     */
+    public static SymbolTable build(ParseResult result, SymbolTable previous, int version) {
+        PackageDescr packageDescr = result.getPackageDescr();
+        if (packageDescr == null) {
+            return new SymbolTable(version, Collections.emptyList(), Collections.emptyList(), Collections.emptyMap(), 0);
+        }
+
+        List<Symbol> globals = new ArrayList<>();
+        for (GlobalDescr globalDescr : packageDescr.getGlobals()) {
+            globals.add(new Symbol(Symbol.Kind.GLOBAL, globalDescr.getIdentifier(), globalDescr.getType()));
+        }
+        List<Symbol> functions = new ArrayList<>();
+        for (FunctionDescr functionDescr : packageDescr.getFunctions()) {
+            functions.add(new Symbol(Symbol.Kind.FUNCTION, functionDescr.getName(), functionDescr.getReturnType()));
+        }
+
+        Map<Integer, StatementFingerprint> ruleStatements = new HashMap<>();
+        for (StatementFingerprint statement : result.getStatements().getStatements()) {
+            if (statement.getKey().getKind() == StatementKey.Kind.RULE) {
+                ruleStatements.put(statement.getStartCharacter(), statement);
+            }
+        }
+        Map<StatementKey, RuleSymbols> rules = new LinkedHashMap<>();
+        int rebuilt = 0;
+        for (RuleDescr ruleDescr : packageDescr.getRules()) {
+            StatementFingerprint statement = ruleStatements.get(ruleDescr.getStartCharacter());
+            if (statement == null) {
+                continue;
+            }
+            RuleSymbols ruleSymbols = previous.rules.get(statement.getKey());
+            if (ruleSymbols == null || !ruleSymbols.sameContentAs(statement)) {
+                ruleSymbols = RuleSymbols.of(statement, ruleDescr);
+                rebuilt++;
+            }
+            rules.put(statement.getKey(), ruleSymbols);
+        }
+        return new SymbolTable(version, Collections.unmodifiableList(globals), Collections.unmodifiableList(functions), Collections.unmodifiableMap(rules), rebuilt);
+    }
+
+    /**
+     * @param ruleName the name of the rule enclosing the caret
+     * @param ruleOffset the offset of the caret from the start of the rule
+     * @param inConsequence true if the caret is in the consequence of the rule, where all of its bindings are visible.
+     * Otherwise only the bindings declared before the caret are.
+     */
+    public List<Symbol> getVisibleSymbols(String ruleName, int ruleOffset, boolean inConsequence) {
+        List<Symbol> visible = new ArrayList<>();
+        RuleSymbols ruleSymbols = rulesByName.get(ruleName);
+        if (ruleSymbols != null) {
+            for (Binding binding : ruleSymbols.bindings) {
+                if (inConsequence || binding.ruleOffset < ruleOffset) {
+                    visible.add(binding.symbol);
+                }
+            }
+        }
+        visible.addAll(globals);
+        visible.addAll(functions);
+        return visible;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public List<Symbol> getGlobals() {
+        return globals;
+    }
+
+    public List<Symbol> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * @return the number of rules walked to build this table, as opposed to the ones taken over from the previous one
+     */
+    public int getRebuiltRuleCount() {
+        return rebuiltRuleCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolTable{" +
+                "version=" + version +
+                ", globals=" + globals.size() +
+                ", functions=" + functions.size() +
+                ", rules=" + rules.size() +
+                '}';
+    }
+
+    private static class RuleSymbols {
+
+        private final long fingerprint;
+        private final int length;
+        private final List<Binding> bindings;
+
+        private RuleSymbols(long fingerprint, int length, List<Binding> bindings) {
+            this.fingerprint = fingerprint;
+            this.length = length;
+            this.bindings = bindings;
+        }
+
+        private static RuleSymbols of(StatementFingerprint statement, RuleDescr ruleDescr) {
+            Map<String, Binding> bindings = new LinkedHashMap<>();
+            collectBindings(ruleDescr.getLhs(), statement.getStartCharacter(), bindings);
+            return new RuleSymbols(statement.getFingerprint(), length(statement), List.copyOf(bindings.values()));
+        }
+
+        /**
+         * The fingerprint leaves whitespaces out, so the length is compared as well to keep the relative offsets right
+         */
+        private boolean sameContentAs(StatementFingerprint statement) {
+            return fingerprint == statement.getFingerprint() && length == length(statement);
+        }
+
+        private static int length(StatementFingerprint statement) {
+            return statement.getEndCharacter() - statement.getStartCharacter();
+        }
+
+        private static void collectBindings(BaseDescr descr, int ruleStart, Map<String, Binding> bindings) {
+            if (descr instanceof NotDescr || descr instanceof ExistsDescr) {
+                return;
+            }
+            if (descr instanceof PatternDescr) {
+                collectPatternBindings((PatternDescr) descr, ruleStart, bindings);
+            } else if (descr instanceof ConditionalElementDescr) {
+                for (BaseDescr child : ((ConditionalElementDescr) descr).getDescrs()) {
+                    collectBindings(child, ruleStart, bindings);
+                }
+            }
+        }
+
+        private static void collectPatternBindings(PatternDescr pattern, int ruleStart, Map<String, Binding> bindings) {
+            int patternStart = pattern.getStartCharacter() - ruleStart;
+            // a pattern binding can be used once its pattern is closed, a constraint label by the following constraints
+            int patternEnd = pattern.getEndCharacter() < 0 ? patternStart : pattern.getEndCharacter() - ruleStart;
+            for (BaseDescr constraint : pattern.getDescrs()) {
+                if (constraint instanceof ExprConstraintDescr) {
+                    String expression = ((ExprConstraintDescr) constraint).getExpression();
+                    int colon = expression.indexOf(':');
+                    if (colon > 0 && isIdentifier(expression.substring(0, colon))) {
+                        String label = expression.substring(0, colon);
+                        bindings.putIfAbsent(label, new Binding(new Symbol(Symbol.Kind.BINDING, label, expression.substring(colon + 1)), patternStart));
+                    }
+                }
+            }
+            if (pattern.getIdentifier() != null) {
+                bindings.putIfAbsent(pattern.getIdentifier(), new Binding(new Symbol(Symbol.Kind.BINDING, pattern.getIdentifier(), pattern.getObjectType()), patternEnd));
+            }
+        }
+
+        private static boolean isIdentifier(String text) {
+            if (!Character.isJavaIdentifierStart(text.charAt(0))) {
+                return false;
+            }
+            for (int i = 1; i < text.length(); i++) {
+                if (!Character.isJavaIdentifierPart(text.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Binding {
+
+        private final Symbol symbol;
+        private final int ruleOffset;
+
+        private Binding(Symbol symbol, int ruleOffset) {
+            this.symbol = symbol;
+            this.ruleOffset = ruleOffset;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.drools.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.drools.drl.ast.descr.ImportDescr;
+import org.drools.drl.ast.descr.PackageDescr;
+import org.drools.parser.DRLParser;
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+
+/**
+ * Fact type and field candidates, taken from a {@link TypeIndex}. The completion context is found scanning the tokens
+ * preceding the word being typed: a fact type is expected where a pattern can start in a rule LHS, a field where
+ * a constraint can start inside the parentheses of a pattern.
+ */
+public class TypeCompletion {
+
+    private TypeCompletion() {
+    }
+
+    /**
+     * @param contextEnd offset where the word being completed starts
+     */
+    public static List<CompletionItem> getCompletionItems(TokenStream tokens, int contextEnd, TypeIndex typeIndex) {
+        if (typeIndex.size() == 0) {
+            return Collections.emptyList();
+        }
+        List<Token> preceding = precedingTokens(tokens, contextEnd);
+        if (preceding.isEmpty() || !isInLhs(preceding)) {
+            return Collections.emptyList();
+        }
+
+        PackageDescr packageDescr = packageHeader(tokens);
+        int patternStart = unclosedPatternParenthesis(preceding);
+        if (patternStart >= 0) {
+            if (!startsConstraint(preceding.get(preceding.size() - 1))) {
+                return Collections.emptyList();
+            }
+            TypeInfo type = typeIndex.resolve(qualifiedNameBefore(preceding, patternStart), packageDescr);
+            return type == null ? Collections.emptyList() : fieldItems(type, typeIndex.getFields(type));
+        }
+        if (startsPattern(preceding)) {
+            return typeItems(typeIndex, packageDescr);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Default channel tokens ending before the word being typed
+     */
+    static List<Token> precedingTokens(TokenStream tokens, int contextEnd) {
+        List<Token> preceding = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.getType() == Token.EOF || token.getStopIndex() >= contextEnd) {
+                break;
+            }
+            if (token.getChannel() == Token.DEFAULT_CHANNEL) {
+                preceding.add(token);
+            }
+        }
+        return preceding;
+    }
+
+    private static boolean isInLhs(List<Token> preceding) {
+        for (int i = preceding.size() - 1; i >= 0; i--) {
+            switch (preceding.get(i).getType()) {
+                case DRLParser.DRL_WHEN:
+                    return true;
+                case DRLParser.DRL_THEN:
+                case DRLParser.DRL_END:
+                case DRLParser.DRL_RULE:
+                    return false;
+                default:
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of the innermost unclosed parenthesis following a type name, or -1. Unclosed parentheses
+     * not following a name, like the ones grouping patterns or sub-expressions, are skipped.
+     */
+    static int unclosedPatternParenthesis(List<Token> preceding) {
+        int depth = 0;
+        for (int i = preceding.size() - 1; i >= 0; i--) {
+            int type = preceding.get(i).getType();
+            if (type == DRLParser.DRL_WHEN) {
+                return -1;
+            } else if (type == DRLParser.RPAREN) {
+                depth++;
+            } else if (type == DRLParser.LPAREN) {
+                if (depth > 0) {
+                    depth--;
+                } else if (i > 0 && preceding.get(i - 1).getType() == DRLParser.IDENTIFIER) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsConstraint(Token last) {
+        switch (last.getType()) {
+            case DRLParser.LPAREN:
+            case DRLParser.COMMA:
+            case DRLParser.AND:
+            case DRLParser.OR:
+            case DRLParser.COLON:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean startsPattern(List<Token> preceding) {
+        Token last = preceding.get(preceding.size() - 1);
+        switch (last.getType()) {
+            case DRLParser.DRL_WHEN:
+            case DRLParser.DRL_NOT:
+            case DRLParser.DRL_EXISTS:
+            case DRLParser.DRL_AND:
+            case DRLParser.DRL_OR:
+            case DRLParser.COLON:
+            case DRLParser.LPAREN:
+            case DRLParser.RPAREN: // a new pattern can follow a previous one
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String qualifiedNameBefore(List<Token> preceding, int parenthesis) {
+        StringBuilder name = new StringBuilder(preceding.get(parenthesis - 1).getText());
+        for (int i = parenthesis - 2; i > 0 && preceding.get(i).getType() == DRLParser.DOT; i -= 2) {
+            name.insert(0, preceding.get(i - 1).getText() + ".");
+        }
+        return name.toString();
+    }
+
+    /**
+     * Package name and imports, read from the tokens of the header of the document
+     */
+    static PackageDescr packageHeader(TokenStream tokens) {
+        PackageDescr packageDescr = new PackageDescr();
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.getType() == DRLParser.DRL_RULE || token.getType() == Token.EOF) {
+                break;
+            }
+            if (token.getType() == DRLParser.PACKAGE) {
+                packageDescr.setName(readQualifiedName(tokens, i + 1));
+            } else if (token.getType() == DRLParser.IMPORT) {
+                int next = nextDefaultChannel(tokens, i + 1);
+                if (next < tokens.size() && tokens.get(next).getType() != DRLParser.DRL_FUNCTION && tokens.get(next).getType() != DRLParser.STATIC) {
+                    packageDescr.addImport(new ImportDescr(readQualifiedName(tokens, next)));
+                }
+            }
+        }
+        return packageDescr;
+    }
+
+    private static String readQualifiedName(TokenStream tokens, int from) {
+        StringBuilder name = new StringBuilder();
+        boolean expectingName = true;
+        for (int i = nextDefaultChannel(tokens, from); i < tokens.size(); i = nextDefaultChannel(tokens, i + 1)) {
+            Token token = tokens.get(i);
+            if (expectingName) {
+                if (token.getType() == DRLParser.DOT || token.getType() == DRLParser.SEMI || token.getType() == Token.EOF) {
+                    break;
+                }
+                name.append(token.getText());
+                if (token.getType() == DRLParser.MUL) {
+                    break;
+                }
+            } else if (token.getType() == DRLParser.DOT) {
+                name.append('.');
+            } else {
+                break;
+            }
+            expectingName = !expectingName;
+        }
+        return name.toString();
+    }
+
+    private static int nextDefaultChannel(TokenStream tokens, int from) {
+        int i = from;
+        while (i < tokens.size() && tokens.get(i).getChannel() != Token.DEFAULT_CHANNEL) {
+            i++;
+        }
+        return i;
+    }
+
+    private static List<CompletionItem> typeItems(TypeIndex typeIndex, PackageDescr packageDescr) {
+        List<CompletionItem> items = new ArrayList<>();
+        for (TypeInfo type : typeIndex.getVisibleTypes(packageDescr)) {
+            CompletionItem item = DRLCompletionHelper.createCompletionItem(type.getSimpleName(), CompletionItemKind.Class);
+            item.setData(new CompletionItemData(type.getQualifiedName(), null));
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static List<CompletionItem> fieldItems(TypeInfo owner, Map<String, String> fields) {
+        List<CompletionItem> items = new ArrayList<>();
+        fields.forEach((name, type) -> {
+            CompletionItem item = DRLCompletionHelper.createCompletionItem(name, CompletionItemKind.Field);
+            item.setData(new CompletionItemData(type, owner.getQualifiedName()));
+            items.add(item);
+        });
+        return items;
+    }
+}
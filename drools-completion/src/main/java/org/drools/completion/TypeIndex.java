@@ -0,0 +1,270 @@
+package org.drools.completion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.drools.drl.ast.descr.FunctionImportDescr;
+import org.drools.drl.ast.descr.ImportDescr;
+import org.drools.drl.ast.descr.PackageDescr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable index of the public classes of a classpath, built by reading class files as bytecode. Every jar, and
+ * every class file of a directory, is a source stamped with its size and last modification time, so that
+ * {@link #update} only reads again the sources which changed and the index can be {@link #save saved} and
+ * {@link #load loaded} across sessions.
+ */
+public class TypeIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TypeIndex.class);
+
+    public static final TypeIndex EMPTY = new TypeIndex(Collections.emptyMap());
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<String, Source> sources;
+    private final Map<String, TypeInfo> byQualifiedName = new HashMap<>();
+    private final Map<String, List<TypeInfo>> byPackage = new HashMap<>();
+
+    private TypeIndex(Map<String, Source> sources) {
+        this.sources = sources;
+        for (Source source : sources.values()) {
+            for (TypeInfo type : source.types) {
+                // the first classpath entry wins, as with class loading
+                if (byQualifiedName.putIfAbsent(type.getQualifiedName(), type) == null) {
+                    byPackage.computeIfAbsent(type.getPackageName(), k -> new ArrayList<>()).add(type);
+                }
+            }
+        }
+    }
+
+    public static TypeIndex build(List<Path> classpath) {
+        return EMPTY.update(classpath);
+    }
+
+    /**
+     * @return an index of the given classpath, reusing the types of the sources which did not change
+     */
+    public TypeIndex update(List<Path> classpath) {
+        Map<String, Source> updated = new LinkedHashMap<>();
+        for (Path entry : classpath) {
+            if (Files.isDirectory(entry)) {
+                try (Stream<Path> files = Files.walk(entry)) {
+                    files.filter(file -> file.toString().endsWith(".class"))
+                            .forEach(file -> updated.put(file.toString(), sourceOf(file, true)));
+                } catch (IOException e) {
+                    LOGGER.warn("Cannot scan classpath directory {}", entry, e);
+                }
+            } else if (Files.isRegularFile(entry)) {
+                updated.put(entry.toString(), sourceOf(entry, false));
+            }
+        }
+        updated.values().removeIf(source -> source == null);
+        return new TypeIndex(updated);
+    }
+
+    private Source sourceOf(Path file, boolean classFile) {
+        try {
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            long size = Files.size(file);
+            Source previous = sources.get(file.toString());
+            if (previous != null && previous.lastModified == lastModified && previous.size == size) {
+                return previous;
+            }
+            List<TypeInfo> types = classFile ? readClassFile(file) : readJar(file);
+            return new Source(lastModified, size, types);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot index {}", file, e);
+            return null;
+        }
+    }
+
+    private static List<TypeInfo> readClassFile(Path file) throws IOException {
+        TypeInfo type = ClassFileReader.read(Files.readAllBytes(file));
+        return type == null ? Collections.emptyList() : List.of(type);
+    }
+
+    private static List<TypeInfo> readJar(Path jar) throws IOException {
+        List<TypeInfo> types = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF/")) {
+                    continue;
+                }
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    TypeInfo type = ClassFileReader.read(in.readAllBytes());
+                    if (type != null) {
+                        types.add(type);
+                    }
+                } catch (IOException e) {
+                    LOGGER.debug("Skipping {} in {}", entry.getName(), jar, e);
+                }
+            }
+        }
+        return types;
+    }
+
+    public TypeInfo get(String qualifiedName) {
+        return byQualifiedName.get(qualifiedName);
+    }
+
+    public int size() {
+        return byQualifiedName.size();
+    }
+
+    /**
+     * The types a DRL of the given package can refer to by simple name: the ones imported one by one or through a
+     * wildcard import, plus the ones of the package itself and of java.lang
+     */
+    public Collection<TypeInfo> getVisibleTypes(PackageDescr packageDescr) {
+        Map<String, TypeInfo> visible = new LinkedHashMap<>();
+        for (ImportDescr importDescr : packageDescr.getImports()) {
+            if (importDescr instanceof FunctionImportDescr) {
+                continue;
+            }
+            String target = importDescr.getTarget();
+            if (target.endsWith(".*")) {
+                addPackage(visible, target.substring(0, target.length() - 2));
+            } else {
+                TypeInfo type = byQualifiedName.get(target);
+                if (type != null) {
+                    visible.putIfAbsent(type.getSimpleName(), type);
+                }
+            }
+        }
+        addPackage(visible, packageDescr.getName() == null ? "" : packageDescr.getName());
+        addPackage(visible, "java.lang");
+        return visible.values();
+    }
+
+    private void addPackage(Map<String, TypeInfo> visible, String packageName) {
+        for (TypeInfo type : byPackage.getOrDefault(packageName, Collections.emptyList())) {
+            visible.putIfAbsent(type.getSimpleName(), type);
+        }
+    }
+
+    /**
+     * @param name a simple name visible from the package, or a qualified name
+     * @return the type, or null if not found
+     */
+    public TypeInfo resolve(String name, PackageDescr packageDescr) {
+        TypeInfo type = byQualifiedName.get(name);
+        if (type != null) {
+            return type;
+        }
+        return getVisibleTypes(packageDescr).stream().filter(t -> t.getSimpleName().equals(name)).findFirst().orElse(null);
+    }
+
+    /**
+     * @return the fields of the type, including the ones inherited from its indexed superclasses
+     */
+    public Map<String, String> getFields(TypeInfo type) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        Set<String> visited = new HashSet<>();
+        for (TypeInfo current = type; current != null && visited.add(current.getQualifiedName()); current = current.getSuperName() == null ? null : byQualifiedName.get(current.getSuperName())) {
+            current.getFields().forEach(fields::putIfAbsent);
+        }
+        return fields;
+    }
+
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sources.size());
+            for (Map.Entry<String, Source> entry : sources.entrySet()) {
+                Source source = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(source.lastModified);
+                out.writeLong(source.size);
+                out.writeInt(source.types.size());
+                for (TypeInfo type : source.types) {
+                    out.writeUTF(type.getQualifiedName());
+                    out.writeUTF(type.getSuperName() == null ? "" : type.getSuperName());
+                    out.writeInt(type.getFields().size());
+                    for (Map.Entry<String, String> field : type.getFields().entrySet()) {
+                        out.writeUTF(field.getKey());
+                        out.writeUTF(field.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the saved index, or {@link #EMPTY} if the file does not exist or was saved in another format
+     */
+    public static TypeIndex load(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return EMPTY;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return EMPTY;
+            }
+            Map<String, Source> sources = new LinkedHashMap<>();
+            int sourceCount = in.readInt();
+            for (int i = 0; i < sourceCount; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long size = in.readLong();
+                int typeCount = in.readInt();
+                List<TypeInfo> types = new ArrayList<>(typeCount);
+                for (int j = 0; j < typeCount; j++) {
+                    String qualifiedName = in.readUTF();
+                    String superName = in.readUTF();
+                    int fieldCount = in.readInt();
+                    Map<String, String> fields = new LinkedHashMap<>();
+                    for (int k = 0; k < fieldCount; k++) {
+                        fields.put(in.readUTF(), in.readUTF());
+                    }
+                    types.add(new TypeInfo(qualifiedName, superName.isEmpty() ? null : superName, fields));
+                }
+                sources.put(path, new Source(lastModified, size, types));
+            }
+            return new TypeIndex(sources);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TypeIndex{" +
+                "sources=" + sources.size() +
+                ", types=" + byQualifiedName.size() +
+                '}';
+    }
+
+    private static class Source {
+
+        private final long lastModified;
+        private final long size;
+        private final List<TypeInfo> types;
+
+        private Source(long lastModified, long size, List<TypeInfo> types) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.types = types;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.drools.completion;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A class found in the classpath by {@link TypeIndex}, with the properties a constraint can refer to: public fields
+ * and the properties exposed by public getters.
+ */
+public class TypeInfo {
+
+    private final String qualifiedName;
+    private final String superName;
+    private final Map<String, String> fields;
+
+    /**
+     * @param superName qualified name of the superclass, or null
+     * @param fields property names mapped to their type simple names
+     */
+    public TypeInfo(String qualifiedName, String superName, Map<String, String> fields) {
+        this.qualifiedName = qualifiedName;
+        this.superName = superName;
+        this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+    }
+
+    public String getQualifiedName() {
+        return qualifiedName;
+    }
+
+    public String getSimpleName() {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * The package, including the enclosing classes of a nested class
+     */
+    public String getPackageName() {
+        int lastDot = qualifiedName.lastIndexOf('.');
+        return lastDot < 0 ? "" : qualifiedName.substring(0, lastDot);
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    /**
+     * Fields declared by this class only, see {@link TypeIndex#getFields} for the inherited ones
+     */
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return "TypeInfo{" +
+                "qualifiedName='" + qualifiedName + '\'' +
+                ", fields=" + fields +
+                '}';
+    }
+}
@@ -0,0 +1,107 @@
+package org.drools.completion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.Position;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompletionTrieTest {
+
+    private static final List<CompletionItem> candidates = List.of(
+            DRLCompletionHelper.createCompletionItem("rule", CompletionItemKind.Keyword),
+            DRLCompletionHelper.createCompletionItem("ruleflow-group", CompletionItemKind.Keyword),
+            DRLCompletionHelper.createCompletionItem("no-loop", CompletionItemKind.Keyword),
+            DRLCompletionHelper.createCompletionItem("salience", CompletionItemKind.Keyword),
+            DRLCompletionHelper.createCompletionItem("$result", CompletionItemKind.Variable),
+            DRLCompletionHelper.createCompletionItem("MyRule", CompletionItemKind.Class));
+
+    @Test
+    void rank_fuzzySubsequence() {
+        CompletionTrie trie = CompletionTrie.of(candidates);
+
+        assertThat(trie.rank("rfg")).extracting(CompletionItem::getLabel).containsExactly("ruleflow-group");
+        assertThat(trie.rank("nl")).extracting(CompletionItem::getLabel).containsExactly("no-loop");
+        // the first character has to start a word: "salience" does not match "l"
+        assertThat(trie.rank("l")).extracting(CompletionItem::getLabel).containsExactly("no-loop");
+        assertThat(trie.rank("")).hasSize(candidates.size());
+    }
+
+    @Test
+    void rank_bestFirst() {
+        CompletionTrie trie = CompletionTrie.of(candidates);
+
+        // a prefix match ranks before a word start match, a consecutive match before a scattered one
+        assertThat(trie.rank("ru")).extracting(CompletionItem::getLabel).containsExactly("rule", "ruleflow-group", "MyRule", "$result");
+        assertThat(trie.rank("ru")).extracting(CompletionItem::getSortText).containsExactly("0000", "0001", "0002", "0003");
+    }
+
+    @Test
+    void rank_copiesTemplates() {
+        CompletionTrie trie = CompletionTrie.of(candidates);
+
+        List<CompletionItem> ranked = trie.rank("rule");
+        assertThat(ranked.get(0)).isNotSameAs(candidates.get(0));
+        assertThat(candidates.get(0).getSortText()).isNull();
+    }
+
+    @Test
+    void rank_symbolsBeforeFields() {
+        CompletionTrie trie = CompletionTrie.of(List.of(
+                DRLCompletionHelper.createCompletionItem("total", CompletionItemKind.Field),
+                DRLCompletionHelper.createCompletionItem("total", CompletionItemKind.Function),
+                DRLCompletionHelper.createCompletionItem("total", CompletionItemKind.Class),
+                DRLCompletionHelper.createCompletionItem("total", CompletionItemKind.Variable)));
+
+        assertThat(trie.rank("tot")).extracting(CompletionItem::getKind)
+                .containsExactly(CompletionItemKind.Variable, CompletionItemKind.Function, CompletionItemKind.Field, CompletionItemKind.Class);
+    }
+
+    @Test
+    void complete_incompleteWhenTruncated() {
+        List<CompletionItem> types = new ArrayList<>();
+        for (int i = 0; i < CompletionTrie.MAX_RESULTS + 50; i++) {
+            types.add(DRLCompletionHelper.createCompletionItem("Type" + i, CompletionItemKind.Class));
+        }
+        CompletionTrie trie = CompletionTrie.of(types);
+
+        // the client has to ask again as the word grows to see the others
+        CompletionList all = trie.complete("");
+        assertThat(all.isIncomplete()).isTrue();
+        assertThat(all.getItems()).hasSize(CompletionTrie.MAX_RESULTS);
+        CompletionList some = trie.complete("Type24");
+        assertThat(some.isIncomplete()).isFalse();
+        assertThat(some.getItems()).hasSizeLessThan(CompletionTrie.MAX_RESULTS);
+        assertThat(some.getItems().get(0).getLabel()).isEqualTo("Type24");
+    }
+
+    @Test
+    void union_ranksAllTogether() {
+        CompletionTrie keywords = CompletionTrie.of(candidates.subList(0, 4));
+        CompletionTrie others = CompletionTrie.of(candidates.subList(4, 6));
+        CompletionTrie union = CompletionTrie.union(keywords, others);
+
+        assertThat(union.size()).isEqualTo(candidates.size());
+        assertThat(union.rank("ru")).extracting(CompletionItem::getLabel).containsExactly("rule", "ruleflow-group", "MyRule", "$result");
+    }
+
+    @Test
+    void keywordTemplatesShared() {
+        List<String> keywords = List.of("rule", "query");
+        assertThat(DRLCompletionHelper.keywordTrie(List.of("rule", "query"))).isSameAs(DRLCompletionHelper.keywordTrie(keywords));
+
+        // the items handed out are copies, free to be modified
+        String drl = "package org.test;\n";
+        List<CompletionItem> first = DRLCompletionHelper.getCompletionItems(drl, new Position(1, 0), null);
+        assertThat(first).isNotEmpty();
+        first.get(0).setSortText("modified");
+        List<CompletionItem> second = DRLCompletionHelper.getCompletionItems(drl, new Position(1, 0), null);
+        assertThat(second.get(0)).isNotSameAs(first.get(0));
+        assertThat(second.get(0).getSortText()).isNull();
+    }
+}
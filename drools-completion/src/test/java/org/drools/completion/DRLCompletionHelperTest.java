@@ -1,10 +1,19 @@
 package org.drools.completion;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.drools.parser.DRLParser;
 import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.CompletionParams;
 import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.MessageActionItem;
@@ -18,6 +27,9 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.drools.parser.DRLParserHelper.computeTokenIndex;
+import static org.drools.parser.DRLParserHelper.createDrlParser;
 
 class DRLCompletionHelperTest {
 
@@ -39,6 +51,199 @@ class DRLCompletionHelperTest {
         assertThat(completionItem.getInsertText()).isEqualTo("suggestion");
     }
 
+    @Test
+    void getCompletionItems_lexesOnlyUpToCaret() {
+        StringBuilder drl = new StringBuilder("package org.test;\nimport org.test.model.Person;\n");
+        for (int i = 0; i < 100; i++) {
+            drl.append("rule R").append(i).append(" when\n  $p : Person( age > ").append(i).append(" )\nthen\nend\n");
+        }
+        String text = drl.toString();
+
+        DRLParser truncated = DRLCompletionHelper.createCaretTruncatedDrlParser(text, 2, 0);
+        ((CommonTokenStream) truncated.getInputStream()).fill();
+        DRLParser full = createDrlParser(text);
+        ((CommonTokenStream) full.getInputStream()).fill();
+        assertThat(truncated.getInputStream().size()).isLessThan(10);
+        assertThat(full.getInputStream().size()).isGreaterThan(1000);
+
+        for (Position caret : List.of(new Position(1, 0), new Position(2, 10), new Position(4, 4), new Position(5, 0))) {
+            assertThat(labels(DRLCompletionHelper.getCompletionItems(text, caret, getLanguageClient())))
+                    .isEqualTo(labels(DRLCompletionHelper.getCompletionItems(full, computeTokenIndex(full, caret.getLine() + 1, caret.getCharacter()))));
+        }
+    }
+
+    @Test
+    void getCompletionItems_scopedToStatement() {
+        String text = "package org.test;\n" +
+                "rule R1 when\n" +
+                "  Person()\n" +
+                "then\n" +
+                "end\n" +
+                "\n" +
+                "rule R2 when\n" +
+                "  Person()\n" +
+                "then\n" +
+                "end\n";
+
+        DRLParser drlParser = createDrlParser(text);
+        ((CommonTokenStream) drlParser.getInputStream()).fill();
+
+        int inHeader = computeTokenIndex(drlParser, 2, 0);
+        assertThat(DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), inHeader)).isNull();
+
+        int betweenRules = computeTokenIndex(drlParser, 6, 0);
+        ParserRuleContext betweenContext = DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), betweenRules);
+        assertThat(betweenContext).isInstanceOf(DRLParser.DrlStatementdefContext.class);
+        assertThat(betweenContext.start.getTokenIndex()).isEqualTo(betweenRules);
+
+        int inR2 = computeTokenIndex(drlParser, 8, 2);
+        ParserRuleContext ruledefContext = DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), inR2);
+        assertThat(ruledefContext).isInstanceOf(DRLParser.RuledefContext.class);
+        assertThat(ruledefContext.start.getLine()).isEqualTo(7);
+
+        for (int[] caret : new int[][]{{2, 0}, {2, 8}, {3, 0}, {4, 0}, {8, 10}, {9, 4}, {10, 0}}) {
+            int index = computeTokenIndex(drlParser, caret[0], caret[1]);
+            assertThat(labels(DRLCompletionHelper.getCompletionItems(drlParser, index, DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), index))))
+                    .as("caret at %d:%d", caret[0], caret[1])
+                    .isEqualTo(labels(DRLCompletionHelper.getCompletionItems(drlParser, index)));
+        }
+        for (int[] caret : new int[][]{{6, 0}, {7, 0}}) {
+            int index = computeTokenIndex(drlParser, caret[0], caret[1]);
+            assertThat(labels(DRLCompletionHelper.getCompletionItems(drlParser, index, DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), index))))
+                    .as("caret at %d:%d", caret[0], caret[1])
+                    .isEqualTo(withoutOperatorsAfterEnd(DRLCompletionHelper.getCompletionItems(drlParser, index)));
+        }
+    }
+
+    @Test
+    void getCompletionItems_scopedToTopLevelStatement() {
+        String text = "package org.test;\n" +
+                "import org.test.Person\n" +
+                "import function org.test.Util.check;\n" +
+                "global java.util.List list;\n" +
+                "function void log(String s) {\n" +
+                "  System.out.println(s);\n" +
+                "}\n" +
+                "rule R1 when\n" +
+                "  Person()\n" +
+                "then\n" +
+                "end\n" +
+                "\n";
+
+        DRLParser drlParser = createDrlParser(text);
+        ((CommonTokenStream) drlParser.getInputStream()).fill();
+
+        // the import has no semicolon: the walk starts at it, to propose what may follow it
+        int afterImport = computeTokenIndex(drlParser, 3, 0);
+        ParserRuleContext importContext = DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), afterImport);
+        assertThat(importContext).isInstanceOf(DRLParser.CompilationUnitContext.class);
+        assertThat(importContext.start.getLine()).isEqualTo(2);
+
+        int inFunction = computeTokenIndex(drlParser, 6, 2);
+        assertThat(DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), inFunction).start.getLine()).isEqualTo(5);
+
+        for (int[] caret : new int[][]{{3, 0}, {4, 0}, {5, 0}, {6, 2}, {8, 0}, {9, 2}}) {
+            int index = computeTokenIndex(drlParser, caret[0], caret[1]);
+            ParserRuleContext statementContext = DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), index);
+            assertThat(statementContext).as("caret at %d:%d", caret[0], caret[1]).isNotNull();
+            assertThat(labels(DRLCompletionHelper.getCompletionItems(drlParser, index, statementContext)))
+                    .as("caret at %d:%d", caret[0], caret[1])
+                    .isEqualTo(labels(DRLCompletionHelper.getCompletionItems(drlParser, index)));
+        }
+        int afterEnd = computeTokenIndex(drlParser, 12, 0);
+        assertThat(labels(DRLCompletionHelper.getCompletionItems(drlParser, afterEnd, DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), afterEnd))))
+                .isEqualTo(withoutOperatorsAfterEnd(DRLCompletionHelper.getCompletionItems(drlParser, afterEnd)));
+    }
+
+    @Test
+    void getCompletionItems_afterLastRuleSkipsPrecedingRules() {
+        StringBuilder text = new StringBuilder("package org.test;\n");
+        for (int i = 0; i < 200; i++) {
+            text.append("rule R").append(i).append(" when\n  Person()\nthen\nend\n");
+        }
+        DRLParser drlParser = createDrlParser(text.toString());
+        ((CommonTokenStream) drlParser.getInputStream()).fill();
+
+        int afterLastEnd = computeTokenIndex(drlParser, 802, 0);
+        ParserRuleContext statementContext = DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), afterLastEnd);
+        assertThat(statementContext).isInstanceOf(DRLParser.DrlStatementdefContext.class);
+        assertThat(statementContext.start.getTokenIndex()).isEqualTo(afterLastEnd);
+        assertThat(labels(DRLCompletionHelper.getCompletionItems(drlParser, afterLastEnd, statementContext))).contains("rule", "import", "global", "function");
+    }
+
+    @Test
+    void getCompletionItems_caretPastTheEnd() {
+        String text = "rule R1 when\nthen end";
+
+        assertThat(DRLCompletionHelper.getCompletionItems(text, new Position(10, 0), null)).isEmpty();
+        assertThat(DRLCompletionHelper.getCompletionList(text, new Position(10, 0), Duration.ofSeconds(10), () -> {}).getItems()).isEmpty();
+    }
+
+    @Test
+    void getCompletionList_withinBudget() {
+        String text = "package org.test;\nrule R1 when\n  Person()\nthen\nend\n";
+
+        CompletionList completionList = DRLCompletionHelper.getCompletionList(text, new Position(3, 0), Duration.ofSeconds(10), () -> { });
+        assertThat(completionList.isIncomplete()).isFalse();
+        assertThat(labels(completionList.getItems())).contains("then");
+    }
+
+    @Test
+    void getCompletionList_budgetExceeded() {
+        String text = "package org.test;\nrule R1 when\n  Person()\nthen\nend\n";
+
+        CompletionList completionList = DRLCompletionHelper.getCompletionList(text, new Position(3, 0), Duration.ZERO, () -> { });
+        assertThat(completionList.isIncomplete()).isTrue();
+        assertThat(completionList.getItems()).isEmpty();
+    }
+
+    @Test
+    void getCompletionList_walkOutlivesBudget() throws InterruptedException {
+        StringBuilder text = new StringBuilder("package org.test;\nrule R1 when\n");
+        for (int i = 0; i < 150; i++) {
+            text.append("  Person( age > ").append(i).append(" )\n");
+        }
+        text.append("then\nend\n");
+        Position caret = new Position(152, 0);
+        long missesBefore = KeywordCompletionTable.getMissCount();
+
+        // the walk over the 150 patterns takes longer than the budget, but goes on once the request gives up
+        CompletionList completionList = DRLCompletionHelper.getCompletionList(text, caret, Duration.ofMillis(5), () -> { });
+        assertThat(completionList.isIncomplete()).isTrue();
+
+        for (int i = 0; i < 200 && completionList.isIncomplete(); i++) {
+            Thread.sleep(50);
+            completionList = DRLCompletionHelper.getCompletionList(text, caret, Duration.ofMillis(5), () -> { });
+        }
+        assertThat(completionList.isIncomplete()).isFalse();
+        assertThat(labels(completionList.getItems())).contains("then");
+        assertThat(KeywordCompletionTable.getMissCount() - missesBefore).isEqualTo(1);
+    }
+
+    @Test
+    void getCompletionList_cancelled() {
+        String text = "package org.test;\nrule R1 when\n  Person()\nthen\nend\n";
+
+        assertThatThrownBy(() -> DRLCompletionHelper.getCompletionList(text, new Position(3, 0), Duration.ofSeconds(10), () -> {
+            throw new CancellationException();
+        })).isInstanceOf(CancellationException.class);
+    }
+
+    /**
+     * The walk from compilationUnit also reads an <code>end</code> as an identifier of the consequence, and so
+     * proposes the operators that may follow it, which the walk starting after the rule leaves out
+     */
+    private Set<String> withoutOperatorsAfterEnd(List<CompletionItem> items) {
+        Set<String> labels = new HashSet<>(labels(items));
+        assertThat(labels).contains("matches", "instanceof");
+        labels.removeAll(Set.of("matches", "instanceof"));
+        return labels;
+    }
+
+    private Set<String> labels(List<CompletionItem> items) {
+        return items.stream().map(CompletionItem::getLabel).collect(Collectors.toSet());
+    }
+
     private LanguageClient getLanguageClient() {
         List<Diagnostic> diagnostics = new ArrayList<>();
        return  new LanguageClient() {
@@ -0,0 +1,123 @@
+package org.drools.completion;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.drools.parser.DRLParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.drools.parser.DRLParserHelper.computeTokenIndex;
+import static org.drools.parser.DRLParserHelper.createDrlParser;
+
+class KeywordCompletionTableTest {
+
+    private static final String drl =
+            "package org.test;\n" +
+                    "rule R1 when\n" +
+                    "  Person()\n" +
+                    "then\n" +
+                    "end\n" +
+                    "rule R2 when\n" +
+                    "  Address()\n" +
+                    "then\n" +
+                    "end\n";
+
+    @BeforeEach
+    void clearTable() {
+        KeywordCompletionTable.clear();
+    }
+
+    @Test
+    void getKeywords_sameAsCodeCompletionCore() {
+        DRLParser drlParser = parser();
+        for (int[] caret : new int[][]{{1, 0}, {2, 5}, {3, 8}, {4, 0}, {5, 0}, {6, 0}}) {
+            int index = computeTokenIndex(drlParser, caret[0], caret[1]);
+            assertThat(KeywordCompletionTable.getKeywords(drlParser, index, null))
+                    .as("caret at %d:%d", caret[0], caret[1])
+                    .containsExactlyInAnyOrderElementsOf(KeywordCompletionTable.collectKeywords(drlParser, index, null));
+        }
+    }
+
+    @Test
+    void getKeywords_reusesCandidatesOfSameTokenTypes() {
+        DRLParser drlParser = parser();
+
+        int inR1 = computeTokenIndex(drlParser, 4, 0);
+        ParserRuleContext r1 = DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), inR1);
+        int inR2 = computeTokenIndex(drlParser, 8, 0);
+        ParserRuleContext r2 = DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), inR2);
+
+        assertThat(KeywordCompletionTable.getKeywords(drlParser, inR1, r1)).contains("then");
+        assertThat(KeywordCompletionTable.getMissCount()).isEqualTo(1);
+
+        // "rule R2 when Address()" has the same token types as "rule R1 when Person()"
+        assertThat(KeywordCompletionTable.getKeywords(drlParser, inR2, r2)).contains("then");
+        assertThat(KeywordCompletionTable.getHitCount()).isEqualTo(1);
+        assertThat(KeywordCompletionTable.getMissCount()).isEqualTo(1);
+        assertThat(KeywordCompletionTable.size()).isEqualTo(1);
+    }
+
+    @Test
+    void getKeywords_longPrefixesStored() {
+        StringBuilder longDrl = new StringBuilder("package org.test;\n");
+        for (int i = 0; i < 20; i++) {
+            longDrl.append("rule R").append(i).append(" when\n  Person()\nthen\nend\n");
+        }
+        DRLParser drlParser = parser(longDrl.toString());
+        int atTheEnd = computeTokenIndex(drlParser, 82, 0);
+
+        // a signature takes the same memory whatever the number of tokens it covers, so long ones are stored too
+        assertThat(KeywordCompletionTable.getKeywords(drlParser, atTheEnd, null)).contains("rule");
+        assertThat(KeywordCompletionTable.size()).isEqualTo(1);
+        assertThat(KeywordCompletionTable.getKeywords(drlParser, atTheEnd, null)).contains("rule");
+        assertThat(KeywordCompletionTable.getHitCount()).isEqualTo(1);
+
+        // the caret on the last end, one token less, is another signature
+        int beforeLastEnd = computeTokenIndex(drlParser, 81, 0);
+        assertThat(KeywordCompletionTable.Signature.of(drlParser.getInputStream(), beforeLastEnd, null))
+                .isNotEqualTo(KeywordCompletionTable.Signature.of(drlParser.getInputStream(), atTheEnd, null));
+        assertThat(KeywordCompletionTable.getKeywords(drlParser, beforeLastEnd, null)).contains("end");
+        assertThat(KeywordCompletionTable.size()).isEqualTo(2);
+    }
+
+    @Test
+    void getKeywordsAsync_stopsWalkWhenCancelled() {
+        DRLParser drlParser = parser();
+        int inR1 = computeTokenIndex(drlParser, 4, 0);
+        ParserRuleContext r1 = DRLCompletionHelper.findStatementContext(drlParser.getInputStream(), inR1);
+
+        assertThat(KeywordCompletionTable.collectKeywords(drlParser, inR1, r1, () -> { }))
+                .containsExactlyInAnyOrderElementsOf(KeywordCompletionTable.collectKeywords(drlParser, inR1, r1));
+
+        AtomicInteger checks = new AtomicInteger();
+        CompletableFuture<List<String>> keywords = KeywordCompletionTable.getKeywordsAsync(drlParser, inR1, r1, () -> {
+            if (checks.incrementAndGet() > 1) {
+                throw new CancellationException();
+            }
+        });
+        assertThatThrownBy(keywords::join).isInstanceOf(CancellationException.class);
+        assertThat(checks).hasValue(2); // once before copying the tokens, once reading the first one
+        assertThat(KeywordCompletionTable.size()).isZero();
+
+        // the next request computes the signature again
+        assertThat(KeywordCompletionTable.getKeywordsAsync(drlParser, inR1, r1, () -> { }).join()).contains("then");
+        assertThat(KeywordCompletionTable.size()).isEqualTo(1);
+    }
+
+    private static DRLParser parser() {
+        return parser(drl);
+    }
+
+    private static DRLParser parser(String drl) {
+        DRLParser drlParser = createDrlParser(drl);
+        ((CommonTokenStream) drlParser.getInputStream()).fill();
+        return drlParser;
+    }
+}
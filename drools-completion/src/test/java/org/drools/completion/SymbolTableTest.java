@@ -0,0 +1,80 @@
+package org.drools.completion;
+
+import java.time.Duration;
+
+import org.drools.parser.ConcurrentDRLParser;
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.Position;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SymbolTableTest {
+
+    private static final String drl =
+            "package org.test;\n" +
+                    "global java.util.List results;\n" +
+                    "function int twice(int x) { return x * 2; }\n" +
+                    "rule R1 when\n" +
+                    "  $p : Person( $a : age > 18 )\n" +
+                    "  Address( owner == $p )\n" +
+                    "then\n" +
+                    "  results.add($p);\n" +
+                    "end\n" +
+                    "rule R2 when\n" +
+                    "  $c : Car()\n" +
+                    "then\n" +
+                    "end\n";
+
+    private final ConcurrentDRLParser parser = new ConcurrentDRLParser();
+
+    @Test
+    void getVisibleSymbols_scopedByRule() {
+        SymbolTable symbolTable = SymbolTable.build(parser.parse(drl), SymbolTable.EMPTY, 1);
+
+        assertThat(symbolTable.getVisibleSymbols("R1", 1000, true)).extracting(Symbol::getName)
+                .containsExactlyInAnyOrder("$p", "$a", "results", "twice");
+        assertThat(symbolTable.getVisibleSymbols("R2", 1000, true)).extracting(Symbol::getName)
+                .containsExactlyInAnyOrder("$c", "results", "twice");
+
+        // inside the constraints of the first pattern, only its label is declared
+        int insidePerson = drl.indexOf("age >") - drl.indexOf("rule R1");
+        assertThat(symbolTable.getVisibleSymbols("R1", insidePerson, false)).extracting(Symbol::getName)
+                .containsExactlyInAnyOrder("$a", "results", "twice");
+        int insideAddress = drl.indexOf("owner") - drl.indexOf("rule R1");
+        assertThat(symbolTable.getVisibleSymbols("R1", insideAddress, false)).extracting(Symbol::getName)
+                .contains("$p", "$a");
+    }
+
+    @Test
+    void build_rebuildsChangedRulesOnly() {
+        SymbolTable first = SymbolTable.build(parser.parse(drl), SymbolTable.EMPTY, 1);
+        assertThat(first.getRebuiltRuleCount()).isEqualTo(2);
+
+        // text added before the rules shifts them, but does not change them
+        String shifted = drl.replace("package org.test;\n", "package org.test;\n\n// comment\n");
+        SymbolTable second = SymbolTable.build(parser.parse(shifted), first, 2);
+        assertThat(second.getRebuiltRuleCount()).isZero();
+        assertThat(second.getVisibleSymbols("R1", 1000, true)).extracting(Symbol::getName).contains("$p", "$a");
+
+        String edited = shifted.replace("$c : Car()", "$c : Car()\n  $d : Driver()");
+        SymbolTable third = SymbolTable.build(parser.parse(edited), second, 3);
+        assertThat(third.getRebuiltRuleCount()).isEqualTo(1);
+        assertThat(third.getVisibleSymbols("R2", 1000, true)).extracting(Symbol::getName).contains("$c", "$d");
+    }
+
+    @Test
+    void getCompletionList_proposesSymbolsInConstraintsAndConsequences() {
+        SymbolTable symbolTable = SymbolTable.build(parser.parse(drl), SymbolTable.EMPTY, 1);
+
+        CompletionList constraint = DRLCompletionHelper.getCompletionList(drl, new Position(5, 21), Duration.ofSeconds(10), () -> { }, TypeIndex.EMPTY, symbolTable);
+        assertThat(constraint.getItems()).extracting(CompletionItem::getLabel).contains("$p", "$a", "results").doesNotContain("$c");
+
+        CompletionList consequence = DRLCompletionHelper.getCompletionList(drl, new Position(7, 2), Duration.ofSeconds(10), () -> { }, TypeIndex.EMPTY, symbolTable);
+        assertThat(consequence.getItems()).extracting(CompletionItem::getLabel).contains("$p", "$a", "twice");
+
+        CompletionList lhs = DRLCompletionHelper.getCompletionList(drl, new Position(5, 0), Duration.ofSeconds(10), () -> { }, TypeIndex.EMPTY, symbolTable);
+        assertThat(lhs.getItems()).extracting(CompletionItem::getLabel).doesNotContain("$p", "results");
+    }
+}
@@ -0,0 +1,147 @@
+package org.drools.completion;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.google.gson.Gson;
+import org.drools.completion.model.Person;
+import org.drools.drl.ast.descr.ImportDescr;
+import org.drools.drl.ast.descr.PackageDescr;
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.MarkupContent;
+import org.eclipse.lsp4j.Position;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TypeIndexTest {
+
+    private static final Path MODEL_CLASSES = Paths.get("target/test-classes/org/drools/completion/model");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void build_readsFieldsAndGetters() {
+        TypeIndex typeIndex = TypeIndex.build(List.of(MODEL_CLASSES));
+
+        TypeInfo person = typeIndex.get(Person.class.getName());
+        assertThat(person.getSimpleName()).isEqualTo("Person");
+        assertThat(person.getSuperName()).isEqualTo("org.drools.completion.model.Entity");
+        assertThat(person.getFields()).containsOnlyKeys("nickname", "name", "age", "adult");
+        assertThat(person.getFields()).containsEntry("age", "int").containsEntry("name", "String");
+        assertThat(typeIndex.getFields(person)).containsKeys("name", "id");
+    }
+
+    @Test
+    void build_readsJars() throws IOException {
+        Path jar = tempDir.resolve("model.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("org/drools/completion/model/Person.class"));
+            out.write(Files.readAllBytes(MODEL_CLASSES.resolve("Person.class")));
+            out.closeEntry();
+        }
+
+        TypeIndex typeIndex = TypeIndex.build(List.of(jar));
+        assertThat(typeIndex.size()).isEqualTo(1);
+        assertThat(typeIndex.get(Person.class.getName())).isNotNull();
+    }
+
+    @Test
+    void update_onlyReadsChangedSources() throws IOException {
+        Path classes = tempDir.resolve("classes");
+        Files.createDirectories(classes);
+        Files.copy(MODEL_CLASSES.resolve("Person.class"), classes.resolve("Person.class"));
+
+        TypeIndex typeIndex = TypeIndex.build(List.of(classes));
+        TypeIndex unchanged = typeIndex.update(List.of(classes));
+        assertThat(unchanged.get(Person.class.getName())).isSameAs(typeIndex.get(Person.class.getName()));
+
+        Files.copy(MODEL_CLASSES.resolve("Entity.class"), classes.resolve("Entity.class"));
+        TypeIndex updated = typeIndex.update(List.of(classes));
+        assertThat(updated.size()).isEqualTo(2);
+        assertThat(updated.get(Person.class.getName())).isSameAs(typeIndex.get(Person.class.getName()));
+    }
+
+    @Test
+    void saveAndLoad() throws IOException {
+        TypeIndex typeIndex = TypeIndex.build(List.of(MODEL_CLASSES));
+        Path file = tempDir.resolve("types.idx");
+        typeIndex.save(file);
+
+        TypeIndex loaded = TypeIndex.load(file);
+        assertThat(loaded.size()).isEqualTo(typeIndex.size());
+        assertThat(loaded.get(Person.class.getName()).getFields()).isEqualTo(typeIndex.get(Person.class.getName()).getFields());
+        // nothing changed on disk, so the loaded types are kept
+        assertThat(loaded.update(List.of(MODEL_CLASSES)).get(Person.class.getName())).isSameAs(loaded.get(Person.class.getName()));
+    }
+
+    @Test
+    void getVisibleTypes_filteredByImports() {
+        TypeIndex typeIndex = TypeIndex.build(List.of(MODEL_CLASSES));
+
+        PackageDescr packageDescr = new PackageDescr("org.test");
+        assertThat(typeIndex.getVisibleTypes(packageDescr)).isEmpty();
+
+        packageDescr.addImport(new ImportDescr(Person.class.getName()));
+        assertThat(typeIndex.getVisibleTypes(packageDescr)).extracting(TypeInfo::getSimpleName).containsExactly("Person");
+
+        packageDescr.addImport(new ImportDescr("org.drools.completion.model.*"));
+        assertThat(typeIndex.getVisibleTypes(packageDescr)).extracting(TypeInfo::getSimpleName).containsExactlyInAnyOrder("Person", "Entity");
+    }
+
+    @Test
+    void getCompletionList_proposesFactTypesAndFields() {
+        TypeIndex typeIndex = TypeIndex.build(List.of(MODEL_CLASSES));
+        String text = "package org.test;\n" +
+                "import org.drools.completion.model.Person;\n" +
+                "rule R when\n" +
+                "  $p : Person( age > 18, )\n" +
+                "then\n" +
+                "end\n";
+
+        CompletionList types = DRLCompletionHelper.getCompletionList(text, new Position(3, 7), Duration.ofSeconds(10), () -> { }, typeIndex);
+        assertThat(types.getItems()).extracting(CompletionItem::getLabel).contains("Person").doesNotContain("Entity", "name");
+
+        CompletionList fields = DRLCompletionHelper.getCompletionList(text, new Position(3, 25), Duration.ofSeconds(10), () -> { }, typeIndex);
+        assertThat(fields.getItems()).extracting(CompletionItem::getLabel).contains("name", "age", "id", "nickname").doesNotContain("Person");
+    }
+
+    @Test
+    void resolve_fillsDetailAndDocumentation() {
+        TypeIndex typeIndex = TypeIndex.build(List.of(MODEL_CLASSES));
+        String text = "import org.drools.completion.model.Person;\n" +
+                "rule R when\n" +
+                "  Person( )\n" +
+                "then\n" +
+                "end\n";
+
+        CompletionList types = DRLCompletionHelper.getCompletionList(text, new Position(2, 2), Duration.ofSeconds(10), () -> { }, typeIndex);
+        CompletionItem person = CompletionTrie.of(types.getItems()).rank("Pers").get(0);
+        assertThat(person.getLabel()).isEqualTo("Person");
+        assertThat(person.getDetail()).isNull();
+        assertThat(person.getDocumentation()).isNull();
+
+        // the data comes back from the client as JSON
+        person.setData(new Gson().toJsonTree(person.getData(), CompletionItemData.class).getAsJsonObject());
+        CompletionResolver.resolve(person, typeIndex);
+        assertThat(person.getDetail()).isEqualTo(Person.class.getName());
+        assertThat(person.getDocumentation().getRight()).extracting(MarkupContent::getValue).asString()
+                .contains("extends `org.drools.completion.model.Entity`", "`int age`", "`long id`");
+
+        CompletionList fields = DRLCompletionHelper.getCompletionList(text, new Position(2, 10), Duration.ofSeconds(10), () -> { }, typeIndex);
+        CompletionItem age = CompletionTrie.of(fields.getItems()).rank("age").get(0);
+        assertThat(age.getKind()).isEqualTo(CompletionItemKind.Field);
+        CompletionResolver.resolve(age, typeIndex);
+        assertThat(age.getDetail()).isEqualTo("int");
+    }
+}
@@ -0,0 +1,14 @@
+package org.drools.completion.model;
+
+public class Entity {
+
+    private long id;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+}
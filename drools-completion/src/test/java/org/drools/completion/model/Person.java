@@ -0,0 +1,36 @@
+package org.drools.completion.model;
+
+public class Person extends Entity {
+
+    public String nickname;
+
+    private String name;
+    private int age;
+    private boolean adult;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        this.age = age;
+    }
+
+    public boolean isAdult() {
+        return adult;
+    }
+
+    public static Person of(String name) {
+        Person person = new Person();
+        person.setName(name);
+        return person;
+    }
+}
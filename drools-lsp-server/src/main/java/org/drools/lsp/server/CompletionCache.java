@@ -0,0 +1,94 @@
+package org.drools.lsp.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.drools.completion.CompletionTrie;
+
+/**
+ * Last completion candidates of each document. While a word is being typed the candidates do not change, as they
+ * only depend on the text preceding that word: an entry is therefore found again as long as the word starts at the
+ * same offset and no edit touched the text before it. Candidates are cached as a {@link CompletionTrie}, so that
+ * every keystroke only ranks them again.
+ */
+public class CompletionCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param contextEnd offset where the word being completed starts
+     * @return the cached candidates, or null
+     */
+    public CompletionTrie get(String uri, int contextEnd) {
+        Entry entry = entries.get(uri);
+        if (entry != null && entry.contextEnd == contextEnd) {
+            hits.increment();
+            return entry.candidates;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String uri, int contextVersion, int contextEnd, CompletionTrie candidates) {
+        entries.put(uri, new Entry(contextVersion, contextEnd, candidates));
+    }
+
+    /**
+     * Drops the entry of the document if the edit changed the text preceding its word
+     *
+     * @param firstEditedOffset the lowest offset touched by the edit, see {@link TextDocument#getFirstEditedOffset()}
+     */
+    public void textChanged(String uri, int firstEditedOffset) {
+        Entry entry = entries.get(uri);
+        if (entry != null && firstEditedOffset < entry.contextEnd) {
+            entries.remove(uri, entry);
+        }
+    }
+
+    public void remove(String uri) {
+        entries.remove(uri);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the document version the cached candidates of the document were computed on, or -1 if there are none
+     */
+    public int getContextVersion(String uri) {
+        Entry entry = entries.get(uri);
+        return entry == null ? -1 : entry.contextVersion;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private static class Entry {
+
+        private final int contextVersion;
+        private final int contextEnd;
+        private final CompletionTrie candidates;
+
+        private Entry(int contextVersion, int contextEnd, CompletionTrie candidates) {
+            this.contextVersion = contextVersion;
+            this.contextEnd = contextEnd;
+            this.candidates = candidates;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.drools.lsp.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.drools.parser.ParseResult;
+import org.drools.parser.ParseStats;
+
+/**
+ * Keeps the artifacts derived from the open documents, such as parse trees, tokens and PackageDescrs, within a memory
+ * budget. Documents are ordered by last use: when the artifacts of a new version take the total over the budget, the
+ * ones of the least recently used documents are evicted, leaving their text and compact indexes such as the symbol
+ * table. Evicted artifacts are rebuilt on demand. Sizes are estimates from the token and parse tree node counts.
+ */
+public class DocumentMemoryManager {
+
+    static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    // rough retained sizes on a 64 bits JVM with compressed oops
+    private static final int TOKEN_BYTES = 64;
+    private static final int NODE_BYTES = 80;
+    private static final int DESCR_BYTES_PER_NODE = 24;
+
+    private final Consumer<String> evictor;
+    private final Map<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long total;
+    private volatile long budget;
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param evictor drops the derived artifacts of a document
+     */
+    public DocumentMemoryManager(Consumer<String> evictor) {
+        this(evictor, DEFAULT_BUDGET);
+    }
+
+    public DocumentMemoryManager(Consumer<String> evictor, long budget) {
+        this.evictor = evictor;
+        this.budget = budget;
+    }
+
+    /**
+     * Records the size of the artifacts now derived from the document, evicting the ones of colder documents as
+     * needed. The document itself is never evicted here, even if alone over the budget, as it is being used.
+     */
+    public void retained(String uri, long size) {
+        List<String> victims = new ArrayList<>();
+        synchronized (sizes) {
+            Long previous = sizes.put(uri, size);
+            total += size - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> coldest = sizes.entrySet().iterator();
+            while (total > budget && coldest.hasNext()) {
+                Map.Entry<String, Long> entry = coldest.next();
+                if (!entry.getKey().equals(uri)) {
+                    total -= entry.getValue();
+                    victims.add(entry.getKey());
+                    coldest.remove();
+                }
+            }
+        }
+        for (String victim : victims) {
+            evictions.increment();
+            evictor.accept(victim);
+        }
+    }
+
+    /**
+     * Marks the document as the most recently used
+     */
+    public void touched(String uri) {
+        synchronized (sizes) {
+            sizes.get(uri);
+        }
+    }
+
+    /**
+     * Forgets the artifacts of the document, dropped by the caller
+     */
+    public void released(String uri) {
+        synchronized (sizes) {
+            Long previous = sizes.remove(uri);
+            if (previous != null) {
+                total -= previous;
+            }
+        }
+    }
+
+    /**
+     * @return the estimated size of the artifacts derived from the document, 0 if they were evicted
+     */
+    public long getRetainedSize(String uri) {
+        synchronized (sizes) {
+            return sizes.getOrDefault(uri, 0L);
+        }
+    }
+
+    public long getTotalRetainedSize() {
+        synchronized (sizes) {
+            return total;
+        }
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return the estimated retained size of the tokens, parse tree and PackageDescr of the result
+     */
+    public static long estimateSize(ParseResult result) {
+        ParseStats stats = result.getParseStats();
+        if (stats == null) {
+            return 0;
+        }
+        long tokens = result.getTokens() == null ? 0 : (long) stats.getTokenCount() * TOKEN_BYTES;
+        long tree = result.getCompilationUnit() == null ? 0 : (long) stats.getParseTreeNodeCount() * NODE_BYTES;
+        return tokens + tree + (long) stats.getParseTreeNodeCount() * DESCR_BYTES_PER_NODE;
+    }
+}
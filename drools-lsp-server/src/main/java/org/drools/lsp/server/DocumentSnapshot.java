@@ -0,0 +1,90 @@
+package org.drools.lsp.server;
+
+import java.util.List;
+
+import org.antlr.v4.runtime.Token;
+import org.drools.drl.ast.descr.PackageDescr;
+import org.drools.parser.DRLParser;
+import org.drools.parser.DRLParserError;
+import org.drools.parser.ParseResult;
+import org.drools.parser.Rope;
+
+/**
+ * One version of a document parsed once: text, tokens, parse tree, PackageDescr and errors, shared by every feature
+ * working on that version. Consumers must not modify the tokens, tree or PackageDescr.
+ */
+public class DocumentSnapshot {
+
+    private final TextDocument document;
+    private final ParseResult parseResult;
+    private final ParseResultCache.ContentKey contentKey;
+
+    public DocumentSnapshot(TextDocument document, ParseResult parseResult, ParseResultCache.ContentKey contentKey) {
+        this.document = document;
+        this.parseResult = parseResult;
+        this.contentKey = contentKey;
+    }
+
+    public String getUri() {
+        return document.getUri();
+    }
+
+    public int getVersion() {
+        return document.getVersion();
+    }
+
+    public TextDocument getDocument() {
+        return document;
+    }
+
+    public Rope getText() {
+        return document.getText();
+    }
+
+    public ParseResult getParseResult() {
+        return parseResult;
+    }
+
+    public List<Token> getTokens() {
+        return parseResult.getTokens();
+    }
+
+    public DRLParser.CompilationUnitContext getCompilationUnit() {
+        return parseResult.getCompilationUnit();
+    }
+
+    /**
+     * @return the parsed PackageDescr, or null if it couldn't be created
+     */
+    public PackageDescr getPackageDescr() {
+        return parseResult.getPackageDescr();
+    }
+
+    public List<DRLParserError> getErrors() {
+        return parseResult.getErrors();
+    }
+
+    /**
+     * @return the id of the diagnostics of the snapshot for pull diagnostics: they only depend on the text, so the
+     * digest of the text identifies them, whatever the version
+     */
+    public String getResultId() {
+        return contentKey.toString();
+    }
+
+    /**
+     * @return true if the snapshot was taken from this version of the document, so that its tokens can stand for it
+     */
+    public boolean isOf(TextDocument document) {
+        return this.document == document;
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentSnapshot{" +
+                "uri='" + document.getUri() + '\'' +
+                ", version=" + document.getVersion() +
+                ", errors=" + parseResult.getErrors().size() +
+                '}';
+    }
+}
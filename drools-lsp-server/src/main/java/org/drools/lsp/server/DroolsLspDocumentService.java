@@ -1,94 +1,653 @@
 package org.drools.lsp.server;
 
+import org.antlr.v4.runtime.Token;
+import org.drools.completion.CompletionResolver;
+import org.drools.completion.CompletionTrie;
 import org.drools.completion.DRLCompletionHelper;
+import org.drools.completion.SymbolTable;
 import org.drools.drl.ast.descr.PackageDescr;
+import org.drools.parser.CancellationToken;
+import org.drools.parser.ConcurrentDRLParser;
+import org.drools.parser.DRLParserError;
+import org.drools.parser.ParseResult;
+import org.drools.parser.Rope;
+import org.drools.parser.RopeCharStream;
 import org.eclipse.lsp4j.*;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.TextDocumentService;
 
-import java.util.Collections;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Supplier;
-
-import static org.drools.parser.DRLParserHelper.parse;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class DroolsLspDocumentService implements TextDocumentService {
 
-    private final Map<String, String> sourcesMap = new ConcurrentHashMap<>();
+    static final Duration DEFAULT_COMPLETION_BUDGET = Duration.ofMillis(200);
+
+    static final Duration DEFAULT_DIAGNOSTICS_DEBOUNCE = Duration.ofMillis(150);
+
+    /**
+     * LSP error code of requests the server cancelled, missing from ResponseErrorCode
+     */
+    static final int SERVER_CANCELLED = -32802;
+
+    private static final Logger logger = Logger.getLogger(DroolsLspDocumentService.class.getSimpleName());
+
+    /**
+     * Delay before a parse the diagnostics lane had no room for is submitted again
+     */
+    private static final Duration PARSE_RETRY_DELAY = Duration.ofMillis(50);
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "drl-document-parse-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, TextDocument> documents = new ConcurrentHashMap<>();
+
+    private final CompletionCache completionCache = new CompletionCache();
+
+    private final ConcurrentDRLParser drlParser;
+    private final ParseResultCache parseResults;
+    private final Map<String, CompletableFuture<DocumentSnapshot>> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, DocumentSnapshot> latestSnapshots = new ConcurrentHashMap<>();
+    private final Map<String, Integer> publishedVersions = new ConcurrentHashMap<>();
+    private final Lock publishLock = new ReentrantLock();
+    private final DocumentMemoryManager memoryManager = new DocumentMemoryManager(this::evict);
+    // incremented whenever a document is opened, changed or closed, running the requests waiting for it once
+    private final AtomicLong documentsGeneration = new AtomicLong();
+    private final Set<Runnable> documentsChangedListeners = ConcurrentHashMap.newKeySet();
+    private final LongAdder parseCount = new LongAdder();
+    private final LongAdder cancelledParseCount = new LongAdder();
+    private final Map<String, SymbolTable> symbolTables = new ConcurrentHashMap<>();
+
+    private volatile Duration completionBudget = DEFAULT_COMPLETION_BUDGET;
+    private volatile Duration diagnosticsDebounce = DEFAULT_DIAGNOSTICS_DEBOUNCE;
+    private volatile boolean pullDiagnostics;
 
     private final DroolsLspServer server;
 
     public DroolsLspDocumentService(DroolsLspServer server) {
         this.server = server;
+        this.drlParser = new ConcurrentDRLParser();
+        this.parseResults = server.getResources().getParseResults();
     }
 
     @Override
     public void didOpen(DidOpenTextDocumentParams params) {
-        sourcesMap.put(params.getTextDocument().getUri(), params.getTextDocument().getText());
-        CompletableFuture.runAsync(() ->
-                server.getClient().publishDiagnostics(
-                        new PublishDiagnosticsParams(params.getTextDocument().getUri(), validate())
-                )
-        );
+        server.getStatistics().timed("textDocument/didOpen", () -> open(params));
     }
 
-    private List<Diagnostic> validate() {
-        return Collections.emptyList();
+    private void open(DidOpenTextDocumentParams params) {
+        String uri = params.getTextDocument().getUri();
+        TextDocument document = new TextDocument(uri, params.getTextDocument().getVersion(), params.getTextDocument().getText());
+        documents.put(uri, document);
+        completionCache.remove(uri);
+        takeSnapshot(document, Duration.ZERO);
+        documentsChanged();
     }
 
     @Override
     public void didChange(DidChangeTextDocumentParams params) {
-        sourcesMap.put(params.getTextDocument().getUri(), params.getContentChanges().get(0).getText());
-        // modify internal state
-//        this.documentVersions.put(params.getTextDocument().getUri(), params.getTextDocument().getVersion() + 1);
-        // send notification
-        CompletableFuture.runAsync(() ->
-                server.getClient().publishDiagnostics(
-                        new PublishDiagnosticsParams(params.getTextDocument().getUri(), validate())
-                )
-        );
+        server.getStatistics().timed("textDocument/didChange", () -> change(params));
+    }
+
+    private void change(DidChangeTextDocumentParams params) {
+        String uri = params.getTextDocument().getUri();
+        TextDocument document = documents.computeIfPresent(uri, (k, current) -> current.applyChanges(params.getTextDocument().getVersion(), params.getContentChanges()));
+        if (document == null) {
+            return; // not open
+        }
+        completionCache.textChanged(uri, document.getFirstEditedOffset());
+        memoryManager.touched(uri);
+        takeSnapshot(document, diagnosticsDebounce);
+        documentsChanged();
+    }
+
+    /**
+     * Parses the version in the background once the delay has passed, the only parse of that version: the snapshot
+     * is then shared by every feature, the symbol table is built from it and its errors are published as diagnostics.
+     * A version received before the previous one is parsed supersedes it: the snapshot of the previous one is
+     * cancelled, so it is never parsed if its turn didn't come yet, and never published otherwise. Typing bursts
+     * shorter than the delay are then parsed and validated once.
+     */
+    CompletableFuture<DocumentSnapshot> takeSnapshot(TextDocument document, Duration delay) {
+        CompletableFuture<DocumentSnapshot> snapshot = new CompletableFuture<>();
+        CompletableFuture<DocumentSnapshot> superseded = snapshots.put(document.getUri(), snapshot);
+        if (superseded != null) {
+            superseded.cancel(false);
+        }
+        SCHEDULER.schedule(() -> parse(document, snapshot), delay.toMillis(), TimeUnit.MILLISECONDS);
+        return snapshot;
+    }
+
+    private void parse(TextDocument document, CompletableFuture<DocumentSnapshot> snapshot) {
+        if (snapshot.isDone()) {
+            return; // superseded
+        }
+        // a newer version cancels the snapshot, which stops the parse where it is
+        CancellationToken cancellationToken = snapshot::isDone;
+        CompletableFuture<DocumentSnapshot> parsing;
+        try {
+            parsing = CompletableFuture.supplyAsync(() -> {
+                cancellationToken.checkCancelled();
+                // the same text may have been parsed already, as an earlier version or in another session
+                ParseResultCache.ContentKey key = ParseResultCache.ContentKey.of(document.getText());
+                ParseResult cached = parseResults.get(key);
+                if (cached != null) {
+                    return new DocumentSnapshot(document, cached, key);
+                }
+                parseCount.increment();
+                long start = System.nanoTime();
+                ParseResult parsed = drlParser.parse(new RopeCharStream(document.getText()), cancellationToken);
+                server.getStatistics().getParseLatency().record(System.nanoTime() - start);
+                parseResults.put(key, parsed);
+                return new DocumentSnapshot(document, parsed, key);
+            }, server.getScheduler().executor(RequestScheduler.Lane.DIAGNOSTICS));
+        } catch (RejectedExecutionException e) {
+            if (server.getScheduler().isShutdown()) {
+                snapshot.completeExceptionally(e);
+            } else {
+                // the lane is full: try again later, unless a newer version supersedes this one meanwhile
+                SCHEDULER.schedule(() -> parse(document, snapshot), PARSE_RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        parsing.whenComplete((taken, e) -> {
+            if (e != null) {
+                if (e.getCause() instanceof CancellationException) {
+                    cancelledParseCount.increment();
+                }
+                snapshot.completeExceptionally(e);
+                return;
+            }
+            // a parse ending after the document was changed, closed or reopened must not bring back state of its own:
+            // closing removes the document first, then its state, so it can't happen in between
+            documents.computeIfPresent(document.getUri(), (uri, current) -> {
+                if (current == document) {
+                    if (latestSnapshots.merge(uri, taken, (latest, newer) -> latest.getVersion() > newer.getVersion() ? latest : newer) == taken) {
+                        memoryManager.retained(uri, DocumentMemoryManager.estimateSize(taken.getParseResult()));
+                    }
+                    updateSymbolTable(taken);
+                }
+                return current;
+            });
+            // clients pulling diagnostics ask for them
+            if (snapshot.complete(taken) && !pullDiagnostics) {
+                publishDiagnostics(document, taken);
+            }
+        });
+    }
+
+    /**
+     * Publishes the diagnostics of the snapshot, unless the document is not the current one anymore, or they were
+     * already published as for a snapshot rebuilt after an eviction, or the client started pulling them meanwhile.
+     * Holding the lock orders them with the empty ones published on close or when switching to pull.
+     */
+    private void publishDiagnostics(TextDocument document, DocumentSnapshot snapshot) {
+        publishLock.lock();
+        try {
+            if (!pullDiagnostics && documents.get(document.getUri()) == document && !Integer.valueOf(document.getVersion()).equals(publishedVersions.put(document.getUri(), document.getVersion()))) {
+                server.getClient().publishDiagnostics(new PublishDiagnosticsParams(document.getUri(), toDiagnostics(snapshot.getErrors()), document.getVersion()));
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    static List<Diagnostic> toDiagnostics(List<DRLParserError> errors) {
+        List<Diagnostic> diagnostics = new ArrayList<>(errors.size());
+        for (DRLParserError error : errors) {
+            // lines are 1-based in parser errors, errors raised while creating descrs have no position
+            Position start = new Position(Math.max(error.getLineNumber() - 1, 0), Math.max(error.getColumn(), 0));
+            Position end = new Position(start.getLine(), start.getCharacter() + 1);
+            String message = error.getMessage() != null ? error.getMessage() : String.valueOf(error.getException());
+            diagnostics.add(new Diagnostic(new Range(start, end), message, DiagnosticSeverity.Error, "drools"));
+        }
+        return diagnostics;
+    }
+
+    /**
+     * The textDocument/diagnostic request of the pull model: the diagnostics of the last version received, or an
+     * unchanged report if they are the ones of the previous result. The first pull request stops the diagnostics
+     * pushed after each parse, as the client pulls them.
+     */
+    public CompletableFuture<PullDiagnostics.DocumentDiagnosticReport> diagnostic(PullDiagnostics.DocumentDiagnosticParams params) {
+        setPullDiagnostics(true);
+        String uri = params.getTextDocument().getUri();
+        return server.getStatistics().timed("textDocument/diagnostic", () -> lastSnapshot(uri).thenApply(snapshot -> {
+            if (snapshot == null) {
+                return new PullDiagnostics.DocumentDiagnosticReport(null, new ArrayList<>()); // not open
+            }
+            if (snapshot.getResultId().equals(params.getPreviousResultId())) {
+                return new PullDiagnostics.DocumentDiagnosticReport(snapshot.getResultId());
+            }
+            return new PullDiagnostics.DocumentDiagnosticReport(snapshot.getResultId(), toDiagnostics(snapshot.getErrors()));
+        }));
+    }
+
+    /**
+     * The workspace/diagnostic request of the pull model, for the open documents: the server only knows of those.
+     * When none changed since the previous results the response waits for a document to be opened, changed or closed,
+     * so that clients asking again at once don't poll in a loop.
+     */
+    public CompletableFuture<PullDiagnostics.WorkspaceDiagnosticReport> workspaceDiagnostic(PullDiagnostics.WorkspaceDiagnosticParams params) {
+        setPullDiagnostics(true);
+        Map<String, String> previousResultIds = new HashMap<>();
+        for (PullDiagnostics.PreviousResultId previous : params.getPreviousResultIds()) {
+            previousResultIds.put(previous.getUri(), previous.getValue());
+        }
+        WorkspaceReport report = new WorkspaceReport(previousResultIds);
+        report.run();
+        return report.response;
+    }
+
+    /**
+     * @return the snapshot of the last version received, waiting for it to be parsed, null if the document is not open
+     */
+    private CompletableFuture<DocumentSnapshot> lastSnapshot(String uri) {
+        CompletableFuture<DocumentSnapshot> snapshot = getSnapshot(uri);
+        if (snapshot == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<DocumentSnapshot> current = snapshot;
+        return snapshot.handle((taken, e) -> {
+            if (e == null) {
+                return CompletableFuture.completedFuture(taken);
+            }
+            if (snapshots.get(uri) != current) {
+                return lastSnapshot(uri); // superseded by a newer version, or closed
+            }
+            return CompletableFuture.<DocumentSnapshot>failedFuture(e);
+        }).thenCompose(Function.identity());
+    }
+
+    public boolean isPullDiagnostics() {
+        return pullDiagnostics;
+    }
+
+    /**
+     * @param pullDiagnostics true if the client pulls diagnostics, so that they are not pushed. The diagnostics pushed
+     * until then are cleared: clients keep them apart from the pulled ones, which would show every error twice.
+     */
+    public void setPullDiagnostics(boolean pullDiagnostics) {
+        if (!pullDiagnostics || this.pullDiagnostics) {
+            this.pullDiagnostics = pullDiagnostics;
+            return;
+        }
+        publishLock.lock();
+        try {
+            this.pullDiagnostics = true;
+            for (String uri : publishedVersions.keySet()) {
+                publishedVersions.remove(uri);
+                server.getClient().publishDiagnostics(new PublishDiagnosticsParams(uri, new ArrayList<>()));
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Builds the symbol table of the snapshot from the current one, unless a newer version got there first
+     */
+    private void updateSymbolTable(DocumentSnapshot snapshot) {
+        symbolTables.compute(snapshot.getUri(), (k, current) -> {
+            if (current != null && current.getVersion() > snapshot.getVersion()) {
+                return current;
+            }
+            return SymbolTable.build(snapshot.getParseResult(), current == null ? SymbolTable.EMPTY : current, snapshot.getVersion());
+        });
+    }
+
+    /**
+     * @return the snapshot of the last version received, possibly still being parsed or waiting for the debounce, or
+     * null if the document is not open. It is cancelled if a newer version supersedes it before it is parsed, and
+     * taken again if it was evicted.
+     */
+    public CompletableFuture<DocumentSnapshot> getSnapshot(String uri) {
+        CompletableFuture<DocumentSnapshot> snapshot = snapshots.get(uri);
+        TextDocument document = documents.get(uri);
+        if (snapshot == null && document != null) {
+            snapshot = takeSnapshot(document, Duration.ZERO);
+        }
+        if (document != null) {
+            memoryManager.touched(uri);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops what was derived from the document to save memory, keeping its text and symbol table
+     */
+    private void evict(String uri) {
+        DocumentSnapshot latest = latestSnapshots.get(uri);
+        if (latest != null) {
+            latestSnapshots.remove(uri, latest);
+        }
+        CompletableFuture<DocumentSnapshot> snapshot = snapshots.get(uri);
+        if (snapshot != null && snapshot.isDone()) {
+            snapshots.remove(uri, snapshot);
+        }
+        completionCache.remove(uri);
+    }
+
+    /**
+     * @return the estimated memory retained by the document: its text, and the artifacts derived from it unless evicted
+     */
+    public long getRetainedSize(String uri) {
+        TextDocument document = documents.get(uri);
+        return document == null ? 0 : document.getText().length() * 2L + memoryManager.getRetainedSize(uri);
+    }
+
+    public DocumentMemoryManager getMemoryManager() {
+        return memoryManager;
+    }
+
+    /**
+     * @return the most recent snapshot already parsed, which may be older than the last version received, or null
+     */
+    public DocumentSnapshot getLatestSnapshot(String uri) {
+        return latestSnapshots.get(uri);
+    }
+
+    /**
+     * @return the number of parses run since the service started, at most one per version received, none for the texts
+     * found in the parse result cache
+     */
+    public long getParseCount() {
+        return parseCount.sum();
+    }
+
+    public int getOpenDocumentCount() {
+        return documents.size();
+    }
+
+    /**
+     * @return the number of workspace/diagnostic requests waiting for the documents to change
+     */
+    int getWaitingWorkspaceReportCount() {
+        return documentsChangedListeners.size();
+    }
+
+    /**
+     * @return the number of parses stopped on the way as a newer version arrived
+     */
+    public long getCancelledParseCount() {
+        return cancelledParseCount.sum();
+    }
+
+    public SymbolTable getSymbolTable(String uri) {
+        return symbolTables.getOrDefault(uri, SymbolTable.EMPTY);
     }
 
     public String getRuleName(CompletionParams completionParams) {
-        String text = sourcesMap.get(completionParams.getTextDocument().getUri());
-        PackageDescr packageDescr = parse(text);
+        PackageDescr packageDescr = getSnapshot(completionParams.getTextDocument().getUri()).join().getPackageDescr();
         return packageDescr.getRules().get(0).getName();
     }
 
     @Override
     public CompletableFuture<Either<List<CompletionItem>, CompletionList>> completion(CompletionParams completionParams) {
-        return CompletableFuture.supplyAsync(() -> Either.forLeft(attempt(() -> getCompletionItems(completionParams))));
+        // the cancel checker reports a $/cancelRequest from the client
+        return server.getStatistics().timed("textDocument/completion",
+                () -> computeInteractive(cancelChecker -> Either.forRight(attempt(() -> getCompletionList(completionParams, cancelChecker)))));
+    }
+
+    /**
+     * Completion lists only carry labels and kinds, detail and documentation of the focused item are computed here
+     */
+    @Override
+    public CompletableFuture<CompletionItem> resolveCompletionItem(CompletionItem unresolved) {
+        return server.getStatistics().timed("completionItem/resolve",
+                () -> computeInteractive(cancelChecker -> attempt(() -> CompletionResolver.resolve(unresolved, server.getTypeIndex()))));
+    }
+
+    /**
+     * Runs a request in the interactive lane of the scheduler. When the lane is full the request is answered at once
+     * with a ServerCancelled error, which tells the client it may send it again.
+     */
+    private <T> CompletableFuture<T> computeInteractive(Function<CancelChecker, T> code) {
+        try {
+            return CompletableFutures.computeAsync(server.getScheduler().executor(RequestScheduler.Lane.INTERACTIVE), code);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new ResponseErrorException(new ResponseError(SERVER_CANCELLED, e.getMessage(), null)));
+            return rejected;
+        }
     }
 
     private <T> T attempt(Supplier<T> supplier) {
         try {
             return supplier.get();
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
-            server.getClient().showMessage(new MessageParams(MessageType.Error, e.toString()));
+            logger.log(Level.WARNING, "Request failed", e);
+            server.trace(() -> "Request failed: " + e, () -> stackTrace(e));
         }
         return null;
     }
 
+    private static String stackTrace(Exception e) {
+        StringWriter stackTrace = new StringWriter();
+        e.printStackTrace(new PrintWriter(stackTrace));
+        return stackTrace.toString();
+    }
+
     public List<CompletionItem> getCompletionItems(CompletionParams completionParams) {
-        String text = sourcesMap.get(completionParams.getTextDocument().getUri());
+        String text = documents.get(completionParams.getTextDocument().getUri()).getText().toString();
 
         Position caretPosition = completionParams.getPosition();
         List<CompletionItem> completionItems = DRLCompletionHelper.getCompletionItems(text, caretPosition, server.getClient());
 
-        server.getClient().showMessage(new MessageParams(MessageType.Info, "Position=" + caretPosition));
-        server.getClient().showMessage(new MessageParams(MessageType.Info, "completionItems = " + completionItems));
+        server.trace(() -> "Position=" + caretPosition, () -> "completionItems = " + completionItems);
 
         return completionItems;
     }
 
+    /**
+     * Completion answering within the configured completion budget, see {@link DRLCompletionHelper#getCompletionList}
+     */
+    public CompletionList getCompletionList(CompletionParams completionParams, CancelChecker cancelChecker) {
+        String uri = completionParams.getTextDocument().getUri();
+        TextDocument document = documents.get(uri);
+        if (document == null) {
+            return new CompletionList(false, new ArrayList<>()); // not open
+        }
+        Rope text = document.getText();
+
+        int caretOffset = DRLCompletionHelper.offsetOf(text, completionParams.getPosition());
+        String prefix = DRLCompletionHelper.typedPrefix(text, caretOffset);
+        int contextEnd = caretOffset - prefix.length();
+        memoryManager.touched(uri);
+
+        CompletionTrie candidates = completionCache.get(uri, contextEnd);
+        if (candidates == null) {
+            // the tokens of the latest snapshot save lexing again, as long as it was taken from the same text
+            DocumentSnapshot snapshot = latestSnapshots.get(uri);
+            List<Token> tokens = snapshot != null && snapshot.isOf(document) ? snapshot.getTokens() : null;
+            // the keyword walk may outlive the request, stop it when the server goes down
+            CancelChecker requestChecker = () -> {
+                cancelChecker.checkCanceled();
+                if (server.getScheduler().isShutdown()) {
+                    throw new CancellationException();
+                }
+            };
+            candidates = DRLCompletionHelper.getCompletionCandidates(text, completionParams.getPosition(), completionBudget, requestChecker, server.getTypeIndex(), getSymbolTable(uri), tokens);
+            if (candidates == null) {
+                return new CompletionList(true, new ArrayList<>());
+            }
+            if (documents.get(uri) == document) {
+                // not cached if the document changed meanwhile, as the candidates may belong to a stale context
+                completionCache.put(uri, document.getVersion(), contextEnd, candidates);
+            }
+        }
+        return candidates.complete(prefix);
+    }
+
+    public CompletionCache getCompletionCache() {
+        return completionCache;
+    }
+
+    public Duration getCompletionBudget() {
+        return completionBudget;
+    }
+
+    public void setCompletionBudget(Duration completionBudget) {
+        this.completionBudget = completionBudget;
+    }
+
+    public Duration getDiagnosticsDebounce() {
+        return diagnosticsDebounce;
+    }
+
+    public void setDiagnosticsDebounce(Duration diagnosticsDebounce) {
+        this.diagnosticsDebounce = diagnosticsDebounce;
+    }
+
+    /**
+     * Closes all the documents without clearing their diagnostics, for a client that is gone
+     */
+    public void closeAll() {
+        for (String uri : documents.keySet()) {
+            close(uri, false);
+        }
+    }
+
     @Override
     public void didClose(DidCloseTextDocumentParams params) {
+        server.getStatistics().timed("textDocument/didClose", () -> close(params.getTextDocument().getUri(), true));
+    }
+
+    private void close(String uri, boolean clearDiagnostics) {
+        documents.remove(uri);
+        completionCache.remove(uri);
+        symbolTables.remove(uri);
+        CompletableFuture<DocumentSnapshot> snapshot = snapshots.remove(uri);
+        if (snapshot != null) {
+            snapshot.cancel(false);
+        }
+        latestSnapshots.remove(uri);
+        publishLock.lock();
+        try {
+            // the client keeps published diagnostics until they are replaced
+            if (publishedVersions.remove(uri) != null && clearDiagnostics) {
+                server.getClient().publishDiagnostics(new PublishDiagnosticsParams(uri, new ArrayList<>()));
+            }
+        } finally {
+            publishLock.unlock();
+        }
+        memoryManager.released(uri);
+        documentsChanged();
+    }
+
+    private void documentsChanged() {
+        documentsGeneration.incrementAndGet();
+        for (Runnable listener : documentsChangedListeners) {
+            if (documentsChangedListeners.remove(listener)) {
+                listener.run();
+            }
+        }
     }
 
     @Override
     public void didSave(DidSaveTextDocumentParams params) {
     }
+
+    /**
+     * A workspace/diagnostic request, reporting again whenever the documents change for as long as its report would
+     * be the one the client has already: a report with no document changed, opened or closed since the previous one,
+     * which is empty when no document is open. Cancelling the response stops listening to the changes at once. Its
+     * latency is the time the last report took, without the wait for a change, and cancelled requests are not counted:
+     * long polls would make the percentiles meaningless.
+     */
+    private final class WorkspaceReport implements Runnable {
+
+        private final Map<String, String> previousResultIds;
+        private final CompletableFuture<PullDiagnostics.WorkspaceDiagnosticReport> response = new CompletableFuture<>();
+        private volatile long startedAt;
+
+        private WorkspaceReport(Map<String, String> previousResultIds) {
+            this.previousResultIds = previousResultIds;
+            response.whenComplete((report, e) -> {
+                documentsChangedListeners.remove(this);
+                if (!response.isCancelled()) {
+                    server.getStatistics().record("workspace/diagnostic", System.nanoTime() - startedAt, e != null);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            if (response.isDone()) {
+                return; // cancelled
+            }
+            startedAt = System.nanoTime();
+            long generation = documentsGeneration.get();
+            List<CompletableFuture<DocumentSnapshot>> snapshots = new ArrayList<>();
+            for (String uri : documents.keySet()) {
+                snapshots.add(lastSnapshot(uri));
+            }
+            CompletableFuture.allOf(snapshots.toArray(new CompletableFuture[0])).whenComplete((done, e) -> {
+                if (e != null) {
+                    response.completeExceptionally(e);
+                    return;
+                }
+                List<PullDiagnostics.WorkspaceDocumentDiagnosticReport> reports = new ArrayList<>();
+                boolean unchanged = true;
+                Set<String> reported = new HashSet<>();
+                for (CompletableFuture<DocumentSnapshot> future : snapshots) {
+                    DocumentSnapshot snapshot = future.join();
+                    if (snapshot == null) {
+                        continue; // closed meanwhile
+                    }
+                    reported.add(snapshot.getUri());
+                    if (snapshot.getResultId().equals(previousResultIds.get(snapshot.getUri()))) {
+                        reports.add(new PullDiagnostics.WorkspaceDocumentDiagnosticReport(snapshot.getUri(), snapshot.getVersion(), snapshot.getResultId()));
+                    } else {
+                        unchanged = false;
+                        reports.add(new PullDiagnostics.WorkspaceDocumentDiagnosticReport(snapshot.getUri(), snapshot.getVersion(), snapshot.getResultId(), toDiagnostics(snapshot.getErrors())));
+                    }
+                }
+                if (!reported.containsAll(previousResultIds.keySet())) {
+                    unchanged = false; // closed documents, whose diagnostics the client drops
+                }
+                if (!unchanged) {
+                    response.complete(new PullDiagnostics.WorkspaceDiagnosticReport(reports));
+                    return;
+                }
+                documentsChangedListeners.add(this);
+                if (response.isDone()) {
+                    documentsChangedListeners.remove(this); // cancelled meanwhile
+                } else if (documentsGeneration.get() != generation && documentsChangedListeners.remove(this)) {
+                    run(); // changed before listening
+                }
+            });
+        }
+    }
 }
@@ -1,12 +1,38 @@
 package org.drools.lsp.server;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonObject;
+import org.drools.completion.TypeIndex;
 
 import org.eclipse.lsp4j.CompletionOptions;
 import org.eclipse.lsp4j.InitializeParams;
 import org.eclipse.lsp4j.InitializeResult;
-import org.eclipse.lsp4j.ServerCapabilities;
+import org.eclipse.lsp4j.LogTraceParams;
+import org.eclipse.lsp4j.SetTraceParams;
 import org.eclipse.lsp4j.TextDocumentSyncKind;
+import org.eclipse.lsp4j.TraceValue;
+import org.eclipse.lsp4j.jsonrpc.services.JsonNotification;
+import org.eclipse.lsp4j.jsonrpc.services.JsonRequest;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.lsp4j.services.LanguageClientAware;
 import org.eclipse.lsp4j.services.LanguageServer;
@@ -14,14 +40,105 @@ import org.eclipse.lsp4j.services.WorkspaceService;
 
 public class DroolsLspServer implements LanguageServer, LanguageClientAware {
 
+    /**
+     * initializationOptions entry holding the completion latency budget in milliseconds
+     */
+    public static final String COMPLETION_BUDGET_OPTION = "completionBudgetMillis";
+
+    /**
+     * initializationOptions entry holding how long changes are coalesced before a document is parsed and validated,
+     * in milliseconds
+     */
+    public static final String DIAGNOSTICS_DEBOUNCE_OPTION = "diagnosticsDebounceMillis";
+
+    /**
+     * initializationOptions entry telling that the client pulls diagnostics, so that they are not pushed after each
+     * parse. This lsp4j version drops the diagnostic client capability, hence the option; without it pushing stops at
+     * the first pull request.
+     */
+    public static final String PULL_DIAGNOSTICS_OPTION = "pullDiagnostics";
+
+    /**
+     * initializationOptions entry holding the number of threads running requests, diagnostics and background work
+     */
+    public static final String SCHEDULER_THREADS_OPTION = "schedulerThreads";
+
+    /**
+     * initializationOptions entry choosing the scheduler mode, "platform" or "virtual" (Java 21 and later)
+     */
+    public static final String SCHEDULER_MODE_OPTION = "schedulerMode";
+
+    /**
+     * initializationOptions entry holding the capacity of the queue of each scheduler lane
+     */
+    public static final String SCHEDULER_QUEUE_CAPACITY_OPTION = "schedulerQueueCapacity";
+
+    /**
+     * initializationOptions entry holding the memory budget of the parse trees, tokens and PackageDescrs kept for the
+     * open documents, in megabytes
+     */
+    public static final String MEMORY_BUDGET_OPTION = "memoryBudgetMegabytes";
+
+    /**
+     * initializationOptions entry listing the class directories and jars whose types are proposed by completion
+     */
+    public static final String CLASSPATH_OPTION = "classpath";
+
+    /**
+     * initializationOptions entry holding the file where the type index is kept between sessions
+     */
+    public static final String TYPE_INDEX_FILE_OPTION = "typeIndexFile";
+
+    /**
+     * initializationOptions entry holding the period of the telemetry events carrying the server statistics, in
+     * seconds, none are sent by default
+     */
+    public static final String TELEMETRY_INTERVAL_OPTION = "telemetryIntervalSeconds";
+
+    private static final Logger logger = Logger.getLogger(DroolsLspServer.class.getSimpleName());
+
+    private static final ScheduledExecutorService TELEMETRY = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "drl-telemetry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ServerResources resources;
+    private final boolean ownsResources;
+    private final RequestScheduler scheduler;
+    private final ServerStatistics statistics = new ServerStatistics();
     private final DroolsLspDocumentService textService;
     private final WorkspaceService workspaceService;
 
     private LanguageClient client;
 
+    private volatile List<Path> classpath = Collections.emptyList();
+    private volatile Path typeIndexFile;
+    private volatile TypeIndex typeIndex = TypeIndex.EMPTY;
+    private final AtomicBoolean typeIndexRefreshQueued = new AtomicBoolean();
+    // a lock rather than a monitor: a virtual thread reading jars while holding a monitor would pin its carrier
+    private final Lock typeIndexLock = new ReentrantLock();
+    private volatile Runnable exitHandler = () -> System.exit(0);
+    private volatile String trace = TraceValue.Off;
+    private volatile ScheduledFuture<?> telemetry;
+
     public DroolsLspServer() {
+        this(new ServerResources(), true);
+    }
+
+    /**
+     * A server using resources shared with other servers, which it doesn't shut down
+     */
+    public DroolsLspServer(ServerResources resources) {
+        this(resources, false);
+    }
+
+    private DroolsLspServer(ServerResources resources, boolean ownsResources) {
+        this.resources = resources;
+        this.ownsResources = ownsResources;
+        this.scheduler = resources.getScheduler();
         textService = new DroolsLspDocumentService(this);
-        workspaceService = new DroolsLspWorkspaceService();
+        workspaceService = new DroolsLspWorkspaceService(this);
     }
 
 
@@ -36,24 +153,251 @@ public class DroolsLspServer implements LanguageServer, LanguageClientAware {
 
     @Override
     public CompletableFuture<InitializeResult> initialize(InitializeParams params) {
+        return statistics.timed("initialize", () -> doInitialize(params));
+    }
+
+    private CompletableFuture<InitializeResult> doInitialize(InitializeParams params) {
+        if (params.getTrace() != null) {
+            trace = params.getTrace();
+        }
+        applyInitializationOptions(params.getInitializationOptions());
+        requestTypeIndexRefresh();
+
         // Initialize the InitializeResult for this LS.
-        final InitializeResult initializeResult = new InitializeResult(new ServerCapabilities());
+        PullDiagnostics.Capabilities capabilities = new PullDiagnostics.Capabilities();
+        // diagnostics only depend on the text of their document
+        capabilities.setDiagnosticProvider(new PullDiagnostics.DiagnosticOptions("drools", false, true));
+        final InitializeResult initializeResult = new InitializeResult(capabilities);
 
         // Set the capabilities of the LS to inform the client.
-        initializeResult.getCapabilities().setTextDocumentSync(TextDocumentSyncKind.Full);
+        initializeResult.getCapabilities().setTextDocumentSync(TextDocumentSyncKind.Incremental);
         CompletionOptions completionOptions = new CompletionOptions();
+        completionOptions.setResolveProvider(true);
         initializeResult.getCapabilities().setCompletionProvider(completionOptions);
-        return CompletableFuture.supplyAsync( () -> initializeResult );
+        return CompletableFuture.completedFuture(initializeResult);
+    }
+
+    private void applyInitializationOptions(Object initializationOptions) {
+        if (!(initializationOptions instanceof JsonObject)) {
+            return;
+        }
+        JsonObject options = (JsonObject) initializationOptions;
+        if (options.has(COMPLETION_BUDGET_OPTION)) {
+            textService.setCompletionBudget(Duration.ofMillis(options.get(COMPLETION_BUDGET_OPTION).getAsLong()));
+        }
+        if (options.has(DIAGNOSTICS_DEBOUNCE_OPTION)) {
+            textService.setDiagnosticsDebounce(Duration.ofMillis(options.get(DIAGNOSTICS_DEBOUNCE_OPTION).getAsLong()));
+        }
+        if (options.has(PULL_DIAGNOSTICS_OPTION)) {
+            textService.setPullDiagnostics(options.get(PULL_DIAGNOSTICS_OPTION).getAsBoolean());
+        }
+        if (options.has(MEMORY_BUDGET_OPTION)) {
+            textService.getMemoryManager().setBudget(options.get(MEMORY_BUDGET_OPTION).getAsLong() * 1024 * 1024);
+        }
+        if (!ownsResources) {
+            if (options.has(SCHEDULER_THREADS_OPTION) || options.has(SCHEDULER_MODE_OPTION) || options.has(SCHEDULER_QUEUE_CAPACITY_OPTION)) {
+                logger.warning("The scheduler is shared with other sessions, ignoring the scheduler options of this one");
+            }
+        } else if (options.has(SCHEDULER_THREADS_OPTION)) {
+            scheduler.setThreads(options.get(SCHEDULER_THREADS_OPTION).getAsInt());
+        }
+        if (ownsResources && options.has(SCHEDULER_MODE_OPTION)) {
+            scheduler.setMode(RequestScheduler.Mode.valueOf(options.get(SCHEDULER_MODE_OPTION).getAsString().toUpperCase(Locale.ROOT)));
+        }
+        if (ownsResources && options.has(SCHEDULER_QUEUE_CAPACITY_OPTION)) {
+            scheduler.setQueueCapacity(options.get(SCHEDULER_QUEUE_CAPACITY_OPTION).getAsInt());
+        }
+        if (options.has(CLASSPATH_OPTION)) {
+            List<Path> paths = new ArrayList<>();
+            options.getAsJsonArray(CLASSPATH_OPTION).forEach(entry -> paths.add(Paths.get(entry.getAsString())));
+            classpath = paths;
+        }
+        if (options.has(TYPE_INDEX_FILE_OPTION)) {
+            typeIndexFile = Paths.get(options.get(TYPE_INDEX_FILE_OPTION).getAsString());
+        }
+        if (options.has(TELEMETRY_INTERVAL_OPTION)) {
+            startTelemetry(Duration.ofSeconds(options.get(TELEMETRY_INTERVAL_OPTION).getAsLong()));
+        }
+    }
+
+    /**
+     * Sends the statistics to the client as a telemetry event at the given period, replacing the previous period
+     */
+    public void startTelemetry(Duration period) {
+        stopTelemetry();
+        if (!period.isZero() && !period.isNegative()) {
+            telemetry = TELEMETRY.scheduleAtFixedRate(() -> {
+                LanguageClient client = this.client;
+                if (client != null) {
+                    client.telemetryEvent(statistics.toJson(this));
+                }
+            }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the telemetry events, as the client is gone or going: the task would otherwise keep the server reachable
+     */
+    public void stopTelemetry() {
+        ScheduledFuture<?> current = telemetry;
+        if (current != null) {
+            current.cancel(false);
+        }
+    }
+
+    public boolean isTelemetryRunning() {
+        ScheduledFuture<?> current = telemetry;
+        return current != null && !current.isDone();
+    }
+
+    /**
+     * The drools/stats request: latencies by method, scheduler queues, parses, caches, documents memory and JVM heap
+     * and garbage collection figures, see {@link ServerStatistics#toJson}
+     */
+    @JsonRequest("drools/stats")
+    public CompletableFuture<JsonObject> stats() {
+        return statistics.timed("drools/stats", () -> CompletableFuture.completedFuture(statistics.toJson(this)));
+    }
+
+    /**
+     * The textDocument/diagnostic request of the pull model, declared here rather than on the document service: lsp4j
+     * only knows the request types of the service interfaces it delegates to
+     */
+    @JsonRequest("textDocument/diagnostic")
+    public CompletableFuture<PullDiagnostics.DocumentDiagnosticReport> diagnostic(PullDiagnostics.DocumentDiagnosticParams params) {
+        return textService.diagnostic(params);
+    }
+
+    /**
+     * The workspace/diagnostic request of the pull model, see {@link #diagnostic}
+     */
+    @JsonRequest("workspace/diagnostic")
+    public CompletableFuture<PullDiagnostics.WorkspaceDiagnosticReport> workspaceDiagnostic(PullDiagnostics.WorkspaceDiagnosticParams params) {
+        return textService.workspaceDiagnostic(params);
+    }
+
+    public ServerStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The $/setTrace notification, declared by the client interface of this lsp4j version instead of the server one
+     */
+    @JsonNotification("$/setTrace")
+    public void setTrace(SetTraceParams params) {
+        trace = params.getValue();
+    }
+
+    public String getTrace() {
+        return trace;
+    }
+
+    /**
+     * Sends a $/logTrace notification, if the client asked for traces, with its verbose part if it asked for verbose
+     * ones. Neither supplier is called otherwise.
+     */
+    public void trace(Supplier<String> message, Supplier<String> verbose) {
+        String level = trace;
+        LanguageClient client = this.client;
+        if (client == null || TraceValue.Off.equals(level)) {
+            return;
+        }
+        client.logTrace(new LogTraceParams(message.get(), TraceValue.Verbose.equals(level) ? verbose.get() : null));
+    }
+
+    /**
+     * Refreshes the type index in the background, unless a refresh is queued already: that one will see the changes
+     * made until it starts. Never blocks, the caller may be the thread reading the client messages.
+     */
+    public void requestTypeIndexRefresh() {
+        if (!typeIndexRefreshQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.submit(RequestScheduler.Lane.BACKGROUND, () -> {
+                typeIndexRefreshQueued.set(false);
+                try {
+                    refreshTypeIndex();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Cannot refresh type index", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            typeIndexRefreshQueued.set(false);
+            logger.log(Level.WARNING, "Cannot refresh type index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Brings the type index up to date with the classpath, reading again only the jars and class files which changed.
+     * At the first refresh the index another server built from the same classpath, or else the index saved by a
+     * previous session, if any, is the starting point.
+     */
+    public void refreshTypeIndex() {
+        typeIndexLock.lock();
+        try {
+            List<Path> classpath = this.classpath;
+            if (classpath.isEmpty()) {
+                return;
+            }
+            TypeIndex current = typeIndex;
+            if (current == TypeIndex.EMPTY) {
+                current = resources.getTypeIndex(classpath);
+            }
+            if (current == TypeIndex.EMPTY && typeIndexFile != null) {
+                try {
+                    current = TypeIndex.load(typeIndexFile);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Cannot load type index from " + typeIndexFile, e);
+                }
+            }
+            typeIndex = current.update(classpath);
+            resources.putTypeIndex(classpath, typeIndex);
+            textService.getCompletionCache().clear();
+            if (typeIndexFile != null) {
+                try {
+                    typeIndex.save(typeIndexFile);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Cannot save type index to " + typeIndexFile, e);
+                }
+            }
+        } finally {
+            typeIndexLock.unlock();
+        }
+    }
+
+    public TypeIndex getTypeIndex() {
+        return typeIndex;
+    }
+
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public ServerResources getResources() {
+        return resources;
     }
 
     @Override
     public CompletableFuture<Object> shutdown() {
+        stopTelemetry();
+        if (ownsResources) {
+            resources.shutdown();
+        }
         return CompletableFuture.completedFuture(null);
     }
 
     @Override
     public void exit() {
-        System.exit(0);
+        stopTelemetry();
+        exitHandler.run();
+    }
+
+    /**
+     * @param exitHandler what the exit notification does, exiting the JVM by default
+     */
+    public void setExitHandler(Runnable exitHandler) {
+        this.exitHandler = exitHandler;
     }
 
     @Override
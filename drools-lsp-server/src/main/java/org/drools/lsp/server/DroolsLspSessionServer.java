@@ -0,0 +1,151 @@
+package org.drools.lsp.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long-lived TCP server for many clients at once: every connection is a {@link LspSession} with a
+ * {@link DroolsLspServer} of its own, all of them sharing one {@link ServerResources}, so that the scheduler, the
+ * parse results and the type indexes are shared. Sessions whose client sent nothing for longer than the idle timeout
+ * are closed.
+ */
+public class DroolsLspSessionServer implements AutoCloseable {
+
+    static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    private static final Logger logger = Logger.getLogger(DroolsLspSessionServer.class.getSimpleName());
+
+    private final ServerResources resources;
+    private final Duration idleTimeout;
+    private final ServerSocketChannel serverChannel;
+    private final Map<Long, LspSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong sessionIds = new AtomicLong();
+
+    // the threads reading the connections, as many as there are sessions
+    private final ExecutorService listeners = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "drl-session-listener");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "drl-session-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DroolsLspSessionServer(int port, Duration idleTimeout) throws IOException {
+        this(new ServerResources(), port, idleTimeout);
+    }
+
+    /**
+     * @param port the port to listen to, 0 for any free one, see {@link #getPort()}
+     */
+    public DroolsLspSessionServer(ServerResources resources, int port, Duration idleTimeout) throws IOException {
+        this.resources = resources;
+        this.idleTimeout = idleTimeout;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        long reapPeriod = Math.max(idleTimeout.toMillis() / 4, 10);
+        reaper.scheduleAtFixedRate(this::reapIdleSessions, reapPeriod, reapPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DroolsLspTCPLauncher.PORT;
+        Duration idleTimeout = args.length > 1 ? Duration.ofSeconds(Long.parseLong(args[1])) : DEFAULT_IDLE_TIMEOUT;
+        try (DroolsLspSessionServer server = new DroolsLspSessionServer(port, idleTimeout)) {
+            logger.info("Drools LSP multi-session server listening on port " + server.getPort());
+            server.acceptSessions();
+        }
+    }
+
+    /**
+     * Accepts connections until the server is closed, each one served concurrently with the others
+     */
+    public void acceptSessions() throws IOException {
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            try {
+                startSession(channel);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot start a session for " + channel, e);
+                channel.close();
+            }
+        }
+    }
+
+    private void startSession(SocketChannel channel) throws IOException {
+        LspSession session = new LspSession(sessionIds.incrementAndGet(), channel, resources);
+        sessions.put(session.getId(), session);
+        logger.info("Session " + session.getId() + " connected from " + session.getRemoteAddress());
+        listeners.execute(() -> {
+            try {
+                session.start(listeners).get();
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Session " + session.getId() + " ended", e);
+            } finally {
+                endSession(session);
+            }
+        });
+    }
+
+    private void endSession(LspSession session) {
+        if (sessions.remove(session.getId()) != null) {
+            session.close();
+            session.getServer().getTextDocumentService().closeAll();
+            logger.info("Session ended: " + session);
+        }
+    }
+
+    void reapIdleSessions() {
+        for (LspSession session : sessions.values()) {
+            if (!session.isOpen() || session.getIdleTime().compareTo(idleTimeout) > 0) {
+                logger.info("Closing idle session " + session.getId());
+                endSession(session);
+            }
+        }
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * @return the sessions connected, with their accounting
+     */
+    public List<LspSession> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    public ServerResources getResources() {
+        return resources;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        reaper.shutdownNow();
+        sessions.values().forEach(this::endSession);
+        listeners.shutdownNow();
+        resources.shutdown();
+    }
+}
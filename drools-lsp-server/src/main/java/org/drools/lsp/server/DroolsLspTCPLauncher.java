@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.logging.Logger;
@@ -14,14 +15,20 @@ import org.eclipse.lsp4j.launch.LSPLauncher;
 import org.eclipse.lsp4j.services.LanguageClient;
 
 /**
- * TCP Launcher for hello language server. Usefull for remote connection and debug
+ * TCP Launcher for hello language server. Usefull for remote connection and debug.
+ * With --multi-session, serves any number of clients concurrently instead, see {@link DroolsLspSessionServer}.
  */
 public class DroolsLspTCPLauncher {
 
-    private static final int PORT = 9925;
+    static final int PORT = 9925;
+    static final String MULTI_SESSION = "--multi-session";
     private static final Logger logger = Logger.getLogger(DroolsLspTCPLauncher.class.getSimpleName());
 
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && MULTI_SESSION.equals(args[0])) {
+            DroolsLspSessionServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         try(ServerSocket serverSocket  = new ServerSocket(PORT)) {
             logger.info("The chat server is running on PORT " + PORT + ": " + serverSocket);
             logger.info("wait for clients to connect");
@@ -2,9 +2,17 @@ package org.drools.lsp.server;
 
 import org.eclipse.lsp4j.DidChangeConfigurationParams;
 import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.FileEvent;
 import org.eclipse.lsp4j.services.WorkspaceService;
 
 public class DroolsLspWorkspaceService implements WorkspaceService {
+
+    private final DroolsLspServer server;
+
+    public DroolsLspWorkspaceService(DroolsLspServer server) {
+        this.server = server;
+    }
+
     @Override
     public void didChangeConfiguration(DidChangeConfigurationParams params) {
 
@@ -12,6 +20,11 @@ public class DroolsLspWorkspaceService implements WorkspaceService {
 
     @Override
     public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
-
+        boolean classpathChanged = params.getChanges().stream()
+                .map(FileEvent::getUri)
+                .anyMatch(uri -> uri.endsWith(".jar") || uri.endsWith(".class"));
+        if (classpathChanged) {
+            server.requestTypeIndexRefresh();
+        }
     }
 }
@@ -0,0 +1,101 @@
+package org.drools.lsp.server;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations, for percentiles of request latencies. Buckets are log-linear: 8 buckets per power
+ * of two of nanoseconds, so a percentile is over-estimated by at most 12.5%, in a fixed array of under 500 counters.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below this one have a bucket each
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int LINEAR_EXPONENT = 4;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(bucketOf(Long.MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public void record(Duration duration) {
+        record(duration.toNanos());
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - LINEAR_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest value falling in the bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_EXPONENT;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the duration under which the given percentage of the recorded ones fall, never more than the maximum
+     */
+    public Duration getPercentile(double percentile) {
+        long recorded = count.sum();
+        if (recorded == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max((long) Math.ceil(recorded * percentile / 100), 1);
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length(); bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(upperBoundOf(bucket), max.get()));
+            }
+        }
+        return getMax();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public Duration getMax() {
+        return Duration.ofNanos(max.get());
+    }
+
+    public Duration getMean() {
+        long recorded = count.sum();
+        return recorded == 0 ? Duration.ZERO : Duration.ofNanos(total.sum() / recorded);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getCount() +
+                ", p50=" + getPercentile(50).toMillis() + "ms" +
+                ", p99=" + getPercentile(99).toMillis() + "ms" +
+                ", max=" + getMax().toMillis() + "ms" +
+                '}';
+    }
+}
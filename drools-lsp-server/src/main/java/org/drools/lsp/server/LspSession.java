@@ -0,0 +1,194 @@
+package org.drools.lsp.server;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+
+/**
+ * One client connected to a {@link DroolsLspSessionServer}: a {@link DroolsLspServer} of its own, on the shared
+ * {@link ServerResources}, and the accounting of what the client used, read on the way in and out of the connection
+ */
+public class LspSession {
+
+    private static final Logger logger = Logger.getLogger(LspSession.class.getSimpleName());
+
+    private final long id;
+    private final SocketChannel channel;
+    private final SocketAddress remoteAddress;
+    private final DroolsLspServer server;
+
+    private final long connectedAt = System.nanoTime();
+    private volatile long lastActivity = connectedAt;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+
+    private Future<Void> listening;
+
+    LspSession(long id, SocketChannel channel, ServerResources resources) throws IOException {
+        this.id = id;
+        this.channel = channel;
+        this.remoteAddress = channel.getRemoteAddress();
+        this.server = new DroolsLspServer(resources);
+        // exiting ends the session, not the process
+        server.setExitHandler(this::close);
+    }
+
+    Future<Void> start(ExecutorService executorService) throws IOException {
+        // the streams of the socket adaptor, as the ones of Channels would block writes while a read is waiting
+        Launcher<LanguageClient> launcher = new LSPLauncher.Builder<LanguageClient>()
+                .setLocalService(server)
+                .setRemoteInterface(LanguageClient.class)
+                .setInput(new CountingInputStream(channel.socket().getInputStream()))
+                .setOutput(new CountingOutputStream(channel.socket().getOutputStream()))
+                .setExecutorService(executorService)
+                .wrapMessages(consumer -> message -> {
+                    messages.increment();
+                    consumer.consume(message);
+                })
+                .create();
+        server.connect(launcher.getRemoteProxy());
+        listening = launcher.startListening();
+        return listening;
+    }
+
+    public void close() {
+        server.stopTelemetry();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Cannot close session " + id, e);
+        }
+        if (listening != null) {
+            listening.cancel(true);
+        }
+    }
+
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public DroolsLspServer getServer() {
+        return server;
+    }
+
+    public Duration getConnectedTime() {
+        return Duration.ofNanos(System.nanoTime() - connectedAt);
+    }
+
+    /**
+     * @return the time since the client last sent anything
+     */
+    public Duration getIdleTime() {
+        return Duration.ofNanos(System.nanoTime() - lastActivity);
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * @return the number of JSON-RPC messages received and sent
+     */
+    public long getMessageCount() {
+        return messages.sum();
+    }
+
+    public int getOpenDocumentCount() {
+        return server.getTextDocumentService().getOpenDocumentCount();
+    }
+
+    public long getParseCount() {
+        return server.getTextDocumentService().getParseCount();
+    }
+
+    @Override
+    public String toString() {
+        return "LspSession{" +
+                "id=" + id +
+                ", remoteAddress=" + remoteAddress +
+                ", connected=" + getConnectedTime().toSeconds() + "s" +
+                ", idle=" + getIdleTime().toSeconds() + "s" +
+                ", bytesRead=" + getBytesRead() +
+                ", bytesWritten=" + getBytesWritten() +
+                ", messages=" + getMessageCount() +
+                ", openDocuments=" + getOpenDocumentCount() +
+                ", parses=" + getParseCount() +
+                '}';
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                received(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                received(read);
+            }
+            return read;
+        }
+
+        private void received(int count) {
+            bytesRead.add(count);
+            lastActivity = System.nanoTime();
+        }
+    }
+
+    private class CountingOutputStream extends FilterOutputStream {
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytesWritten.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytesWritten.add(len);
+        }
+    }
+}
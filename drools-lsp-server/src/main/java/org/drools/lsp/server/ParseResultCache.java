@@ -0,0 +1,208 @@
+package org.drools.lsp.server;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.drools.parser.ParseResult;
+import org.drools.parser.Rope;
+
+/**
+ * Parse results by content: the digest of a text stands for it, so that the documents with the same text share one
+ * parse, whatever their uri, version or session. ParseResults are immutable, which makes sharing them safe. The
+ * least recently used results are dropped beyond the maximum number of entries, or beyond the maximum estimated size,
+ * see {@link DocumentMemoryManager#estimateSize}.
+ * <p>
+ * Results are held through soft references: the ones of the open documents are held by their snapshots, within the
+ * budget of the {@link DocumentMemoryManager}, while the ones it evicted, or of closed documents, are only kept as
+ * long as the heap has room for them. The garbage collector clearing them under pressure, the cache doesn't hold
+ * back the memory the budget frees.
+ */
+public class ParseResultCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 256;
+    static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+
+    private final int maxEntries;
+    private final long maxSize;
+    private final Map<ContentKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReferenceQueue<ParseResult> cleared = new ReferenceQueue<>();
+    private long size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ParseResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_SIZE);
+    }
+
+    public ParseResultCache(int maxEntries, long maxSize) {
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the result of a previous parse of the same text, or null
+     */
+    public ParseResult get(ContentKey key) {
+        ParseResult result;
+        synchronized (entries) {
+            purge();
+            Entry entry = entries.get(key);
+            result = entry == null ? null : entry.get();
+        }
+        (result == null ? misses : hits).increment();
+        return result;
+    }
+
+    public void put(ContentKey key, ParseResult result) {
+        long estimatedSize = DocumentMemoryManager.estimateSize(result);
+        synchronized (entries) {
+            purge();
+            Entry added = new Entry(key, result, estimatedSize, cleared);
+            Entry replaced = entries.put(key, added);
+            size += added.size - (replaced == null ? 0 : replaced.size);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while ((entries.size() > maxEntries || size > maxSize) && eldest.hasNext()) {
+                Entry entry = eldest.next();
+                if (entry != added) {
+                    size -= entry.size;
+                    eldest.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the entries whose result the garbage collector cleared
+     */
+    private void purge() {
+        Entry entry;
+        while ((entry = (Entry) cleared.poll()) != null) {
+            if (entries.remove(entry.key, entry)) {
+                size -= entry.size;
+            }
+        }
+    }
+
+    /**
+     * @return the estimated size of the results kept
+     */
+    public long getRetainedSize() {
+        synchronized (entries) {
+            purge();
+            return size;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            purge();
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static final class Entry extends SoftReference<ParseResult> {
+
+        private final ContentKey key;
+        private final long size;
+
+        private Entry(ContentKey key, ParseResult result, long size, ReferenceQueue<ParseResult> queue) {
+            super(result, queue);
+            this.key = key;
+            this.size = size;
+        }
+    }
+
+    /**
+     * SHA-256 digest of the UTF-16 units of a text, with its length. Units rather than UTF-8 bytes let the chunks of a
+     * {@link Rope} be digested as they are, without copying the text, although a chunk may end within a surrogate pair.
+     */
+    public static final class ContentKey {
+
+        private final byte[] digest;
+        private final int length;
+        private final int hash;
+
+        private ContentKey(byte[] digest, int length) {
+            this.digest = digest;
+            this.length = length;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        private static final int BUFFER_CHARS = 1024;
+
+        public static ContentKey of(CharSequence text) {
+            MessageDigest messageDigest;
+            try {
+                messageDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // every Java platform has SHA-256
+            }
+            byte[] buffer = new byte[BUFFER_CHARS * 2];
+            if (text instanceof Rope) {
+                ((Rope) text).forEachChunk(chunk -> update(messageDigest, chunk, buffer));
+            } else {
+                update(messageDigest, text, buffer);
+            }
+            return new ContentKey(messageDigest.digest(), text.length());
+        }
+
+        private static void update(MessageDigest messageDigest, CharSequence text, byte[] buffer) {
+            int length = text.length();
+            for (int start = 0; start < length; start += BUFFER_CHARS) {
+                int end = Math.min(length, start + BUFFER_CHARS);
+                int b = 0;
+                for (int i = start; i < end; i++) {
+                    char c = text.charAt(i);
+                    buffer[b++] = (byte) (c >> 8);
+                    buffer[b++] = (byte) c;
+                }
+                messageDigest.update(buffer, 0, b);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ContentKey)) {
+                return false;
+            }
+            ContentKey other = (ContentKey) o;
+            return length == other.length && Arrays.equals(digest, other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * @return the digest in hexadecimal, with the length
+         */
+        @Override
+        public String toString() {
+            StringBuilder hex = new StringBuilder(digest.length * 2 + 12);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.append('-').append(length).toString();
+        }
+    }
+}
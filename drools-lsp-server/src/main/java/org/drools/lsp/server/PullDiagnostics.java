@@ -0,0 +1,222 @@
+package org.drools.lsp.server;
+
+import java.util.List;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.ServerCapabilities;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+
+/**
+ * The types of the pull diagnostics of LSP 3.17, textDocument/diagnostic and workspace/diagnostic, which this lsp4j
+ * version lacks. Field names are the ones of the protocol, as gson serializes them as they are.
+ */
+public final class PullDiagnostics {
+
+    public static final String FULL = "full";
+    public static final String UNCHANGED = "unchanged";
+
+    private PullDiagnostics() {
+    }
+
+    /**
+     * Server capabilities with the diagnosticProvider entry
+     */
+    public static class Capabilities extends ServerCapabilities {
+
+        private DiagnosticOptions diagnosticProvider;
+
+        public DiagnosticOptions getDiagnosticProvider() {
+            return diagnosticProvider;
+        }
+
+        public void setDiagnosticProvider(DiagnosticOptions diagnosticProvider) {
+            this.diagnosticProvider = diagnosticProvider;
+        }
+    }
+
+    public static class DiagnosticOptions {
+
+        private String identifier;
+        private boolean interFileDependencies;
+        private boolean workspaceDiagnostics;
+
+        public DiagnosticOptions() {
+        }
+
+        public DiagnosticOptions(String identifier, boolean interFileDependencies, boolean workspaceDiagnostics) {
+            this.identifier = identifier;
+            this.interFileDependencies = interFileDependencies;
+            this.workspaceDiagnostics = workspaceDiagnostics;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public boolean isInterFileDependencies() {
+            return interFileDependencies;
+        }
+
+        public boolean isWorkspaceDiagnostics() {
+            return workspaceDiagnostics;
+        }
+    }
+
+    public static class DocumentDiagnosticParams {
+
+        private TextDocumentIdentifier textDocument;
+        private String identifier;
+        private String previousResultId;
+
+        public DocumentDiagnosticParams() {
+        }
+
+        public DocumentDiagnosticParams(TextDocumentIdentifier textDocument, String previousResultId) {
+            this.textDocument = textDocument;
+            this.previousResultId = previousResultId;
+        }
+
+        public TextDocumentIdentifier getTextDocument() {
+            return textDocument;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public String getPreviousResultId() {
+            return previousResultId;
+        }
+    }
+
+    public static class WorkspaceDiagnosticParams {
+
+        private String identifier;
+        private List<PreviousResultId> previousResultIds;
+
+        public WorkspaceDiagnosticParams() {
+        }
+
+        public WorkspaceDiagnosticParams(List<PreviousResultId> previousResultIds) {
+            this.previousResultIds = previousResultIds;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public List<PreviousResultId> getPreviousResultIds() {
+            return previousResultIds == null ? List.of() : previousResultIds;
+        }
+    }
+
+    public static class PreviousResultId {
+
+        private String uri;
+        private String value;
+
+        public PreviousResultId() {
+        }
+
+        public PreviousResultId(String uri, String value) {
+            this.uri = uri;
+            this.value = value;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * A full report, with every diagnostic of the document, or an unchanged one, only telling that the diagnostics of
+     * the previous result still hold
+     */
+    public static class DocumentDiagnosticReport {
+
+        private String kind;
+        private String resultId;
+        private List<Diagnostic> items;
+
+        public DocumentDiagnosticReport() {
+        }
+
+        public DocumentDiagnosticReport(String resultId, List<Diagnostic> items) {
+            this.kind = FULL;
+            this.resultId = resultId;
+            this.items = items;
+        }
+
+        public DocumentDiagnosticReport(String resultId) {
+            this.kind = UNCHANGED;
+            this.resultId = resultId;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getResultId() {
+            return resultId;
+        }
+
+        /**
+         * @return the diagnostics of a full report, null for an unchanged one
+         */
+        public List<Diagnostic> getItems() {
+            return items;
+        }
+    }
+
+    /**
+     * The report of one document in a workspace report, which tells which one
+     */
+    public static class WorkspaceDocumentDiagnosticReport extends DocumentDiagnosticReport {
+
+        private String uri;
+        private Integer version;
+
+        public WorkspaceDocumentDiagnosticReport() {
+        }
+
+        public WorkspaceDocumentDiagnosticReport(String uri, Integer version, String resultId, List<Diagnostic> items) {
+            super(resultId, items);
+            this.uri = uri;
+            this.version = version;
+        }
+
+        public WorkspaceDocumentDiagnosticReport(String uri, Integer version, String resultId) {
+            super(resultId);
+            this.uri = uri;
+            this.version = version;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public Integer getVersion() {
+            return version;
+        }
+    }
+
+    public static class WorkspaceDiagnosticReport {
+
+        private List<WorkspaceDocumentDiagnosticReport> items;
+
+        public WorkspaceDiagnosticReport() {
+        }
+
+        public WorkspaceDiagnosticReport(List<WorkspaceDocumentDiagnosticReport> items) {
+            this.items = items;
+        }
+
+        public List<WorkspaceDocumentDiagnosticReport> getItems() {
+            return items;
+        }
+    }
+}
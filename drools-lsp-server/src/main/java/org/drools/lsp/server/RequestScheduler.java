@@ -0,0 +1,361 @@
+package org.drools.lsp.server;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the work of the server on its own threads, out of the common pool, taking queued tasks by lane priority:
+ * requests the user is waiting for first, then the diagnostics of the open documents, then background work such as
+ * indexing the classpath. Each lane has a bounded queue. When it is full, submissions are rejected at once, never
+ * blocking the submitter: that may be the thread reading the client messages, which must stay free to read
+ * $/cancelRequest among others. Submitters coalesce their work instead, so that a full queue only holds distinct tasks:
+ * interactive requests are answered with an error telling the client to ask again, parses are tried again later,
+ * superseded if a newer version arrives meanwhile, and a type index refresh is only queued if none is pending.
+ * <p>
+ * In {@link Mode#VIRTUAL} mode, available from Java 21, every task runs on a virtual thread of its own instead: tasks
+ * blocking on I/O, such as loading the type index, then don't hold a thread the others could use. Lanes keep bounding
+ * the tasks in flight the same way, but no longer order them, since there is no queue left to order.
+ */
+public class RequestScheduler {
+
+    public enum Lane {
+        INTERACTIVE,
+        DIAGNOSTICS,
+        BACKGROUND
+    }
+
+    public enum Mode {
+        /**
+         * A fixed number of platform threads taking tasks by lane priority
+         */
+        PLATFORM,
+        /**
+         * A virtual thread per task, on Java 21 and later
+         */
+        VIRTUAL
+    }
+
+    /**
+     * System property choosing the mode by default, "platform" or "virtual"
+     */
+    public static final String MODE_PROPERTY = "drools.lsp.scheduler.mode";
+
+    private static final Logger logger = Logger.getLogger(RequestScheduler.class.getSimpleName());
+
+    static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Map<Lane, ArrayDeque<Task>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, LaneMetrics> metrics = new EnumMap<>(Lane.class);
+    private final Map<Lane, Executor> executors = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> virtualInFlight = new EnumMap<>(Lane.class);
+
+    private volatile int threads;
+    private volatile int queueCapacity;
+    private int startedThreads;
+    private boolean shutdown;
+    private volatile ThreadFactory virtualThreadFactory;
+
+    public RequestScheduler() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public RequestScheduler(int threads, int queueCapacity) {
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            metrics.put(lane, new LaneMetrics());
+            executors.put(lane, command -> submit(lane, command));
+            virtualInFlight.put(lane, 0);
+        }
+        setThreads(threads);
+        setQueueCapacity(queueCapacity);
+        setMode(Mode.valueOf(System.getProperty(MODE_PROPERTY, Mode.PLATFORM.name()).toUpperCase(Locale.ROOT)));
+    }
+
+    /**
+     * @return an executor submitting to the lane, for the APIs taking one
+     */
+    public Executor executor(Lane lane) {
+        return executors.get(lane);
+    }
+
+    /**
+     * @throws RejectedExecutionException if the scheduler is shut down, or if the queue of the lane is full
+     */
+    public void submit(Lane lane, Runnable command) {
+        ThreadFactory factory = virtualThreadFactory;
+        if (factory != null) {
+            submitVirtual(lane, command, factory);
+            return;
+        }
+        ArrayDeque<Task> queue = queues.get(lane);
+        LaneMetrics laneMetrics = metrics.get(lane);
+        lock.lock();
+        try {
+            if (shutdown) {
+                laneMetrics.rejected.increment();
+                throw new RejectedExecutionException("scheduler is shut down");
+            }
+            if (queue.size() >= queueCapacity) {
+                laneMetrics.rejected.increment();
+                throw new RejectedExecutionException(lane + " queue is full");
+            }
+            queue.add(new Task(command, System.nanoTime()));
+            laneMetrics.submitted.increment();
+            if (startedThreads < threads) {
+                startWorker();
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void submitVirtual(Lane lane, Runnable command, ThreadFactory factory) {
+        LaneMetrics laneMetrics = metrics.get(lane);
+        lock.lock();
+        try {
+            if (shutdown) {
+                laneMetrics.rejected.increment();
+                throw new RejectedExecutionException("scheduler is shut down");
+            }
+            if (virtualInFlight.get(lane) >= queueCapacity) {
+                laneMetrics.rejected.increment();
+                throw new RejectedExecutionException(lane + " lane is full");
+            }
+            virtualInFlight.merge(lane, 1, Integer::sum);
+            laneMetrics.submitted.increment();
+        } finally {
+            lock.unlock();
+        }
+        long submitTime = System.nanoTime();
+        factory.newThread(() -> {
+            laneMetrics.recordWait(System.nanoTime() - submitTime);
+            try {
+                run(command);
+            } finally {
+                laneMetrics.completed.increment();
+                lock.lock();
+                try {
+                    virtualInFlight.merge(lane, -1, Integer::sum);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }).start();
+    }
+
+    private void startWorker() {
+        int index = startedThreads++;
+        Thread thread = new Thread(() -> work(index), "drl-request-scheduler-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void work(int index) {
+        while (true) {
+            Task task;
+            Lane lane;
+            lock.lock();
+            try {
+                while ((lane = nextLane()) == null) {
+                    if (shutdown || index >= threads) {
+                        startedThreads--;
+                        return;
+                    }
+                    notEmpty.awaitUninterruptibly();
+                }
+                task = queues.get(lane).poll();
+            } finally {
+                lock.unlock();
+            }
+            metrics.get(lane).recordWait(System.nanoTime() - task.submitTime);
+            run(task.command);
+            metrics.get(lane).completed.increment();
+        }
+    }
+
+    /**
+     * Runs the command, keeping its thread alive whatever it throws
+     */
+    private static void run(Runnable command) {
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            // the futures wrapping the commands already report their failures
+        } catch (Throwable t) {
+            logger.log(Level.SEVERE, "Task failed", t);
+        }
+    }
+
+    private Lane nextLane() {
+        for (Lane lane : Lane.values()) {
+            if (!queues.get(lane).isEmpty()) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lets the queued tasks run, rejects new ones, and stops the threads once the queues are empty
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Mode getMode() {
+        return virtualThreadFactory != null ? Mode.VIRTUAL : Mode.PLATFORM;
+    }
+
+    /**
+     * Applies to the tasks submitted from now on. Without virtual threads in the runtime, the VIRTUAL mode is
+     * ignored with a warning.
+     */
+    public void setMode(Mode mode) {
+        if (mode == Mode.VIRTUAL && !VirtualThreads.isSupported()) {
+            logger.warning("Virtual threads need Java 21, running on " + Runtime.version() + ": keeping platform threads");
+            return;
+        }
+        virtualThreadFactory = mode == Mode.VIRTUAL ? VirtualThreads.factory("drl-request-virtual-") : null;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Threads are started on demand up to this number; exceeding idle threads stop
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        lock.lock();
+        try {
+            this.threads = threads;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queue capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return the number of tasks of the lane waiting for a thread to run them
+     */
+    public int getQueueDepth(Lane lane) {
+        if (virtualThreadFactory != null) {
+            // virtual threads are started at once, but may wait for a carrier thread
+            return (int) Math.max(0, getSubmittedCount(lane) - metrics.get(lane).started.sum());
+        }
+        lock.lock();
+        try {
+            return queues.get(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSubmittedCount(Lane lane) {
+        return metrics.get(lane).submitted.sum();
+    }
+
+    public long getCompletedCount(Lane lane) {
+        return metrics.get(lane).completed.sum();
+    }
+
+    public long getRejectedCount(Lane lane) {
+        return metrics.get(lane).rejected.sum();
+    }
+
+    /**
+     * @return the mean time the tasks of the lane spent in the queue before a thread took them
+     */
+    public Duration getAverageWait(Lane lane) {
+        LaneMetrics laneMetrics = metrics.get(lane);
+        long started = laneMetrics.started.sum();
+        return started == 0 ? Duration.ZERO : Duration.ofNanos(laneMetrics.waitNanos.sum() / started);
+    }
+
+    public Duration getMaxWait(Lane lane) {
+        return Duration.ofNanos(metrics.get(lane).maxWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RequestScheduler{mode=").append(getMode()).append(", threads=").append(threads);
+        for (Lane lane : Lane.values()) {
+            builder.append(", ").append(lane).append("={depth=").append(getQueueDepth(lane))
+                    .append(", averageWait=").append(getAverageWait(lane).toMillis()).append("ms}");
+        }
+        return builder.append('}').toString();
+    }
+
+    private static class Task {
+
+        private final Runnable command;
+        private final long submitTime;
+
+        private Task(Runnable command, long submitTime) {
+            this.command = command;
+            this.submitTime = submitTime;
+        }
+    }
+
+    private static class LaneMetrics {
+
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private void recordWait(long nanos) {
+            started.increment();
+            waitNanos.add(nanos);
+            maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.drools.lsp.server;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.drools.completion.TypeIndex;
+
+/**
+ * What the servers of one process share: the scheduler running their work, the parse results by content and the type
+ * indexes by classpath. A server created on its own gets resources of its own; the sessions of a
+ * {@link DroolsLspSessionServer} all get the same. ANTLR's DFA cache and the keyword completion table are static, so
+ * they are shared by the whole process anyway.
+ */
+public class ServerResources {
+
+    private final RequestScheduler scheduler;
+    private final ParseResultCache parseResults;
+    private final Map<List<Path>, TypeIndex> typeIndexes = new ConcurrentHashMap<>();
+
+    public ServerResources() {
+        this(new RequestScheduler(), new ParseResultCache());
+    }
+
+    public ServerResources(RequestScheduler scheduler, ParseResultCache parseResults) {
+        this.scheduler = scheduler;
+        this.parseResults = parseResults;
+    }
+
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public ParseResultCache getParseResults() {
+        return parseResults;
+    }
+
+    /**
+     * @return the latest index built from the classpath by any server, or {@link TypeIndex#EMPTY}
+     */
+    public TypeIndex getTypeIndex(List<Path> classpath) {
+        return typeIndexes.getOrDefault(classpath, TypeIndex.EMPTY);
+    }
+
+    public void putTypeIndex(List<Path> classpath, TypeIndex typeIndex) {
+        typeIndexes.put(List.copyOf(classpath), typeIndex);
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,179 @@
+package org.drools.lsp.server;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonObject;
+
+/**
+ * What a server measures of itself: the latencies of the requests and notifications it handled, by method, and the
+ * ones of the parses. {@link #toJson} adds the figures kept by the scheduler, the caches and the JVM, answering the
+ * drools/stats request and making the telemetry events.
+ */
+public class ServerStatistics {
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+
+    /**
+     * Records the time from now to the completion of the request the supplier starts
+     */
+    public <T> CompletableFuture<T> timed(String method, Supplier<CompletableFuture<T>> request) {
+        long start = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            record(method, System.nanoTime() - start, true);
+            throw e;
+        }
+        response.whenComplete((result, e) -> record(method, System.nanoTime() - start, e != null));
+        return response;
+    }
+
+    /**
+     * Records the time the notification takes to handle
+     */
+    public void timed(String method, Runnable notification) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            notification.run();
+            failed = false;
+        } finally {
+            record(method, System.nanoTime() - start, failed);
+        }
+    }
+
+    public void record(String method, long nanos, boolean failed) {
+        latencies.computeIfAbsent(method, k -> new LatencyHistogram()).record(nanos);
+        if (failed) {
+            errors.computeIfAbsent(method, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * @return the latencies of the method, null if it was never called
+     */
+    public LatencyHistogram getLatency(String method) {
+        return latencies.get(method);
+    }
+
+    public long getErrorCount(String method) {
+        LongAdder count = errors.get(method);
+        return count == null ? 0 : count.sum();
+    }
+
+    public LatencyHistogram getParseLatency() {
+        return parseLatency;
+    }
+
+    /**
+     * @return the statistics of the server, in milliseconds and bytes
+     */
+    public JsonObject toJson(DroolsLspServer server) {
+        JsonObject stats = new JsonObject();
+
+        JsonObject requests = new JsonObject();
+        new TreeMap<>(latencies).forEach((method, latency) -> {
+            JsonObject entry = toJson(latency);
+            entry.addProperty("errors", getErrorCount(method));
+            requests.add(method, entry);
+        });
+        stats.add("requests", requests);
+
+        RequestScheduler scheduler = server.getScheduler();
+        JsonObject lanes = new JsonObject();
+        for (RequestScheduler.Lane lane : RequestScheduler.Lane.values()) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("queued", scheduler.getQueueDepth(lane));
+            entry.addProperty("submitted", scheduler.getSubmittedCount(lane));
+            entry.addProperty("completed", scheduler.getCompletedCount(lane));
+            entry.addProperty("rejected", scheduler.getRejectedCount(lane));
+            entry.addProperty("averageWait", millis(scheduler.getAverageWait(lane)));
+            entry.addProperty("maxWait", millis(scheduler.getMaxWait(lane)));
+            lanes.add(lane.name().toLowerCase(Locale.ROOT), entry);
+        }
+        JsonObject schedulerStats = new JsonObject();
+        schedulerStats.addProperty("mode", scheduler.getMode().name().toLowerCase(Locale.ROOT));
+        schedulerStats.addProperty("threads", scheduler.getThreads());
+        schedulerStats.add("lanes", lanes);
+        stats.add("scheduler", schedulerStats);
+
+        DroolsLspDocumentService textService = server.getTextDocumentService();
+        JsonObject parsing = toJson(parseLatency);
+        parsing.addProperty("parses", textService.getParseCount());
+        parsing.addProperty("cancelled", textService.getCancelledParseCount());
+        stats.add("parsing", parsing);
+
+        ParseResultCache parseResults = server.getResources().getParseResults();
+        JsonObject parseResultCache = new JsonObject();
+        parseResultCache.addProperty("entries", parseResults.size());
+        parseResultCache.addProperty("hits", parseResults.getHitCount());
+        parseResultCache.addProperty("misses", parseResults.getMissCount());
+        parseResultCache.addProperty("retainedBytes", parseResults.getRetainedSize());
+        CompletionCache completionCache = textService.getCompletionCache();
+        JsonObject completionCacheStats = new JsonObject();
+        completionCacheStats.addProperty("hits", completionCache.getHitCount());
+        completionCacheStats.addProperty("misses", completionCache.getMissCount());
+        JsonObject caches = new JsonObject();
+        caches.add("parseResults", parseResultCache);
+        caches.add("completion", completionCacheStats);
+        stats.add("caches", caches);
+
+        DocumentMemoryManager memoryManager = textService.getMemoryManager();
+        JsonObject documents = new JsonObject();
+        documents.addProperty("open", textService.getOpenDocumentCount());
+        documents.addProperty("retainedBytes", memoryManager.getTotalRetainedSize());
+        documents.addProperty("budgetBytes", memoryManager.getBudget());
+        documents.addProperty("evictions", memoryManager.getEvictionCount());
+        stats.add("documents", documents);
+
+        stats.add("jvm", jvmStatistics());
+        return stats;
+    }
+
+    private static JsonObject toJson(LatencyHistogram latency) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("count", latency.getCount());
+        entry.addProperty("mean", millis(latency.getMean()));
+        entry.addProperty("p50", millis(latency.getPercentile(50)));
+        entry.addProperty("p90", millis(latency.getPercentile(90)));
+        entry.addProperty("p99", millis(latency.getPercentile(99)));
+        entry.addProperty("max", millis(latency.getMax()));
+        return entry;
+    }
+
+    private static JsonObject jvmStatistics() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        JsonObject jvm = new JsonObject();
+        jvm.addProperty("heapUsedBytes", heap.getUsed());
+        jvm.addProperty("heapCommittedBytes", heap.getCommitted());
+        jvm.addProperty("heapMaxBytes", heap.getMax());
+        JsonObject collectors = new JsonObject();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("count", collector.getCollectionCount());
+            entry.addProperty("time", collector.getCollectionTime());
+            collectors.add(collector.getName(), entry);
+        }
+        jvm.add("gc", collectors);
+        jvm.addProperty("threads", ManagementFactory.getThreadMXBean().getThreadCount());
+        jvm.addProperty("uptime", ManagementFactory.getRuntimeMXBean().getUptime());
+        return jvm;
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,144 @@
+package org.drools.lsp.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.drools.parser.Rope;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+
+/**
+ * Immutable version of an open document, its text held by a {@link Rope}: applying the range edits of an incremental
+ * didChange costs O(log n) per edit and the versions share their unchanged text. Each version knows the ranges edited
+ * from the previous one, for the features that can keep what precedes them.
+ */
+public class TextDocument {
+
+    private final String uri;
+    private final int version;
+    private final Rope text;
+    private final List<Edit> edits;
+
+    public TextDocument(String uri, int version, String text) {
+        this(uri, version, Rope.of(text), Collections.emptyList());
+    }
+
+    private TextDocument(String uri, int version, Rope text, List<Edit> edits) {
+        this.uri = uri;
+        this.version = version;
+        this.text = text;
+        this.edits = edits;
+    }
+
+    /**
+     * @param version the new version, or null to keep the current one
+     * @param changes range edits in the order they were made, each on the text resulting from the previous one, or
+     * full texts
+     */
+    public TextDocument applyChanges(Integer version, List<TextDocumentContentChangeEvent> changes) {
+        Rope updated = text;
+        List<Edit> applied = new ArrayList<>(changes.size());
+        for (TextDocumentContentChangeEvent change : changes) {
+            Range range = change.getRange();
+            int start;
+            int end;
+            if (range == null) {
+                // full text: only what follows the common prefix changed
+                start = commonPrefixLength(updated, change.getText());
+                end = updated.length();
+                updated = updated.replace(start, end, change.getText().substring(start));
+                applied.add(new Edit(start, end, change.getText().length()));
+                continue;
+            }
+            start = updated.offsetOf(range.getStart().getLine(), range.getStart().getCharacter());
+            end = Math.max(start, updated.offsetOf(range.getEnd().getLine(), range.getEnd().getCharacter()));
+            updated = updated.replace(start, end, change.getText());
+            applied.add(new Edit(start, end, start + change.getText().length()));
+        }
+        return new TextDocument(uri, version == null ? this.version : version, updated, Collections.unmodifiableList(applied));
+    }
+
+    private static int commonPrefixLength(Rope rope, String text) {
+        int length = Math.min(rope.length(), text.length());
+        for (int i = 0; i < length; i++) {
+            if (rope.charAt(i) != text.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Rope getText() {
+        return text;
+    }
+
+    /**
+     * @return the edits leading from the previous version to this one, in the order they were applied
+     */
+    public List<Edit> getEdits() {
+        return edits;
+    }
+
+    /**
+     * @return the lowest offset touched by the edits leading to this version, or the length of the text if there were none:
+     * everything before it is unchanged
+     */
+    public int getFirstEditedOffset() {
+        int first = text.length();
+        for (Edit edit : edits) {
+            first = Math.min(first, edit.getStart());
+        }
+        return first;
+    }
+
+    @Override
+    public String toString() {
+        return "TextDocument{" +
+                "uri='" + uri + '\'' +
+                ", version=" + version +
+                ", length=" + text.length() +
+                '}';
+    }
+
+    /**
+     * A replaced range: start and old end are offsets in the text before the edit, new end in the text after it
+     */
+    public static class Edit {
+
+        private final int start;
+        private final int oldEnd;
+        private final int newEnd;
+
+        public Edit(int start, int oldEnd, int newEnd) {
+            this.start = start;
+            this.oldEnd = oldEnd;
+            this.newEnd = newEnd;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getOldEnd() {
+            return oldEnd;
+        }
+
+        public int getNewEnd() {
+            return newEnd;
+        }
+
+        @Override
+        public String toString() {
+            return "Edit{" + start + ", " + oldEnd + " -> " + newEnd + '}';
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.drools.lsp.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of Java 21 from code compiled for Java 11, through reflection: on older runtimes
+ * {@link #isSupported()} is false and no virtual thread can be created.
+ */
+final class VirtualThreads {
+
+    // a preview API before Java 21
+    private static final Method OF_VIRTUAL = Runtime.version().feature() >= 21 ? find(Thread.class, "ofVirtual") : null;
+    private static final Method NAME = OF_VIRTUAL == null ? null : find(OF_VIRTUAL.getReturnType(), "name", String.class, long.class);
+    private static final Method FACTORY = OF_VIRTUAL == null ? null : find(OF_VIRTUAL.getReturnType(), "factory");
+
+    private VirtualThreads() {
+    }
+
+    private static Method find(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    static boolean isSupported() {
+        return FACTORY != null;
+    }
+
+    /**
+     * @return a factory of virtual threads named prefix followed by a counter
+     * @throws UnsupportedOperationException if the runtime has no virtual threads
+     */
+    static ThreadFactory factory(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual threads need Java 21, running on " + Runtime.version());
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("cannot create virtual threads", e);
+        }
+    }
+}
@@ -1,15 +1,41 @@
 package org.drools.lsp.server;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import org.drools.completion.SymbolTable;
 import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.InitializeResult;
 import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
+import org.eclipse.lsp4j.services.LanguageServer;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.drools.lsp.server.TestHelperMethods.getDroolsLspDocumentService;
+import static org.drools.lsp.server.TestHelperMethods.getDroolsLspServerForDocument;
 
 class DroolsLspDocumentServiceTest {
 
@@ -71,7 +97,318 @@ class DroolsLspDocumentServiceTest {
         assertThat(hasItem(result, "end")).isTrue(); // RHS
     }
 
+    @Test
+    void completion_returnsCompleteList() throws Exception {
+        String drl =
+                "package org.test;\n" +
+                        "rule TestRule when\n" +
+                        "  Person() \n" +
+                        "then\n" +
+                        "end";
+
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspDocumentService(drl);
+
+        CompletionParams completionParams = new CompletionParams();
+        completionParams.setTextDocument(new TextDocumentIdentifier("myDocument"));
+        completionParams.setPosition(new Position(3, 0));
+        droolsLspDocumentService.setCompletionBudget(Duration.ofSeconds(10));
+
+        CompletionList result = droolsLspDocumentService.completion(completionParams).get(10, TimeUnit.SECONDS).getRight();
+        assertThat(result.isIncomplete()).isFalse();
+        assertThat(hasItem(result.getItems(), "then")).isTrue();
+    }
+
+    @Test
+    void getCompletionList_cachedWhileTyping() {
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspDocumentService("package org.test;\nru");
+        droolsLspDocumentService.setCompletionBudget(Duration.ofSeconds(10));
+        CompletionCache completionCache = droolsLspDocumentService.getCompletionCache();
+
+        CompletionList result = droolsLspDocumentService.getCompletionList(completionParams(1, 2), () -> { });
+        assertThat(result.getItems()).extracting(CompletionItem::getLabel).containsExactly("rule", "ruleflow-group");
+        assertThat(completionCache.getMissCount()).isEqualTo(1);
+
+        changeText(droolsLspDocumentService, 2, "package org.test;\nrul");
+        result = droolsLspDocumentService.getCompletionList(completionParams(1, 3), () -> { });
+        assertThat(result.getItems()).extracting(CompletionItem::getLabel).containsExactly("rule", "ruleflow-group");
+        assertThat(completionCache.getHitCount()).isEqualTo(1);
+        assertThat(completionCache.getContextVersion("myDocument")).isZero();
+
+        // an edit before the word being typed invalidates the cached candidates
+        changeText(droolsLspDocumentService, 3, "package org.test2;\nrul");
+        droolsLspDocumentService.getCompletionList(completionParams(1, 3), () -> { });
+        assertThat(completionCache.getMissCount()).isEqualTo(2);
+        assertThat(completionCache.getContextVersion("myDocument")).isEqualTo(3);
+        assertThat(completionCache.getHitRate()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    void snapshot_parsedOncePerVersion() {
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspDocumentService("rule R1 when then end");
+        droolsLspDocumentService.getSnapshot("myDocument").join();
+        droolsLspDocumentService.setDiagnosticsDebounce(Duration.ofMillis(500));
+        changeText(droolsLspDocumentService, 1, "rule R2 when then end");
+        changeText(droolsLspDocumentService, 2, "rule R3 when\n  $p : Person()\nthen\n  \nend");
+
+        DocumentSnapshot snapshot = droolsLspDocumentService.getSnapshot("myDocument").join();
+        assertThat(snapshot.getVersion()).isEqualTo(2);
+        assertThat(snapshot.getCompilationUnit()).isNotNull();
+        assertThat(snapshot.getTokens()).isNotEmpty();
+        assertThat(droolsLspDocumentService.getLatestSnapshot("myDocument")).isSameAs(snapshot);
+
+        // the features read the snapshot instead of parsing again
+        assertThat(droolsLspDocumentService.getRuleName(completionParams(0, 0))).isEqualTo("R3");
+        droolsLspDocumentService.setCompletionBudget(Duration.ofSeconds(10));
+        CompletionList result = droolsLspDocumentService.getCompletionList(completionParams(3, 2), () -> { });
+        assertThat(result.getItems()).extracting(CompletionItem::getLabel).contains("$p", "end");
+        // version 1 was superseded within the debounce, it was never parsed
+        assertThat(droolsLspDocumentService.getParseCount()).isEqualTo(2);
+    }
+
+    @Test
+    void snapshot_failsOnceSchedulerIsShutDown() {
+        DroolsLspServer server = getDroolsLspServerForDocument("rule R1 when then end");
+        DroolsLspDocumentService droolsLspDocumentService = server.getTextDocumentService();
+        droolsLspDocumentService.getSnapshot("myDocument").join();
+        server.getScheduler().shutdown();
+
+        changeText(droolsLspDocumentService, 1, "rule R2 when then end");
+        assertThatThrownBy(() -> droolsLspDocumentService.getSnapshot("myDocument").get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void diagnostics_publishedForLatestVersionOnly() throws Exception {
+        List<PublishDiagnosticsParams> published = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> firstPublished = new CompletableFuture<>();
+        CompletableFuture<Void> latestPublished = new CompletableFuture<>();
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspServerForDocument("rule R1 when then end", d -> {
+            published.add(d);
+            (d.getVersion() == 2 ? latestPublished : firstPublished).complete(null);
+        }).getTextDocumentService();
+        // published once the snapshot is taken, and only if the document wasn't changed meanwhile
+        firstPublished.get(10, TimeUnit.SECONDS);
+        droolsLspDocumentService.setDiagnosticsDebounce(Duration.ofMillis(500));
+
+        changeText(droolsLspDocumentService, 1, "rule R1 when then");
+        CompletableFuture<DocumentSnapshot> superseded = droolsLspDocumentService.getSnapshot("myDocument");
+        changeText(droolsLspDocumentService, 2, "rule R1 when\n  Person( \nthen end");
+        latestPublished.get(10, TimeUnit.SECONDS);
+
+        assertThat(superseded).isCancelled();
+        assertThat(published).extracting(PublishDiagnosticsParams::getVersion).containsExactly(0, 2);
+        assertThat(published.get(0).getDiagnostics()).isEmpty();
+        Diagnostic error = published.get(1).getDiagnostics().get(0);
+        assertThat(error.getSeverity()).isEqualTo(DiagnosticSeverity.Error);
+        assertThat(error.getSource()).isEqualTo("drools");
+        assertThat(error.getRange().getStart().getLine()).isEqualTo(2);
+    }
+
+    @Test
+    void didClose_clearsDiagnosticsAndIgnoresLateParses() throws Exception {
+        List<PublishDiagnosticsParams> published = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> errorsPublished = new CompletableFuture<>();
+        CompletableFuture<Void> cleared = new CompletableFuture<>();
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspServerForDocument("rule R1 when\n  Person( \nthen end", d -> {
+            published.add(d);
+            (d.getDiagnostics().isEmpty() ? cleared : errorsPublished).complete(null);
+        }).getTextDocumentService();
+        errorsPublished.get(10, TimeUnit.SECONDS);
+
+        droolsLspDocumentService.didClose(new DidCloseTextDocumentParams(new TextDocumentIdentifier("myDocument")));
+        cleared.get(10, TimeUnit.SECONDS);
+        assertThat(published).hasSize(2);
+        assertThat(published.get(0).getDiagnostics()).isNotEmpty();
+        assertThat(published.get(1).getUri()).isEqualTo("myDocument");
+
+        // a parse of the closed document ending now leaves nothing behind
+        droolsLspDocumentService.takeSnapshot(new TextDocument("myDocument", 1, "rule R1 when then end"), Duration.ZERO).get(10, TimeUnit.SECONDS);
+        assertThat(droolsLspDocumentService.getLatestSnapshot("myDocument")).isNull();
+        assertThat(droolsLspDocumentService.getSymbolTable("myDocument")).isSameAs(SymbolTable.EMPTY);
+        assertThat(droolsLspDocumentService.getMemoryManager().getTotalRetainedSize()).isZero();
+        assertThat(published).hasSize(2);
+    }
+
+    @Test
+    void pullDiagnostics_unchangedUntilTextChanges() throws Exception {
+        List<PublishDiagnosticsParams> published = new CopyOnWriteArrayList<>();
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspServerForDocument("rule R1 when then end", published::add).getTextDocumentService();
+        droolsLspDocumentService.setDiagnosticsDebounce(Duration.ZERO);
+        TextDocumentIdentifier document = new TextDocumentIdentifier("myDocument");
+
+        PullDiagnostics.DocumentDiagnosticReport first = droolsLspDocumentService.diagnostic(new PullDiagnostics.DocumentDiagnosticParams(document, null)).get(10, TimeUnit.SECONDS);
+        assertThat(first.getKind()).isEqualTo(PullDiagnostics.FULL);
+        assertThat(first.getItems()).isEmpty();
+        PullDiagnostics.DocumentDiagnosticReport same = droolsLspDocumentService.diagnostic(new PullDiagnostics.DocumentDiagnosticParams(document, first.getResultId())).get(10, TimeUnit.SECONDS);
+        assertThat(same.getKind()).isEqualTo(PullDiagnostics.UNCHANGED);
+        assertThat(same.getResultId()).isEqualTo(first.getResultId());
+        assertThat(same.getItems()).isNull();
+
+        // pulling clients are not pushed diagnostics anymore
+        int pushed = published.size();
+        changeText(droolsLspDocumentService, 1, "rule R1 when\n  Person( \nthen end");
+        PullDiagnostics.DocumentDiagnosticReport changed = droolsLspDocumentService.diagnostic(new PullDiagnostics.DocumentDiagnosticParams(document, first.getResultId())).get(10, TimeUnit.SECONDS);
+        assertThat(changed.getKind()).isEqualTo(PullDiagnostics.FULL);
+        assertThat(changed.getItems()).isNotEmpty();
+        assertThat(published).hasSize(pushed);
+
+        // result ids come from the content, not the version
+        changeText(droolsLspDocumentService, 2, "rule R1 when then end");
+        PullDiagnostics.DocumentDiagnosticReport back = droolsLspDocumentService.diagnostic(new PullDiagnostics.DocumentDiagnosticParams(document, first.getResultId())).get(10, TimeUnit.SECONDS);
+        assertThat(back.getKind()).isEqualTo(PullDiagnostics.UNCHANGED);
+    }
+
+    @Test
+    void pullDiagnostics_clearPushedDiagnostics() throws Exception {
+        List<PublishDiagnosticsParams> published = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> errorsPublished = new CompletableFuture<>();
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspServerForDocument("rule R1 when\n  Person( \nthen end", d -> {
+            published.add(d);
+            if (!d.getDiagnostics().isEmpty()) {
+                errorsPublished.complete(null);
+            }
+        }).getTextDocumentService();
+        droolsLspDocumentService.setDiagnosticsDebounce(Duration.ZERO);
+        errorsPublished.get(10, TimeUnit.SECONDS);
+
+        TextDocumentIdentifier document = new TextDocumentIdentifier("myDocument");
+        PullDiagnostics.DocumentDiagnosticReport first = droolsLspDocumentService.diagnostic(new PullDiagnostics.DocumentDiagnosticParams(document, null)).get(10, TimeUnit.SECONDS);
+        assertThat(first.getItems()).isNotEmpty();
+        changeText(droolsLspDocumentService, 1, "rule R1 when\n  Person( \nthen\nend");
+        PullDiagnostics.DocumentDiagnosticReport changed = droolsLspDocumentService.diagnostic(new PullDiagnostics.DocumentDiagnosticParams(document, first.getResultId())).get(10, TimeUnit.SECONDS);
+        assertThat(changed.getItems()).isNotEmpty();
+
+        // the pushed errors were cleared when the client started pulling, and no others were pushed since
+        assertThat(published).hasSize(2);
+        assertThat(published.get(1).getUri()).isEqualTo("myDocument");
+        assertThat(published.get(1).getDiagnostics()).isEmpty();
+    }
+
+    @Test
+    void workspaceDiagnostics_waitForChanges() throws Exception {
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspDocumentService("rule R1 when then end");
+        droolsLspDocumentService.setDiagnosticsDebounce(Duration.ZERO);
+        droolsLspDocumentService.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem("otherDocument", "drools", 0, "rule R2 when then")));
+
+        PullDiagnostics.WorkspaceDiagnosticReport first = droolsLspDocumentService.workspaceDiagnostic(new PullDiagnostics.WorkspaceDiagnosticParams()).get(10, TimeUnit.SECONDS);
+        assertThat(first.getItems()).extracting(PullDiagnostics.WorkspaceDocumentDiagnosticReport::getUri).containsExactlyInAnyOrder("myDocument", "otherDocument");
+        assertThat(first.getItems()).extracting(PullDiagnostics.DocumentDiagnosticReport::getKind).containsOnly(PullDiagnostics.FULL);
+
+        List<PullDiagnostics.PreviousResultId> previous = new ArrayList<>();
+        first.getItems().forEach(report -> previous.add(new PullDiagnostics.PreviousResultId(report.getUri(), report.getResultId())));
+        CompletableFuture<PullDiagnostics.WorkspaceDiagnosticReport> next = droolsLspDocumentService.workspaceDiagnostic(new PullDiagnostics.WorkspaceDiagnosticParams(previous));
+        Thread.sleep(100);
+        assertThat(next).isNotDone();
+
+        changeText(droolsLspDocumentService, 1, "rule R1 when\n  Person( \nthen end");
+        PullDiagnostics.WorkspaceDiagnosticReport second = next.get(10, TimeUnit.SECONDS);
+        for (PullDiagnostics.WorkspaceDocumentDiagnosticReport report : second.getItems()) {
+            assertThat(report.getKind()).isEqualTo(report.getUri().equals("myDocument") ? PullDiagnostics.FULL : PullDiagnostics.UNCHANGED);
+        }
+    }
+
+    @Test
+    void workspaceDiagnostics_emptyReportWaits() throws Exception {
+        DroolsLspServer server = getDroolsLspServerForDocument("rule R1 when then end");
+        DroolsLspDocumentService droolsLspDocumentService = server.getTextDocumentService();
+        droolsLspDocumentService.setDiagnosticsDebounce(Duration.ZERO);
+        droolsLspDocumentService.getSnapshot("myDocument").join();
+        droolsLspDocumentService.didClose(new DidCloseTextDocumentParams(new TextDocumentIdentifier("myDocument")));
+
+        // no document open, as the client knows already: answering at once would make it ask again in a loop
+        CompletableFuture<PullDiagnostics.WorkspaceDiagnosticReport> cancelled = droolsLspDocumentService.workspaceDiagnostic(new PullDiagnostics.WorkspaceDiagnosticParams());
+        CompletableFuture<PullDiagnostics.WorkspaceDiagnosticReport> next = droolsLspDocumentService.workspaceDiagnostic(new PullDiagnostics.WorkspaceDiagnosticParams());
+        Thread.sleep(500);
+        assertThat(next).isNotDone();
+        assertThat(droolsLspDocumentService.getWaitingWorkspaceReportCount()).isEqualTo(2);
+        cancelled.cancel(true);
+        assertThat(droolsLspDocumentService.getWaitingWorkspaceReportCount()).isEqualTo(1);
+
+        droolsLspDocumentService.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem("otherDocument", "drools", 0, "rule R2 when then end")));
+        assertThat(next.get(10, TimeUnit.SECONDS).getItems()).extracting(PullDiagnostics.WorkspaceDocumentDiagnosticReport::getUri).containsExactly("otherDocument");
+        assertThat(droolsLspDocumentService.getWaitingWorkspaceReportCount()).isZero();
+
+        // the latency is the time to report, not the wait, and the cancelled request is left out
+        LatencyHistogram latency = server.getStatistics().getLatency("workspace/diagnostic");
+        assertThat(latency.getCount()).isEqualTo(1);
+        assertThat(latency.getMax()).isLessThan(Duration.ofMillis(500));
+    }
+
+    @Test
+    void initialize_advertisesPullDiagnostics() {
+        InitializeResult result = new DroolsLspServer().initialize(new InitializeParams()).join();
+        String json = new MessageJsonHandler(ServiceEndpoints.getSupportedMethods(LanguageServer.class)).getGson().toJson(result);
+        assertThat(json).contains("\"diagnosticProvider\":{\"identifier\":\"drools\",\"interFileDependencies\":false,\"workspaceDiagnostics\":true}");
+        assertThat(ServiceEndpoints.getSupportedMethods(DroolsLspServer.class)).containsKeys("textDocument/diagnostic", "workspace/diagnostic");
+    }
+
+    @Test
+    void memoryBudget_evictsColdDocuments() throws Exception {
+        List<PublishDiagnosticsParams> published = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> otherPublished = new CompletableFuture<>();
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspServerForDocument("rule R1 when\n  $p : Person()\nthen\nend", d -> {
+            published.add(d);
+            if (d.getUri().equals("otherDocument")) {
+                otherPublished.complete(null);
+            }
+        }).getTextDocumentService();
+        droolsLspDocumentService.getSnapshot("myDocument").join();
+        long textSize = "rule R1 when\n  $p : Person()\nthen\nend".length() * 2L;
+        assertThat(droolsLspDocumentService.getRetainedSize("myDocument")).isGreaterThan(textSize);
+
+        // room for a single document: opening another one evicts the first
+        droolsLspDocumentService.getMemoryManager().setBudget(droolsLspDocumentService.getMemoryManager().getTotalRetainedSize());
+        TextDocumentItem other = new TextDocumentItem("otherDocument", "drools", 0, "rule R2 when\n  $p : Person()\nthen\nend");
+        droolsLspDocumentService.didOpen(new DidOpenTextDocumentParams(other));
+        droolsLspDocumentService.getSnapshot("otherDocument").join();
+
+        assertThat(droolsLspDocumentService.getMemoryManager().getEvictionCount()).isEqualTo(1);
+        assertThat(droolsLspDocumentService.getLatestSnapshot("myDocument")).isNull();
+        assertThat(droolsLspDocumentService.getRetainedSize("myDocument")).isEqualTo(textSize);
+        assertThat(droolsLspDocumentService.getSymbolTable("myDocument").getVersion()).isZero(); // compact index kept
+
+        // rebuilt on demand, from the parse result cache, without publishing the same diagnostics again
+        long parses = droolsLspDocumentService.getParseCount();
+        assertThat(droolsLspDocumentService.getRuleName(completionParams(0, 0))).isEqualTo("R1");
+        assertThat(droolsLspDocumentService.getParseCount()).isEqualTo(parses);
+        assertThat(droolsLspDocumentService.getLatestSnapshot("otherDocument")).isNull();
+        // diagnostics are published right after the snapshot completes
+        otherPublished.get(10, TimeUnit.SECONDS);
+        assertThat(published).extracting(PublishDiagnosticsParams::getUri).containsExactly("myDocument", "otherDocument");
+
+        droolsLspDocumentService.closeAll();
+        assertThat(droolsLspDocumentService.getMemoryManager().getTotalRetainedSize()).isZero();
+    }
+
+    @Test
+    void didChange_appliesRangeEdits() {
+        DroolsLspDocumentService droolsLspDocumentService = getDroolsLspDocumentService("rule R when\nthen\nend\n");
+        TextDocumentContentChangeEvent insert = new TextDocumentContentChangeEvent(new Range(new Position(0, 11), new Position(0, 11)), null, "\n  Person()");
+        TextDocumentContentChangeEvent rename = new TextDocumentContentChangeEvent(new Range(new Position(0, 5), new Position(0, 6)), null, "Renamed");
+        droolsLspDocumentService.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier("myDocument", 1), List.of(insert, rename)));
+
+        DocumentSnapshot snapshot = droolsLspDocumentService.getSnapshot("myDocument").join();
+        assertThat(snapshot.getText().toString()).isEqualTo("rule Renamed when\n  Person()\nthen\nend\n");
+        assertThat(snapshot.getVersion()).isEqualTo(1);
+        assertThat(snapshot.getDocument().getEdits()).hasSize(2);
+        assertThat(snapshot.getDocument().getFirstEditedOffset()).isEqualTo(5);
+        assertThat(droolsLspDocumentService.getRuleName(completionParams(0, 0))).isEqualTo("Renamed");
+    }
+
+    private static CompletionParams completionParams(int line, int character) {
+        CompletionParams completionParams = new CompletionParams();
+        completionParams.setTextDocument(new TextDocumentIdentifier("myDocument"));
+        completionParams.setPosition(new Position(line, character));
+        return completionParams;
+    }
+
+    private static void changeText(DroolsLspDocumentService droolsLspDocumentService, int version, String text) {
+        droolsLspDocumentService.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier("myDocument", version),
+                List.of(new TextDocumentContentChangeEvent(text))));
+    }
+
     private boolean hasItem(List<CompletionItem> result, String text) {
-        return result.stream().map(CompletionItem::getInsertText).anyMatch(text::equals);
+        return result.stream().map(CompletionItem::getLabel).anyMatch(text::equals);
     }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package org.drools.lsp.server;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.gson.JsonObject;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DroolsLspSessionServerTest {
+
+    private static final String DRL = "package org.test;\nrule R when\n  $p : Person()\nthen\nend\n";
+
+    @Test
+    void sessionsShareParsesAndIdleOnesAreReaped() throws Exception {
+        try (DroolsLspSessionServer sessionServer = new DroolsLspSessionServer(0, Duration.ofSeconds(3))) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    sessionServer.acceptSessions();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            try (Socket first = new Socket(InetAddress.getLoopbackAddress(), sessionServer.getPort());
+                 Socket second = new Socket(InetAddress.getLoopbackAddress(), sessionServer.getPort())) {
+                openDocument(first, "first.drl").get(10, TimeUnit.SECONDS);
+                openDocument(second, "second.drl").get(10, TimeUnit.SECONDS);
+
+                assertThat(sessionServer.getSessions()).hasSize(2);
+                // the second session found the parse of the same text made for the first one
+                assertThat(sessionServer.getSessions()).extracting(LspSession::getParseCount).containsExactlyInAnyOrder(0L, 1L);
+                assertThat(sessionServer.getResources().getParseResults().getHitCount()).isEqualTo(1);
+                for (LspSession session : sessionServer.getSessions()) {
+                    assertThat(session.getOpenDocumentCount()).isEqualTo(1);
+                    assertThat(session.getBytesRead()).isPositive();
+                    assertThat(session.getBytesWritten()).isPositive();
+                    assertThat(session.getMessageCount()).isGreaterThanOrEqualTo(3);
+                }
+                List<DroolsLspServer> servers = sessionServer.getSessions().stream().map(LspSession::getServer).collect(Collectors.toList());
+                assertThat(servers).allMatch(DroolsLspServer::isTelemetryRunning);
+
+                for (int i = 0; i < 100 && !sessionServer.getSessions().isEmpty(); i++) {
+                    Thread.sleep(100);
+                }
+                assertThat(sessionServer.getSessions()).isEmpty();
+                // the telemetry of reaped sessions stops with them
+                assertThat(servers).noneMatch(DroolsLspServer::isTelemetryRunning);
+            }
+        }
+    }
+
+    private static CompletableFuture<PublishDiagnosticsParams> openDocument(Socket socket, String uri) throws Exception {
+        CompletableFuture<PublishDiagnosticsParams> diagnostics = new CompletableFuture<>();
+        Launcher<LanguageServer> launcher = LSPLauncher.createClientLauncher(new LanguageClient() {
+            @Override
+            public void telemetryEvent(Object object) {
+            }
+
+            @Override
+            public void publishDiagnostics(PublishDiagnosticsParams params) {
+                diagnostics.complete(params);
+            }
+
+            @Override
+            public void showMessage(MessageParams messageParams) {
+            }
+
+            @Override
+            public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+                return null;
+            }
+
+            @Override
+            public void logMessage(MessageParams message) {
+            }
+        }, socket.getInputStream(), socket.getOutputStream());
+        launcher.startListening();
+        LanguageServer server = launcher.getRemoteProxy();
+        InitializeParams params = new InitializeParams();
+        JsonObject options = new JsonObject();
+        options.addProperty(DroolsLspServer.TELEMETRY_INTERVAL_OPTION, 1);
+        params.setInitializationOptions(options);
+        server.initialize(params).get(10, TimeUnit.SECONDS);
+        server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, "drools", 1, DRL)));
+        return diagnostics;
+    }
+}
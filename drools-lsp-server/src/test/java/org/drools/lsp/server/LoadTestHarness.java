@@ -0,0 +1,359 @@
+package org.drools.lsp.server;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import com.google.gson.JsonObject;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageServer;
+
+/**
+ * Replays editing sessions against {@link DroolsLspServer}s in process, many simulated clients at once, each one
+ * connected to a server of its own over piped streams as in {@link LauncherTest}, all the servers sharing one
+ * {@link ServerResources} as the sessions of a {@link DroolsLspSessionServer} do. Reports the latency percentiles and
+ * the throughput by method, as seen by the clients, with the allocations and the garbage collections of the run.
+ * Diagnostics are reported as textDocument/publishDiagnostics, their latency being the time from the change to the
+ * publication of its diagnostics. Not a test: run it from the test classpath, e.g.
+ * <pre>
+ * java -cp drools-lsp-server/target/test-classes:drools-lsp-server/target/classes:... org.drools.lsp.server.LoadTestHarness [clients] [changes per client] [recorded session files...]
+ * </pre>
+ */
+public class LoadTestHarness {
+
+    static final String PUBLISH_DIAGNOSTICS = "textDocument/publishDiagnostics";
+
+    private final ServerResources resources;
+    private final Duration typingDelay;
+
+    public LoadTestHarness(ServerResources resources, Duration typingDelay) {
+        this.resources = resources;
+        this.typingDelay = typingDelay;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        List<SessionScript> recorded = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            recorded.add(SessionScript.load(Paths.get(args[i])));
+        }
+
+        ServerResources resources = new ServerResources();
+        LoadTestHarness harness = new LoadTestHarness(resources, Duration.ofMillis(5));
+        IntFunction<SessionScript> scripts = recorded.isEmpty()
+                ? client -> SessionScript.synthetic("client" + client + ".drl", 20 + client, changes, 10, 3)
+                : client -> recorded.get(client % recorded.size());
+        Report report = harness.run(clients, scripts);
+        resources.shutdown();
+        System.out.println(report);
+    }
+
+    /**
+     * Replays the script of every client concurrently, until they all ended
+     */
+    public Report run(int clients, IntFunction<SessionScript> scripts) throws Exception {
+        Report report = new Report(clients);
+        ExecutorService threads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    report.threadEnded();
+                }
+            }, "drl-load-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<Void>> sessions = new ArrayList<>();
+            for (int client = 0; client < clients; client++) {
+                SessionScript script = scripts.apply(client);
+                sessions.add(CompletableFuture.runAsync(() -> replay(script, report, threads), threads));
+            }
+            CompletableFuture.allOf(sessions.toArray(new CompletableFuture[0])).get(30, TimeUnit.MINUTES);
+            report.end();
+        } finally {
+            threads.shutdownNow();
+        }
+        return report;
+    }
+
+    private void replay(SessionScript script, Report report, ExecutorService threads) {
+        Map<Integer, Long> changedAt = new ConcurrentHashMap<>();
+        Map<Integer, CompletableFuture<Void>> published = new ConcurrentHashMap<>();
+        try {
+            PipedInputStream inClient = new PipedInputStream(64 * 1024);
+            PipedOutputStream outClient = new PipedOutputStream();
+            PipedInputStream inServer = new PipedInputStream(64 * 1024);
+            PipedOutputStream outServer = new PipedOutputStream();
+            inClient.connect(outServer);
+            outClient.connect(inServer);
+
+            DroolsLspServer server = new DroolsLspServer(resources);
+            server.setExitHandler(() -> { });
+            Launcher<LanguageClient> serverLauncher = new LSPLauncher.Builder<LanguageClient>()
+                    .setLocalService(server)
+                    .setRemoteInterface(LanguageClient.class)
+                    .setInput(inServer)
+                    .setOutput(outServer)
+                    .setExecutorService(threads)
+                    .create();
+            server.connect(serverLauncher.getRemoteProxy());
+            serverLauncher.startListening();
+
+            Launcher<LanguageServer> clientLauncher = new LSPLauncher.Builder<LanguageServer>()
+                    .setLocalService(new DroolsLspClient() {
+                        @Override
+                        public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+                            if (diagnostics.getVersion() == null) {
+                                return;
+                            }
+                            Long sentAt = changedAt.remove(diagnostics.getVersion());
+                            if (sentAt != null) {
+                                report.record(PUBLISH_DIAGNOSTICS, System.nanoTime() - sentAt, false);
+                            }
+                            CompletableFuture<Void> awaited = published.remove(diagnostics.getVersion());
+                            if (awaited != null) {
+                                awaited.complete(null);
+                            }
+                        }
+                    })
+                    .setRemoteInterface(LanguageServer.class)
+                    .setInput(inClient)
+                    .setOutput(outClient)
+                    .setExecutorService(threads)
+                    .create();
+            clientLauncher.startListening();
+            RemoteEndpoint endpoint = clientLauncher.getRemoteEndpoint();
+
+            List<CompletableFuture<?>> pending = new ArrayList<>();
+            // the diagnostics of the last version are published once the debounce passed: sessions wait for them
+            // before closing the document or ending, as users look at them once they stop typing
+            Integer awaitedVersion = null;
+            for (SessionScript.Step step : script.getSteps()) {
+                if (!step.isBurst()) {
+                    CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+                    pending.clear();
+                }
+                if ("textDocument/didClose".equals(step.getMethod())) {
+                    awaitDiagnostics(published, awaitedVersion);
+                }
+                long start = System.nanoTime();
+                if (step.isRequest()) {
+                    pending.add(endpoint.request(step.getMethod(), step.getParams())
+                            .whenComplete((result, e) -> report.record(step.getMethod(), System.nanoTime() - start, e != null)));
+                } else {
+                    Integer version = versionOf(step);
+                    if (version != null) {
+                        published.put(version, new CompletableFuture<>());
+                        changedAt.put(version, start);
+                        awaitedVersion = version;
+                    }
+                    endpoint.notify(step.getMethod(), step.getParams());
+                    report.record(step.getMethod(), System.nanoTime() - start, false);
+                    if (version != null && !typingDelay.isZero()) {
+                        Thread.sleep(typingDelay.toMillis());
+                    }
+                }
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+            awaitDiagnostics(published, awaitedVersion);
+            outClient.close();
+            outServer.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the diagnostics of the version to be published, at most 10 seconds: a version superseded by a newer
+     * one has none
+     */
+    private static void awaitDiagnostics(Map<Integer, CompletableFuture<Void>> published, Integer version) throws InterruptedException {
+        CompletableFuture<Void> awaited = version == null ? null : published.get(version);
+        if (awaited == null) {
+            return;
+        }
+        try {
+            awaited.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // reported as a missing publication
+        }
+    }
+
+    private static Integer versionOf(SessionScript.Step step) {
+        Object params = step.getParams();
+        if (params instanceof DidOpenTextDocumentParams) {
+            return ((DidOpenTextDocumentParams) params).getTextDocument().getVersion();
+        }
+        if (params instanceof DidChangeTextDocumentParams) {
+            return ((DidChangeTextDocumentParams) params).getTextDocument().getVersion();
+        }
+        if (params instanceof JsonObject && ((JsonObject) params).has("textDocument")) {
+            JsonObject textDocument = ((JsonObject) params).getAsJsonObject("textDocument");
+            return textDocument.has("version") ? textDocument.get("version").getAsInt() : null;
+        }
+        return null;
+    }
+
+    /**
+     * Latencies and throughput by method, allocations and garbage collections of a run
+     */
+    public static class Report {
+
+        private final int clients;
+        private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final long startedAt = System.nanoTime();
+        private final long allocatedAtStart = allocatedBytes();
+        private final long gcCountAtStart = gcCount();
+        private final long gcTimeAtStart = gcTime();
+        private final LongAdder allocatedByEndedThreads = new LongAdder();
+        private long elapsed;
+        private long allocated;
+        private long gcCount;
+        private long gcTime;
+
+        Report(int clients) {
+            this.clients = clients;
+        }
+
+        void record(String method, long nanos, boolean failed) {
+            latencies.computeIfAbsent(method, k -> new LatencyHistogram()).record(nanos);
+            if (failed) {
+                errors.computeIfAbsent(method, k -> new LongAdder()).increment();
+            }
+        }
+
+        /**
+         * Samples the allocations of the calling thread as it ends, as they are lost to the JVM afterwards
+         */
+        void threadEnded() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                long allocated = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+                allocatedByEndedThreads.add(Math.max(allocated, 0));
+            }
+        }
+
+        void end() {
+            elapsed = System.nanoTime() - startedAt;
+            long allocatedAtEnd = allocatedBytes();
+            allocated = allocatedAtEnd < 0 ? -1 : allocatedAtEnd + allocatedByEndedThreads.sum() - allocatedAtStart;
+            gcCount = gcCount() - gcCountAtStart;
+            gcTime = gcTime() - gcTimeAtStart;
+        }
+
+        /**
+         * @return the latencies of the method, null if it was never called
+         */
+        public LatencyHistogram getLatency(String method) {
+            return latencies.get(method);
+        }
+
+        public long getErrorCount(String method) {
+            LongAdder count = errors.get(method);
+            return count == null ? 0 : count.sum();
+        }
+
+        /**
+         * @return the calls of the method per second of the run
+         */
+        public double getThroughput(String method) {
+            LatencyHistogram latency = latencies.get(method);
+            return latency == null || elapsed == 0 ? 0 : latency.getCount() * 1e9 / elapsed;
+        }
+
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsed);
+        }
+
+        /**
+         * @return the bytes allocated during the run, as far as the JVM tells, -1 if it doesn't. Counts the threads
+         * alive at the end, and the client threads of the harness ending before; other threads ending during the run,
+         * such as idle scheduler threads, are missed, and so are virtual threads.
+         */
+        public long getAllocatedBytes() {
+            return allocated;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public Duration getGcTime() {
+            return Duration.ofMillis(gcTime);
+        }
+
+        private static long allocatedBytes() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            long total = 0;
+            for (long allocated : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                total += Math.max(allocated, 0);
+            }
+            return total;
+        }
+
+        private static long gcCount() {
+            long count = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(collector.getCollectionCount(), 0);
+            }
+            return count;
+        }
+
+        private static long gcTime() {
+            long time = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                time += Math.max(collector.getCollectionTime(), 0);
+            }
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("%d clients, %d ms, %d MB allocated, %d GCs taking %d ms%n",
+                    clients, getElapsed().toMillis(), allocated / (1024 * 1024), gcCount, gcTime));
+            report.append(String.format("%-34s %8s %7s %9s %9s %9s %9s %9s%n", "method", "count", "errors", "per sec", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+            new TreeMap<>(latencies).forEach((method, latency) -> report.append(String.format("%-34s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    method, latency.getCount(), getErrorCount(method), getThroughput(method),
+                    millis(latency.getPercentile(50)), millis(latency.getPercentile(90)), millis(latency.getPercentile(99)), millis(latency.getMax()))));
+            return report.toString();
+        }
+
+        private static double millis(Duration duration) {
+            return duration.toNanos() / 1_000_000.0;
+        }
+    }
+}
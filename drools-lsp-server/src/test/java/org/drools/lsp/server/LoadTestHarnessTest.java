@@ -0,0 +1,53 @@
+package org.drools.lsp.server;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoadTestHarnessTest {
+
+    @Test
+    void syntheticSessions() throws Exception {
+        ServerResources resources = new ServerResources();
+        LoadTestHarness.Report report = new LoadTestHarness(resources, Duration.ZERO)
+                .run(4, client -> SessionScript.synthetic("client" + client + ".drl", 10, 60, 10, 3));
+        resources.shutdown();
+
+        assertThat(report.getLatency("initialize").getCount()).isEqualTo(4);
+        assertThat(report.getLatency("textDocument/didChange").getCount()).isEqualTo(4 * 60);
+        assertThat(report.getLatency("textDocument/completion").getCount()).isEqualTo(4 * 6 * 3);
+        assertThat(report.getLatency("shutdown").getCount()).isEqualTo(4);
+        assertThat(report.getErrorCount("initialize")).isZero();
+        assertThat(report.getThroughput("textDocument/didChange")).isPositive();
+        assertThat(report.getElapsed()).isPositive();
+        assertThat(report.toString()).contains("textDocument/completion");
+    }
+
+    @Test
+    void recordedSession(@TempDir Path dir) throws Exception {
+        Path recorded = dir.resolve("session.jsonl");
+        Files.write(recorded, List.of(
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{}}",
+                "{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/didOpen\",\"params\":{\"textDocument\":{\"uri\":\"a.drl\",\"languageId\":\"drools\",\"version\":1,\"text\":\"rule R when\\nthen\\nend\"}}}",
+                "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"textDocument/completion\",\"params\":{\"textDocument\":{\"uri\":\"a.drl\"},\"position\":{\"line\":1,\"character\":0}}}",
+                "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"textDocument/completion\",\"params\":{\"textDocument\":{\"uri\":\"a.drl\"},\"position\":{\"line\":1,\"character\":0}}}",
+                ""), StandardCharsets.UTF_8);
+        SessionScript script = SessionScript.load(recorded);
+        assertThat(script.getSteps()).extracting(SessionScript.Step::isBurst).containsExactly(false, false, false, true);
+
+        ServerResources resources = new ServerResources();
+        LoadTestHarness.Report report = new LoadTestHarness(resources, Duration.ZERO).run(2, client -> script);
+        resources.shutdown();
+
+        assertThat(report.getLatency("textDocument/completion").getCount()).isEqualTo(4);
+        assertThat(report.getErrorCount("textDocument/completion")).isZero();
+        assertThat(report.getLatency(LoadTestHarness.PUBLISH_DIAGNOSTICS).getCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,117 @@
+package org.drools.lsp.server;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.lsp.server.RequestScheduler.Lane;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestSchedulerTest {
+
+    @Test
+    void lanesRunByPriority() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 10);
+        scheduler.setMode(RequestScheduler.Mode.PLATFORM);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        List<Lane> order = new CopyOnWriteArrayList<>();
+        scheduler.submit(Lane.BACKGROUND, () -> { // keeps the only thread busy
+            started.countDown();
+            await(release);
+        });
+        started.await(10, TimeUnit.SECONDS);
+
+        scheduler.submit(Lane.BACKGROUND, () -> order.add(Lane.BACKGROUND));
+        scheduler.submit(Lane.DIAGNOSTICS, () -> order.add(Lane.DIAGNOSTICS));
+        CompletableFuture<Void> last = CompletableFuture.runAsync(() -> order.add(Lane.INTERACTIVE), scheduler.executor(Lane.INTERACTIVE));
+        assertThat(scheduler.getQueueDepth(Lane.BACKGROUND)).isEqualTo(1);
+        release.countDown();
+
+        last.get(10, TimeUnit.SECONDS);
+        scheduler.shutdown();
+        awaitCompleted(scheduler, Lane.BACKGROUND, 2);
+        assertThat(order).containsExactly(Lane.INTERACTIVE, Lane.DIAGNOSTICS, Lane.BACKGROUND);
+        assertThat(scheduler.getSubmittedCount(Lane.BACKGROUND)).isEqualTo(2);
+        assertThat(scheduler.getMaxWait(Lane.BACKGROUND)).isGreaterThanOrEqualTo(scheduler.getAverageWait(Lane.BACKGROUND));
+        assertThatThrownBy(() -> scheduler.submit(Lane.DIAGNOSTICS, () -> { })).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void fullQueueRejects() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 1);
+        scheduler.setMode(RequestScheduler.Mode.PLATFORM);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit(Lane.INTERACTIVE, () -> {
+            started.countDown();
+            await(release);
+        });
+        started.await(10, TimeUnit.SECONDS);
+        scheduler.submit(Lane.INTERACTIVE, () -> { });
+
+        assertThatThrownBy(() -> scheduler.submit(Lane.INTERACTIVE, () -> { })).isInstanceOf(RejectedExecutionException.class);
+        assertThat(scheduler.getRejectedCount(Lane.INTERACTIVE)).isEqualTo(1);
+
+        // the other lanes have their own queue, and never block the submitter either
+        scheduler.submit(Lane.DIAGNOSTICS, () -> { });
+        assertThatThrownBy(() -> scheduler.submit(Lane.DIAGNOSTICS, () -> { })).isInstanceOf(RejectedExecutionException.class);
+        assertThat(scheduler.getRejectedCount(Lane.DIAGNOSTICS)).isEqualTo(1);
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void errorsDontStopWorkers() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 10);
+        scheduler.setMode(RequestScheduler.Mode.PLATFORM);
+        scheduler.submit(Lane.INTERACTIVE, () -> {
+            throw new AssertionError("failing task");
+        });
+        String threadName = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), scheduler.executor(Lane.INTERACTIVE))
+                .get(10, TimeUnit.SECONDS);
+        assertThat(threadName).isEqualTo("drl-request-scheduler-0");
+        assertThat(scheduler.getCompletedCount(Lane.INTERACTIVE)).isGreaterThanOrEqualTo(1);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void virtualMode() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 10);
+        scheduler.setMode(RequestScheduler.Mode.VIRTUAL);
+        if (!VirtualThreads.isSupported()) {
+            assertThat(scheduler.getMode()).isEqualTo(RequestScheduler.Mode.PLATFORM);
+            return;
+        }
+        assertThat(scheduler.getMode()).isEqualTo(RequestScheduler.Mode.VIRTUAL);
+
+        // a blocked task doesn't hold back the others, even with a single platform thread configured
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(Lane.BACKGROUND, () -> await(release));
+        String threadName = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), scheduler.executor(Lane.INTERACTIVE))
+                .get(10, TimeUnit.SECONDS);
+        assertThat(threadName).startsWith("drl-request-virtual-");
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitCompleted(RequestScheduler scheduler, Lane lane, long count) throws InterruptedException {
+        for (int i = 0; i < 100 && scheduler.getCompletedCount(lane) < count; i++) {
+            Thread.sleep(50);
+        }
+    }
+}
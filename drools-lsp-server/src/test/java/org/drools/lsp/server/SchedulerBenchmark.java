@@ -0,0 +1,101 @@
+package org.drools.lsp.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.drools.lsp.server.RequestScheduler.Lane;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+
+/**
+ * Completion latency under concurrent load, with the platform thread scheduler and, on Java 21, with virtual threads.
+ * Concurrent clients keep asking for completions while background tasks block on I/O, standing for type index loads
+ * and disk caches. Not a test: run it from the test classpath, e.g.
+ * <pre>
+ * mvn -Pjava21 test-compile
+ * java -cp drools-lsp-server/target/test-classes:drools-lsp-server/target/classes:... org.drools.lsp.server.SchedulerBenchmark [clients] [requests per client]
+ * </pre>
+ */
+public class SchedulerBenchmark {
+
+    private static final int BLOCKING_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        StringBuilder drl = new StringBuilder("package org.test;\nimport org.test.model.Person;\n");
+        for (int i = 0; i < 50; i++) {
+            drl.append("rule R").append(i).append(" when\n  $p : Person( age > ").append(i).append(" )\nthen\nend\n");
+        }
+
+        run(RequestScheduler.Mode.PLATFORM, drl.toString(), clients, requests);
+        if (VirtualThreads.isSupported()) {
+            run(RequestScheduler.Mode.VIRTUAL, drl.toString(), clients, requests);
+        } else {
+            System.out.println("VIRTUAL: skipped, virtual threads need Java 21, running on " + Runtime.version());
+        }
+    }
+
+    private static void run(RequestScheduler.Mode mode, String drl, int clients, int requests) throws Exception {
+        DroolsLspServer server = TestHelperMethods.getDroolsLspServerForDocument(drl);
+        RequestScheduler scheduler = server.getScheduler();
+        scheduler.setMode(mode);
+        scheduler.setQueueCapacity(clients * 2);
+        DroolsLspDocumentService service = server.getTextDocumentService();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread background = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    scheduler.submit(Lane.BACKGROUND, () -> sleep(BLOCKING_MILLIS));
+                }
+            } catch (RejectedExecutionException e) {
+                // shut down
+            }
+        });
+        background.setDaemon(true);
+        background.start();
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            done.add(CompletableFuture.runAsync(() -> {
+                for (int r = 0; r < requests; r++) {
+                    CompletionParams params = new CompletionParams(new TextDocumentIdentifier("myDocument"), new Position(3 + (r % 40) * 4, 2));
+                    long start = System.nanoTime();
+                    service.completion(params).join();
+                    latencies.add(System.nanoTime() - start);
+                }
+            }, runnable -> new Thread(runnable).start()));
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).get(10, TimeUnit.MINUTES);
+        running.set(false);
+        server.shutdown();
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%s: %d requests, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms, interactive wait avg %d ms, %s%n",
+                mode, sorted.size(), percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), percentile(sorted, 100),
+                scheduler.getAverageWait(Lane.INTERACTIVE).toMillis(), scheduler);
+    }
+
+    private static double percentile(List<Long> sorted, int percentile) {
+        int index = Math.min(sorted.size() - 1, (int) Math.ceil(sorted.size() * percentile / 100.0) - 1);
+        return sorted.get(Math.max(index, 0)) / 1_000_000.0;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.drools.lsp.server;
+
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonObject;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.LogTraceParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TraceValue;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.services.JsonRequest;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ServerStatisticsTest {
+
+    /**
+     * The client side of the drools/stats request
+     */
+    interface StatsServer extends LanguageServer {
+
+        @JsonRequest("drools/stats")
+        CompletableFuture<JsonObject> stats();
+    }
+
+    @Test
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(Duration.ofMillis(i));
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMax()).isEqualTo(Duration.ofMillis(1000));
+        // log-linear buckets over-estimate by at most an eighth
+        assertThat(histogram.getPercentile(50).toMillis()).isBetween(500L, 563L);
+        assertThat(histogram.getPercentile(99).toMillis()).isBetween(990L, 1000L);
+        assertThat(histogram.getPercentile(100)).isEqualTo(histogram.getMax());
+        assertThat(new LatencyHistogram().getPercentile(50)).isZero();
+        for (int bucket = 0; bucket < LatencyHistogram.bucketOf(Long.MAX_VALUE); bucket++) {
+            assertThat(LatencyHistogram.bucketOf(LatencyHistogram.upperBoundOf(bucket))).isEqualTo(bucket);
+            assertThat(LatencyHistogram.bucketOf(LatencyHistogram.upperBoundOf(bucket) + 1)).isEqualTo(bucket + 1);
+        }
+    }
+
+    @Test
+    void statsRequest() throws Exception {
+        PipedInputStream inClient = new PipedInputStream();
+        PipedOutputStream outClient = new PipedOutputStream();
+        PipedInputStream inServer = new PipedInputStream();
+        PipedOutputStream outServer = new PipedOutputStream();
+        inClient.connect(outServer);
+        outClient.connect(inServer);
+
+        DroolsLspServer server = new DroolsLspServer();
+        server.getTextDocumentService().setDiagnosticsDebounce(Duration.ZERO);
+        Launcher<LanguageClient> serverLauncher = LSPLauncher.createServerLauncher(server, inServer, outServer);
+        server.connect(serverLauncher.getRemoteProxy());
+        serverLauncher.startListening();
+
+        List<LogTraceParams> traces = new CopyOnWriteArrayList<>();
+        Launcher<StatsServer> clientLauncher = new LSPLauncher.Builder<StatsServer>()
+                .setLocalService(new DroolsLspClient() {
+                    @Override
+                    public void logTrace(LogTraceParams params) {
+                        traces.add(params);
+                    }
+                })
+                .setRemoteInterface(StatsServer.class)
+                .setInput(inClient)
+                .setOutput(outClient)
+                .create();
+        clientLauncher.startListening();
+        StatsServer remote = clientLauncher.getRemoteProxy();
+
+        InitializeParams initializeParams = new InitializeParams();
+        initializeParams.setTrace(TraceValue.Verbose);
+        remote.initialize(initializeParams).get(10, TimeUnit.SECONDS);
+        remote.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(new TextDocumentItem("myDocument", "drools", 1, "rule R when\n  $p : Person()\nthen\nend")));
+        remote.getTextDocumentService().completion(new CompletionParams(new TextDocumentIdentifier("myDocument"), new Position(2, 0))).get(10, TimeUnit.SECONDS);
+        server.getTextDocumentService().getSnapshot("myDocument").get(10, TimeUnit.SECONDS);
+        server.getTextDocumentService().getCompletionItems(new CompletionParams(new TextDocumentIdentifier("myDocument"), new Position(2, 0)));
+
+        JsonObject stats = remote.stats().get(10, TimeUnit.SECONDS);
+
+        JsonObject requests = stats.getAsJsonObject("requests");
+        assertThat(requests.keySet()).contains("initialize", "textDocument/didOpen", "textDocument/completion");
+        assertThat(requests.getAsJsonObject("textDocument/completion").get("count").getAsLong()).isEqualTo(1);
+        assertThat(requests.getAsJsonObject("textDocument/completion").get("max").getAsDouble()).isPositive();
+        assertThat(stats.getAsJsonObject("parsing").get("parses").getAsLong()).isEqualTo(1);
+        assertThat(stats.getAsJsonObject("parsing").get("count").getAsLong()).isEqualTo(1);
+        assertThat(stats.getAsJsonObject("scheduler").getAsJsonObject("lanes").getAsJsonObject("interactive").get("submitted").getAsLong()).isEqualTo(1);
+        assertThat(stats.getAsJsonObject("caches").getAsJsonObject("parseResults").get("misses").getAsLong()).isEqualTo(1);
+        assertThat(stats.getAsJsonObject("documents").get("open").getAsInt()).isEqualTo(1);
+        assertThat(stats.getAsJsonObject("jvm").get("heapUsedBytes").getAsLong()).isPositive();
+
+        // completion debug output goes to the trace channel, with its verbose part as asked
+        for (int i = 0; i < 100 && traces.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(traces).hasSize(1);
+        assertThat(traces.get(0).getMessage()).startsWith("Position=");
+        assertThat(traces.get(0).getVerbose()).startsWith("completionItems = ");
+        server.getResources().shutdown();
+    }
+}
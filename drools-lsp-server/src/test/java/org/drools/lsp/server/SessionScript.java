@@ -0,0 +1,149 @@
+package org.drools.lsp.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+
+/**
+ * The messages a client sends during an editing session, replayed by {@link LoadTestHarness}. Sessions are either
+ * synthetic, see {@link #synthetic}, or recorded: a file with one JSON-RPC message per line as the client sent it,
+ * the ones with an id being requests, e.g.
+ * <pre>
+ * {"jsonrpc":"2.0","id":1,"method":"initialize","params":{}}
+ * {"jsonrpc":"2.0","method":"textDocument/didOpen","params":{"textDocument":{"uri":"a.drl","languageId":"drools","version":1,"text":"..."}}}
+ * </pre>
+ */
+public class SessionScript {
+
+    private static final String TYPED_RULE = "rule Typed when\n  $p : Person( age > 10, name == \"x\" )\nthen\n  System.out.println($p);\nend\n";
+
+    private final String name;
+    private final List<Step> steps;
+
+    public SessionScript(String name, List<Step> steps) {
+        this.name = name;
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * One message of the session. A step waits for the responses to the requests sent before it, unless it is a
+     * request of a burst: the requests of a burst are sent back to back, as a client does while the user types.
+     */
+    public static class Step {
+
+        private final String method;
+        private final Object params;
+        private final boolean request;
+        private final boolean burst;
+
+        public Step(String method, Object params, boolean request, boolean burst) {
+            this.method = method;
+            this.params = params;
+            this.request = request;
+            this.burst = burst;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public Object getParams() {
+            return params;
+        }
+
+        public boolean isRequest() {
+            return request;
+        }
+
+        public boolean isBurst() {
+            return burst;
+        }
+    }
+
+    /**
+     * A session opening a document of the given number of rules, then typing one more rule a character per change,
+     * asking for a burst of completions every given number of changes, and closing it
+     */
+    public static SessionScript synthetic(String uri, int rules, int changes, int completionEvery, int burstSize) {
+        List<Step> steps = new ArrayList<>();
+        steps.add(new Step("initialize", new InitializeParams(), true, false));
+
+        StringBuilder drl = new StringBuilder("package org.test;\nimport org.test.model.Person;\n");
+        for (int i = 0; i < rules; i++) {
+            drl.append("rule R").append(i).append(" when\n  $p : Person( age > ").append(i).append(" )\nthen\nend\n");
+        }
+        int line = (int) drl.chars().filter(c -> c == '\n').count();
+        int column = 0;
+        steps.add(new Step("textDocument/didOpen", new DidOpenTextDocumentParams(new TextDocumentItem(uri, "drools", 1, drl.toString())), false, false));
+
+        for (int change = 0; change < changes; change++) {
+            char typed = TYPED_RULE.charAt(change % TYPED_RULE.length());
+            Position caret = new Position(line, column);
+            TextDocumentContentChangeEvent event = new TextDocumentContentChangeEvent(new Range(caret, caret), 0, String.valueOf(typed));
+            steps.add(new Step("textDocument/didChange", new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, change + 2), List.of(event)), false, false));
+            if (typed == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+            if (completionEvery > 0 && (change + 1) % completionEvery == 0) {
+                for (int i = 0; i < burstSize; i++) {
+                    steps.add(new Step("textDocument/completion", new CompletionParams(new TextDocumentIdentifier(uri), new Position(line, column)), true, true));
+                }
+            }
+        }
+
+        steps.add(new Step("textDocument/didClose", new DidCloseTextDocumentParams(new TextDocumentIdentifier(uri)), false, false));
+        steps.add(new Step("shutdown", null, true, false));
+        return new SessionScript(uri, steps);
+    }
+
+    /**
+     * Reads a recorded session, see the class comment
+     */
+    public static SessionScript load(Path file) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        String previousMethod = null;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonObject message = JsonParser.parseString(line).getAsJsonObject();
+            String method = message.get("method").getAsString();
+            JsonElement params = message.get("params");
+            boolean request = message.has("id");
+            // back to back requests of the same method were sent without waiting
+            steps.add(new Step(method, params, request, request && method.equals(previousMethod)));
+            previousMethod = request ? method : null;
+        }
+        return new SessionScript(file.getFileName().toString(), steps);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+}
@@ -3,6 +3,7 @@ package org.drools.lsp.server;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
@@ -24,8 +25,15 @@ public class TestHelperMethods {
     }
 
     public static DroolsLspServer getDroolsLspServerForDocument(String drl) {
-        DroolsLspServer ls = new DroolsLspServer();
         List<Diagnostic> diagnostics = new ArrayList<>();
+        return getDroolsLspServerForDocument(drl, d -> {
+            diagnostics.clear();
+            diagnostics.addAll(d.getDiagnostics());
+        });
+    }
+
+    public static DroolsLspServer getDroolsLspServerForDocument(String drl, Consumer<PublishDiagnosticsParams> diagnosticsConsumer) {
+        DroolsLspServer ls = new DroolsLspServer();
         ls.connect(new LanguageClient() {
             @Override
             public void telemetryEvent(Object object) {
@@ -42,8 +50,7 @@ public class TestHelperMethods {
 
             @Override
             public void publishDiagnostics(PublishDiagnosticsParams d) {
-                diagnostics.clear();
-                diagnostics.addAll(d.getDiagnostics());
+                diagnosticsConsumer.accept(d);
             }
 
             @Override
@@ -0,0 +1,38 @@
+package org.drools.parser;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenSource;
+
+/**
+ * Token stream checking its {@link CancellationToken} whenever a token is fetched from the lexer or consumed by the
+ * parser, so that both lexing and parsing stop soon after a cancellation
+ */
+public class CancellableTokenStream extends CommonTokenStream {
+
+    private final CancellationToken cancellationToken;
+
+    public CancellableTokenStream(TokenSource tokenSource, CancellationToken cancellationToken) {
+        super(tokenSource);
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Fetches the tokens one by one, since {@link #fill()} asks the lexer for a thousand at a time
+     */
+    @Override
+    protected int fetch(int n) {
+        for (int i = 0; i < n; i++) {
+            cancellationToken.checkCancelled();
+            if (super.fetch(1) == 0) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void consume() {
+        cancellationToken.checkCancelled();
+        super.consume();
+    }
+}
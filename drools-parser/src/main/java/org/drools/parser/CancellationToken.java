@@ -0,0 +1,22 @@
+package org.drools.parser;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation of a parse, polled for every token the lexer produces or the parser consumes, and for
+ * every parse tree node the descr visitor walks into: a cancelled parse stops within a token or a node, throwing
+ * {@link CancellationException}. Polling must be cheap, like reading a volatile field.
+ */
+@FunctionalInterface
+public interface CancellationToken {
+
+    CancellationToken NONE = () -> false;
+
+    boolean isCancelled();
+
+    default void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("parse cancelled");
+        }
+    }
+}
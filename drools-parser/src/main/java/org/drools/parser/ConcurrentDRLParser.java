@@ -0,0 +1,113 @@
+package org.drools.parser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.drools.drl.ast.descr.PackageDescr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.drools.parser.DRLParserHelper.compilationUnitContext2PackageDescr;
+
+/**
+ * Thread-safe and stateless parsing entry point: every parse gets its own lexer, parser and error listener
+ * and returns its own immutable {@link ParseResult}, so a single instance can be shared by any number of threads.
+ * Asynchronous parses run on the executor given at construction time, the common pool by default.
+ */
+public class ConcurrentDRLParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentDRLParser.class);
+
+    private final Executor executor;
+
+    public ConcurrentDRLParser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ConcurrentDRLParser(Executor executor) {
+        this.executor = executor;
+    }
+
+    public ParseResult parse(String drl) {
+        return parse(CharStreams.fromString(drl));
+    }
+
+    /**
+     * @param drl a stream of its own, as lexing consumes it, like a {@link RopeCharStream} over a document
+     */
+    public ParseResult parse(CharStream drl) {
+        return parse(drl, CancellationToken.NONE);
+    }
+
+    /**
+     * @throws CancellationException as soon as the token reports the parse as cancelled, see {@link CancellationToken}
+     */
+    public ParseResult parse(CharStream drl, CancellationToken cancellationToken) {
+        DRLParser drlParser = DRLParserHelper.createDrlParser(drl, cancellationToken);
+        DRLErrorListener errorListener = new DRLErrorListener();
+        drlParser.addErrorListener(errorListener);
+        ParseStats.Collector statsCollector = new ParseStats.Collector(drlParser);
+        drlParser.addErrorListener(statsCollector);
+
+        // lex eagerly, so that lexing and parsing times can be told apart
+        ((CommonTokenStream) drlParser.getInputStream()).fill();
+        statsCollector.lexed();
+
+        DRLParser.CompilationUnitContext cxt = drlParser.compilationUnit();
+        statsCollector.parsed();
+
+        List<DRLParserError> errors = new ArrayList<>(errorListener.getErrors());
+
+        PackageDescr packageDescr;
+        try {
+            packageDescr = compilationUnitContext2PackageDescr(cxt, cancellationToken);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.error("Exception while creating PackageDescr", e);
+            errors.add(new DRLParserError(e));
+            packageDescr = null;
+        }
+
+        ParseStats parseStats = statsCollector.visited(drlParser, cxt, errors.size());
+        List<Token> tokens = ((CommonTokenStream) drlParser.getInputStream()).getTokens();
+        return new ParseResult(packageDescr, errors, StatementFingerprints.of(cxt), parseStats, tokens, cxt);
+    }
+
+    public CompletableFuture<ParseResult> parseAsync(String drl) {
+        return CompletableFuture.supplyAsync(() -> parse(drl), executor);
+    }
+
+    public CompletableFuture<ParseResult> parseAsync(Rope drl) {
+        return parseAsync(drl, CancellationToken.NONE);
+    }
+
+    /**
+     * The token is also checked before the parse starts, as it may wait in the executor queue for a while
+     */
+    public CompletableFuture<ParseResult> parseAsync(Rope drl, CancellationToken cancellationToken) {
+        return CompletableFuture.supplyAsync(() -> {
+            cancellationToken.checkCancelled();
+            return parse(new RopeCharStream(drl), cancellationToken);
+        }, executor);
+    }
+
+    /**
+     * Submits all the sources at once, so that they are parsed concurrently as far as the executor allows
+     *
+     * @return the futures of the results, in the same order as the sources
+     */
+    public List<CompletableFuture<ParseResult>> parseAll(Collection<String> drls) {
+        return drls.stream().map(this::parseAsync).collect(Collectors.toList());
+    }
+}
@@ -42,6 +42,10 @@ public class DRLParserError {
         this.message = message;
     }
 
+    public Exception getException() {
+        return exception;
+    }
+
     @Override
     public String toString() {
         return "DRLParserError{" +
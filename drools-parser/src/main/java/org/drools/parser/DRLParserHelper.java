@@ -23,14 +23,29 @@ public class DRLParserHelper {
     }
 
     public static DRLParser createDrlParser(String drl) {
-        CharStream inputStream = CharStreams.fromString(drl);
+        return createDrlParser(CharStreams.fromString(drl));
+    }
+
+    public static DRLParser createDrlParser(CharStream inputStream) {
         DRLLexer drlLexer = new DRLLexer(inputStream);
         CommonTokenStream commonTokenStream = new CommonTokenStream(drlLexer);
         return new DRLParser(commonTokenStream);
     }
 
+    /**
+     * @return a parser whose lexing and parsing stop with a CancellationException once the token is cancelled
+     */
+    public static DRLParser createDrlParser(CharStream inputStream, CancellationToken cancellationToken) {
+        DRLLexer drlLexer = new DRLLexer(inputStream);
+        return new DRLParser(new CancellableTokenStream(drlLexer, cancellationToken));
+    }
+
     public static PackageDescr compilationUnitContext2PackageDescr(DRLParser.CompilationUnitContext ctx) {
-        DRLVisitorImpl visitor = new DRLVisitorImpl();
+        return compilationUnitContext2PackageDescr(ctx, CancellationToken.NONE);
+    }
+
+    public static PackageDescr compilationUnitContext2PackageDescr(DRLParser.CompilationUnitContext ctx, CancellationToken cancellationToken) {
+        DRLVisitorImpl visitor = new DRLVisitorImpl(cancellationToken);
         Object descr = visitor.visit(ctx);
         if (descr instanceof PackageDescr) {
             return (PackageDescr) descr;
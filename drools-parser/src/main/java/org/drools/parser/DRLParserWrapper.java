@@ -1,48 +1,47 @@
 package org.drools.parser;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.drools.drl.ast.descr.PackageDescr;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import static org.drools.parser.DRLParserHelper.compilationUnitContext2PackageDescr;
 
+/**
+ * Single threaded convenience around {@link ConcurrentDRLParser}, keeping the outcome of the last parse.
+ * Errors and stats are replaced by every parse, so an instance can be reused without retaining older results.
+ */
 public class DRLParserWrapper {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(DRLParserWrapper.class);
+    private static final ConcurrentDRLParser PARSER = new ConcurrentDRLParser();
 
-    private final List<DRLParserError> errors = new ArrayList<>();
+    private ParseResult lastResult;
 
     public PackageDescr parse(String drl) {
-        DRLParser drlParser = DRLParserHelper.createDrlParser(drl);
-        DRLErrorListener errorListener = new DRLErrorListener();
-        drlParser.addErrorListener(errorListener);
-
-        DRLParser.CompilationUnitContext cxt = drlParser.compilationUnit();
-
-        errors.addAll(errorListener.getErrors());
+        lastResult = PARSER.parse(drl);
+        return lastResult.getPackageDescr();
+    }
 
-        try {
-            return compilationUnitContext2PackageDescr(cxt);
-        } catch (Exception e) {
-            LOGGER.error("Exception while creating PackageDescr", e);
-            errors.add(new DRLParserError(e));
-            return null;
-        }
+    /**
+     * @return the outcome of the last parse, or null if nothing has been parsed yet
+     */
+    public ParseResult getParseResult() {
+        return lastResult;
     }
 
     public List<DRLParserError> getErrors() {
-        return errors;
+        return lastResult == null ? List.of() : lastResult.getErrors();
     }
 
     public List<String> getErrorMessages() {
-        return errors.stream().map(DRLParserError::getMessage).collect(Collectors.toList());
+        return lastResult == null ? List.of() : lastResult.getErrorMessages();
     }
 
     public boolean hasErrors() {
-        return !errors.isEmpty();
+        return lastResult != null && lastResult.hasErrors();
+    }
+
+    /**
+     * @return the figures of the last parse, or null if nothing has been parsed yet
+     */
+    public ParseStats getParseStats() {
+        return lastResult == null ? null : lastResult.getParseStats();
     }
 }
@@ -0,0 +1,39 @@
+package org.drools.parser;
+
+import org.drools.drl.ast.descr.AttributeDescr;
+import org.drools.drl.ast.descr.FunctionDescr;
+import org.drools.drl.ast.descr.GlobalDescr;
+import org.drools.drl.ast.descr.ImportDescr;
+import org.drools.drl.ast.descr.RuleDescr;
+import org.drools.drl.ast.descr.UnitDescr;
+
+/**
+ * Receives the descrs produced by {@link DRLStreamingParser}, one top-level statement at a time and in document order.
+ * All methods are no-op by default so that implementations only override what they are interested in.
+ */
+public interface DRLStatementConsumer {
+
+    default void onPackage(String packageName) {
+    }
+
+    default void onUnit(UnitDescr unitDescr) {
+    }
+
+    /**
+     * Also receives {@link org.drools.drl.ast.descr.FunctionImportDescr}s
+     */
+    default void onImport(ImportDescr importDescr) {
+    }
+
+    default void onGlobal(GlobalDescr globalDescr) {
+    }
+
+    default void onFunction(FunctionDescr functionDescr) {
+    }
+
+    default void onAttribute(AttributeDescr attributeDescr) {
+    }
+
+    default void onRule(RuleDescr ruleDescr) {
+    }
+}
@@ -0,0 +1,142 @@
+package org.drools.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.drools.drl.ast.descr.AttributeDescr;
+import org.drools.drl.ast.descr.FunctionDescr;
+import org.drools.drl.ast.descr.GlobalDescr;
+import org.drools.drl.ast.descr.ImportDescr;
+import org.drools.drl.ast.descr.PackageDescr;
+import org.drools.drl.ast.descr.RuleDescr;
+import org.drools.drl.ast.descr.UnitDescr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.drools.parser.DRLParserHelper.getTextWithoutErrorNode;
+
+/**
+ * Parses a DRL source one top-level statement at a time, handing the resulting descrs to a {@link DRLStatementConsumer}
+ * instead of building a whole {@link PackageDescr}. Tokens are pulled through an unbuffered token stream and the parse
+ * tree of each statement is dropped as soon as it has been visited, so the retained memory is the source text plus
+ * the statement being processed, regardless of how many rules the source contains.
+ */
+public class DRLStreamingParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DRLStreamingParser.class);
+
+    // tokens that can start a drlStatementdef, i.e. the ones that keep compilationUnit's drlStatementdef* loop going
+    private static final IntervalSet STATEMENT_START = DRLParser._ATN.nextTokens(DRLParser._ATN.ruleToStartState[DRLParser.RULE_drlStatementdef]);
+
+    private DRLStreamingParser() {
+    }
+
+    public static List<DRLParserError> parse(String drl, DRLStatementConsumer consumer) {
+        try {
+            return parse(new StringReader(drl), consumer);
+        } catch (IOException e) {
+            throw new DRLParserException(e.getMessage());
+        }
+    }
+
+    public static List<DRLParserError> parse(Reader reader, DRLStatementConsumer consumer) throws IOException {
+        DRLLexer drlLexer = new DRLLexer(CharStreams.fromReader(reader));
+        DRLParser drlParser = new DRLParser(new DefaultChannelTokenStream(drlLexer));
+        DRLErrorListener errorListener = new DRLErrorListener();
+        drlParser.addErrorListener(errorListener);
+
+        List<DRLParserError> errors = new ArrayList<>();
+        DRLVisitorImpl visitor = new DRLVisitorImpl();
+        PackageDescr packageHeader = new PackageDescr();
+        TokenStream tokens = drlParser.getInputStream();
+
+        if (tokens.LA(1) == DRLParser.PACKAGE) {
+            packageHeader.setName(getTextWithoutErrorNode(drlParser.packagedef().name));
+            consumer.onPackage(packageHeader.getName());
+        }
+
+        if (tokens.LA(1) == DRLParser.DRL_UNIT) {
+            DRLParser.UnitdefContext unitdefContext = drlParser.unitdef();
+            visitStatement(() -> {
+                UnitDescr unitDescr = visitor.visitUnitdef(unitdefContext);
+                packageHeader.setUnit(unitDescr);
+                consumer.onUnit(unitDescr);
+            }, errors);
+        }
+
+        while (STATEMENT_START.contains(tokens.LA(1))) {
+            int startIndex = tokens.index();
+            DRLParser.DrlStatementdefContext statementContext = drlParser.drlStatementdef();
+            visitStatement(() -> dispatch(statementContext.accept(visitor), packageHeader, consumer), errors);
+            if (tokens.index() == startIndex) {
+                // never spin on a statement the error strategy could not consume
+                tokens.consume();
+            }
+        }
+
+        errors.addAll(0, errorListener.getErrors());
+        return errors;
+    }
+
+    private static void visitStatement(Runnable visit, List<DRLParserError> errors) {
+        try {
+            visit.run();
+        } catch (Exception e) {
+            LOGGER.error("Exception while creating descr", e);
+            errors.add(new DRLParserError(e));
+        }
+    }
+
+    private static void dispatch(Object descr, PackageDescr packageHeader, DRLStatementConsumer consumer) {
+        if (descr instanceof GlobalDescr) {
+            consumer.onGlobal((GlobalDescr) descr);
+        } else if (descr instanceof ImportDescr) {
+            consumer.onImport((ImportDescr) descr);
+        } else if (descr instanceof FunctionDescr) {
+            FunctionDescr functionDescr = (FunctionDescr) descr;
+            DRLVisitorImpl.applyPackageToFunction(packageHeader, functionDescr);
+            consumer.onFunction(functionDescr);
+        } else if (descr instanceof AttributeDescr) {
+            // package attributes are retained, as later functions take their dialect from them
+            packageHeader.addAttribute((AttributeDescr) descr);
+            consumer.onAttribute((AttributeDescr) descr);
+        } else if (descr instanceof RuleDescr) {
+            consumer.onRule((RuleDescr) descr);
+        }
+    }
+
+    /**
+     * UnbufferedTokenStream hands every token to the parser, while DRLParser expects whitespaces and comments
+     * to be filtered out as CommonTokenStream does. This variant only buffers tokens on the default channel.
+     */
+    private static class DefaultChannelTokenStream extends UnbufferedTokenStream<Token> {
+
+        DefaultChannelTokenStream(TokenSource tokenSource) {
+            super(tokenSource);
+        }
+
+        @Override
+        protected int fill(int count) {
+            for (int i = 0; i < count; i++) {
+                if (n > 0 && tokens[n - 1].getType() == Token.EOF) {
+                    return i;
+                }
+                Token t = tokenSource.nextToken();
+                while (t.getChannel() != Token.DEFAULT_CHANNEL && t.getType() != Token.EOF) {
+                    t = tokenSource.nextToken();
+                }
+                add(t);
+            }
+            return count;
+        }
+    }
+}
@@ -35,6 +35,25 @@ import static org.drools.util.StringUtils.unescapeJava;
 
 public class DRLVisitorImpl extends DRLParserBaseVisitor<Object> {
 
+    private final CancellationToken cancellationToken;
+
+    public DRLVisitorImpl() {
+        this(CancellationToken.NONE);
+    }
+
+    public DRLVisitorImpl(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Every child iteration goes through here, which makes it the place to stop a cancelled visit
+     */
+    @Override
+    protected boolean shouldVisitNextChild(RuleNode node, Object currentResult) {
+        cancellationToken.checkCancelled();
+        return true;
+    }
+
     @Override
     public PackageDescr visitCompilationUnit(DRLParser.CompilationUnitContext ctx) {
         PackageDescr packageDescr = new PackageDescr();
@@ -58,11 +77,7 @@ public class DRLVisitorImpl extends DRLParserBaseVisitor<Object> {
                 packageDescr.addImport((ImportDescr) descr);
             } else if (descr instanceof FunctionDescr) {
                 FunctionDescr functionDescr = (FunctionDescr) descr;
-                functionDescr.setNamespace(packageDescr.getNamespace());
-                AttributeDescr dialect = packageDescr.getAttribute("dialect");
-                if (dialect != null) {
-                    functionDescr.setDialect(dialect.getValue());
-                }
+                applyPackageToFunction(packageDescr, functionDescr);
                 packageDescr.addFunction(functionDescr);
             } else if (descr instanceof AttributeDescr) {
                 packageDescr.addAttribute((AttributeDescr) descr);
@@ -72,6 +87,14 @@ public class DRLVisitorImpl extends DRLParserBaseVisitor<Object> {
         });
     }
 
+    static void applyPackageToFunction(PackageDescr packageDescr, FunctionDescr functionDescr) {
+        functionDescr.setNamespace(packageDescr.getNamespace());
+        AttributeDescr dialect = packageDescr.getAttribute("dialect");
+        if (dialect != null) {
+            functionDescr.setDialect(dialect.getValue());
+        }
+    }
+
     @Override
     public UnitDescr visitUnitdef(DRLParser.UnitdefContext ctx) {
         return new UnitDescr(ctx.name.getText());
@@ -126,6 +149,7 @@ public class DRLVisitorImpl extends DRLParserBaseVisitor<Object> {
     @Override
     public RuleDescr visitRuledef(DRLParser.RuledefContext ctx) {
         RuleDescr ruleDescr = new RuleDescr(safeStripStringDelimiters(ctx.name.getText()));
+        populateStartEnd(ruleDescr, ctx);
 
         ctx.drlAnnotation().stream().map(this::visitDrlAnnotation).forEach(ruleDescr::addAnnotation);
 
@@ -207,6 +231,7 @@ public class DRLVisitorImpl extends DRLParserBaseVisitor<Object> {
                 .orElseThrow(() -> new IllegalStateException("lhsPatternBind must have at least one lhsPattern : " + ctx.getText()));
         if (ctx.label() != null) {
             patternDescr.setIdentifier(ctx.label().IDENTIFIER().getText());
+            patternDescr.setStartCharacter(ctx.getStart().getStartIndex());
         }
         return patternDescr;
     }
@@ -230,6 +255,7 @@ public class DRLVisitorImpl extends DRLParserBaseVisitor<Object> {
     @Override
     public PatternDescr visitLhsPattern(DRLParser.LhsPatternContext ctx) {
         PatternDescr patternDescr = new PatternDescr(ctx.objectType.getText());
+        populateStartEnd(patternDescr, ctx);
         if (ctx.patternSource() != null) {
             String expression = ctx.patternSource().getText();
             FromDescr from = new FromDescr();
@@ -352,6 +378,9 @@ public class DRLVisitorImpl extends DRLParserBaseVisitor<Object> {
     }
 
     private void populateStartEnd(BaseDescr descr, ParserRuleContext ctx) {
+        if (ctx.getStop() == null) {
+            return; // nothing consumed, as it can happen with error recovery
+        }
         descr.setStartCharacter(ctx.getStart().getStartIndex());
         // TODO: Current DRL6Parser adds +1 for EndCharacter but it doesn't look reasonable. At the moment, I don't add. Instead, I fix unit tests.
         //       I will revisit if this is the right approach.
@@ -0,0 +1,195 @@
+package org.drools.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.drl.ast.descr.BaseDescr;
+import org.drools.drl.ast.descr.PackageDescr;
+
+import static org.drools.parser.DRLParserHelper.compilationUnitContext2PackageDescr;
+import static org.drools.parser.DRLParserHelper.createParseTree;
+
+/**
+ * Structural diff between two versions of the same DRL document. Statements are matched by {@link StatementKey}
+ * and compared by {@link StatementFingerprint}, so consumers can recompute only what actually changed.
+ * A statement is reported as moved when its content is unchanged but its position relative to the other
+ * statements is not, with the minimal set of moved statements computed as the complement of the longest
+ * subsequence of statements keeping their relative order.
+ */
+public class PackageDescrDiff {
+
+    private final List<Entry> added = new ArrayList<>();
+    private final List<Entry> removed = new ArrayList<>();
+    private final List<Entry> modified = new ArrayList<>();
+    private final List<Entry> moved = new ArrayList<>();
+
+    private PackageDescrDiff() {
+    }
+
+    public static PackageDescrDiff diff(String beforeDrl, String afterDrl) {
+        DRLParser.CompilationUnitContext beforeCtx = createParseTree(beforeDrl);
+        DRLParser.CompilationUnitContext afterCtx = createParseTree(afterDrl);
+        return diff(compilationUnitContext2PackageDescr(beforeCtx), StatementFingerprints.of(beforeCtx),
+                    compilationUnitContext2PackageDescr(afterCtx), StatementFingerprints.of(afterCtx));
+    }
+
+    public static PackageDescrDiff diff(PackageDescr before, StatementFingerprints beforeFingerprints,
+                                        PackageDescr after, StatementFingerprints afterFingerprints) {
+        PackageDescrDiff diff = new PackageDescrDiff();
+        Map<StatementKey, BaseDescr> beforeDescrs = descrsByKey(before);
+        Map<StatementKey, BaseDescr> afterDescrs = descrsByKey(after);
+
+        Map<StatementKey, Integer> afterPositions = new HashMap<>();
+        List<StatementFingerprint> afterStatements = afterFingerprints.getStatements();
+        for (int i = 0; i < afterStatements.size(); i++) {
+            afterPositions.put(afterStatements.get(i).getKey(), i);
+        }
+
+        List<StatementFingerprint> common = new ArrayList<>();
+        for (StatementFingerprint beforeStatement : beforeFingerprints.getStatements()) {
+            StatementKey key = beforeStatement.getKey();
+            StatementFingerprint afterStatement = afterFingerprints.get(key);
+            Entry entry = new Entry(key, beforeDescrs.get(key), afterDescrs.get(key));
+            if (afterStatement == null) {
+                diff.removed.add(entry);
+            } else {
+                common.add(beforeStatement);
+                if (!beforeStatement.sameContentAs(afterStatement)) {
+                    diff.modified.add(entry);
+                }
+            }
+        }
+
+        for (StatementFingerprint afterStatement : afterStatements) {
+            if (!beforeFingerprints.contains(afterStatement.getKey())) {
+                diff.added.add(new Entry(afterStatement.getKey(), null, afterDescrs.get(afterStatement.getKey())));
+            }
+        }
+
+        int[] positions = common.stream().mapToInt(statement -> afterPositions.get(statement.getKey())).toArray();
+        boolean[] inOrder = longestIncreasingSubsequence(positions);
+        for (int i = 0; i < positions.length; i++) {
+            StatementFingerprint beforeStatement = common.get(i);
+            if (!inOrder[i] && beforeStatement.sameContentAs(afterFingerprints.get(beforeStatement.getKey()))) {
+                StatementKey key = beforeStatement.getKey();
+                diff.moved.add(new Entry(key, beforeDescrs.get(key), afterDescrs.get(key)));
+            }
+        }
+
+        return diff;
+    }
+
+    private static Map<StatementKey, BaseDescr> descrsByKey(PackageDescr packageDescr) {
+        Map<StatementKey, BaseDescr> descrs = new HashMap<>();
+        if (packageDescr == null) {
+            return descrs;
+        }
+        StatementFingerprints.StatementKeyGenerator keyGenerator = new StatementFingerprints.StatementKeyGenerator();
+        packageDescr.getImports().forEach(descr -> descrs.put(keyGenerator.next(StatementKey.Kind.IMPORT, descr.getTarget()), descr));
+        packageDescr.getFunctionImports().forEach(descr -> descrs.put(keyGenerator.next(StatementKey.Kind.FUNCTION_IMPORT, descr.getTarget()), descr));
+        packageDescr.getGlobals().forEach(descr -> descrs.put(keyGenerator.next(StatementKey.Kind.GLOBAL, descr.getIdentifier()), descr));
+        packageDescr.getFunctions().forEach(descr -> descrs.put(keyGenerator.next(StatementKey.Kind.FUNCTION, descr.getName()), descr));
+        packageDescr.getRules().forEach(descr -> descrs.put(keyGenerator.next(StatementKey.Kind.RULE, descr.getName()), descr));
+        return descrs;
+    }
+
+    /**
+     * @return for each position, whether it belongs to one longest strictly increasing subsequence of values
+     */
+    private static boolean[] longestIncreasingSubsequence(int[] values) {
+        int[] tailIndexes = new int[values.length];
+        int[] predecessors = new int[values.length];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tailIndexes[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            predecessors[i] = low > 0 ? tailIndexes[low - 1] : -1;
+            tailIndexes[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] result = new boolean[values.length];
+        for (int i = length > 0 ? tailIndexes[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            result[i] = true;
+        }
+        return result;
+    }
+
+    public List<Entry> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    public List<Entry> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    public List<Entry> getModified() {
+        return Collections.unmodifiableList(modified);
+    }
+
+    public List<Entry> getMoved() {
+        return Collections.unmodifiableList(moved);
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty() && moved.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PackageDescrDiff{" +
+                "added=" + added +
+                ", removed=" + removed +
+                ", modified=" + modified +
+                ", moved=" + moved +
+                '}';
+    }
+
+    public static class Entry {
+
+        private final StatementKey key;
+        private final BaseDescr before;
+        private final BaseDescr after;
+
+        Entry(StatementKey key, BaseDescr before, BaseDescr after) {
+            this.key = key;
+            this.before = before;
+            this.after = after;
+        }
+
+        public StatementKey getKey() {
+            return key;
+        }
+
+        /**
+         * @return the descr in the older document, null for added statements
+         */
+        public BaseDescr getBefore() {
+            return before;
+        }
+
+        /**
+         * @return the descr in the newer document, null for removed statements
+         */
+        public BaseDescr getAfter() {
+            return after;
+        }
+
+        @Override
+        public String toString() {
+            return key.toString();
+        }
+    }
+}
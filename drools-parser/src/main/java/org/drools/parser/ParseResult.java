@@ -0,0 +1,85 @@
+package org.drools.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.antlr.v4.runtime.Token;
+import org.drools.drl.ast.descr.PackageDescr;
+
+/**
+ * Immutable outcome of a single parse: the PackageDescr, the errors found while producing it,
+ * the source positions and fingerprints of its top-level statements and the figures of the parse.
+ * The tokens and the parse tree are kept as well, so that other features can reuse them instead of lexing
+ * and parsing the same text again.
+ * The PackageDescr, tokens and parse tree are mutable, so consumers sharing a ParseResult shouldn't modify them.
+ */
+public class ParseResult {
+
+    private final PackageDescr packageDescr;
+    private final List<DRLParserError> errors;
+    private final StatementFingerprints statements;
+    private final ParseStats parseStats;
+    private final List<Token> tokens;
+    private final DRLParser.CompilationUnitContext compilationUnit;
+
+    public ParseResult(PackageDescr packageDescr, List<DRLParserError> errors, StatementFingerprints statements, ParseStats parseStats) {
+        this(packageDescr, errors, statements, parseStats, Collections.emptyList(), null);
+    }
+
+    public ParseResult(PackageDescr packageDescr, List<DRLParserError> errors, StatementFingerprints statements, ParseStats parseStats,
+                       List<Token> tokens, DRLParser.CompilationUnitContext compilationUnit) {
+        this.packageDescr = packageDescr;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.statements = statements;
+        this.parseStats = parseStats;
+        this.tokens = Collections.unmodifiableList(new ArrayList<>(tokens));
+        this.compilationUnit = compilationUnit;
+    }
+
+    /**
+     * @return the parsed PackageDescr, or null if it couldn't be created
+     */
+    public PackageDescr getPackageDescr() {
+        return packageDescr;
+    }
+
+    public List<DRLParserError> getErrors() {
+        return errors;
+    }
+
+    public List<String> getErrorMessages() {
+        return errors.stream().map(DRLParserError::getMessage).collect(Collectors.toList());
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public StatementFingerprints getStatements() {
+        return statements;
+    }
+
+    public ParseStats getParseStats() {
+        return parseStats;
+    }
+
+    /**
+     * @return all the tokens of the text, hidden channel ones and EOF included
+     */
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * @return the parse tree, or null if not kept
+     */
+    public DRLParser.CompilationUnitContext getCompilationUnit() {
+        return compilationUnit;
+    }
+
+    public PackageDescrDiff diff(ParseResult newer) {
+        return PackageDescrDiff.diff(packageDescr, statements, newer.packageDescr, newer.statements);
+    }
+}
@@ -0,0 +1,175 @@
+package org.drools.parser;
+
+import java.util.BitSet;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+/**
+ * Figures about a single parse. They are collected through counters and a few System.nanoTime() calls,
+ * with no profiling ATN simulator involved, so they are cheap enough to be always on.
+ */
+public class ParseStats {
+
+    private final long lexingNanos;
+    private final long parsingNanos;
+    private final long visitingNanos;
+    private final int tokenCount;
+    private final int parseTreeNodeCount;
+    private final int llFallbackCount;
+    private final int contextSensitivityCount;
+    private final int dfaStatesAdded;
+    private final int errorCount;
+
+    public ParseStats(long lexingNanos, long parsingNanos, long visitingNanos, int tokenCount, int parseTreeNodeCount,
+                      int llFallbackCount, int contextSensitivityCount, int dfaStatesAdded, int errorCount) {
+        this.lexingNanos = lexingNanos;
+        this.parsingNanos = parsingNanos;
+        this.visitingNanos = visitingNanos;
+        this.tokenCount = tokenCount;
+        this.parseTreeNodeCount = parseTreeNodeCount;
+        this.llFallbackCount = llFallbackCount;
+        this.contextSensitivityCount = contextSensitivityCount;
+        this.dfaStatesAdded = dfaStatesAdded;
+        this.errorCount = errorCount;
+    }
+
+    public long getLexingNanos() {
+        return lexingNanos;
+    }
+
+    public long getParsingNanos() {
+        return parsingNanos;
+    }
+
+    public long getVisitingNanos() {
+        return visitingNanos;
+    }
+
+    public long getTotalNanos() {
+        return lexingNanos + parsingNanos + visitingNanos;
+    }
+
+    /**
+     * @return all the tokens produced by the lexer, hidden channel ones included
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public int getParseTreeNodeCount() {
+        return parseTreeNodeCount;
+    }
+
+    /**
+     * @return the decisions where SLL prediction hit a conflict and the parser had to retry with full LL context
+     */
+    public int getLlFallbackCount() {
+        return llFallbackCount;
+    }
+
+    /**
+     * @return the full-context predictions whose outcome differed from what SLL alone would have chosen
+     */
+    public int getContextSensitivityCount() {
+        return contextSensitivityCount;
+    }
+
+    /**
+     * @return the states added to the shared lexer and parser DFA caches while parsing. As these caches are static,
+     * a concurrent parse can make this figure slightly overestimated.
+     */
+    public int getDfaStatesAdded() {
+        return dfaStatesAdded;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseStats{" +
+                "lexingNanos=" + lexingNanos +
+                ", parsingNanos=" + parsingNanos +
+                ", visitingNanos=" + visitingNanos +
+                ", tokenCount=" + tokenCount +
+                ", parseTreeNodeCount=" + parseTreeNodeCount +
+                ", llFallbackCount=" + llFallbackCount +
+                ", contextSensitivityCount=" + contextSensitivityCount +
+                ", dfaStatesAdded=" + dfaStatesAdded +
+                ", errorCount=" + errorCount +
+                '}';
+    }
+
+    static int countNodes(ParseTree tree) {
+        if (tree == null) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            count += countNodes(tree.getChild(i));
+        }
+        return count;
+    }
+
+    static int dfaStateCount(DFA[] decisionToDFA) {
+        int count = 0;
+        for (DFA dfa : decisionToDFA) {
+            count += dfa.states.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gathers the figures of a parse. It is registered as an error listener on the parser as that's where
+     * ANTLR reports the SLL to LL fallbacks and the context sensitivities.
+     */
+    static class Collector extends BaseErrorListener {
+
+        private final long startNanos = System.nanoTime();
+        private final int dfaStatesBefore;
+
+        private long lexedNanos;
+        private long parsedNanos;
+        private int llFallbackCount;
+        private int contextSensitivityCount;
+
+        Collector(DRLParser parser) {
+            this.dfaStatesBefore = dfaStateCount(parser);
+        }
+
+        void lexed() {
+            lexedNanos = System.nanoTime();
+        }
+
+        void parsed() {
+            parsedNanos = System.nanoTime();
+        }
+
+        ParseStats visited(DRLParser parser, ParseTree tree, int errorCount) {
+            long visitedNanos = System.nanoTime();
+            return new ParseStats(lexedNanos - startNanos, parsedNanos - lexedNanos, visitedNanos - parsedNanos,
+                                  parser.getInputStream().size(), countNodes(tree), llFallbackCount, contextSensitivityCount,
+                                  dfaStateCount(parser) - dfaStatesBefore, errorCount);
+        }
+
+        private static int dfaStateCount(DRLParser parser) {
+            DRLLexer lexer = (DRLLexer) parser.getInputStream().getTokenSource();
+            return ParseStats.dfaStateCount(parser.getInterpreter().decisionToDFA) + ParseStats.dfaStateCount(lexer.getInterpreter().decisionToDFA);
+        }
+
+        @Override
+        public void reportAttemptingFullContext(Parser recognizer, DFA dfa, int startIndex, int stopIndex, BitSet conflictingAlts, ATNConfigSet configs) {
+            llFallbackCount++;
+        }
+
+        @Override
+        public void reportContextSensitivity(Parser recognizer, DFA dfa, int startIndex, int stopIndex, int prediction, ATNConfigSet configs) {
+            contextSensitivityCount++;
+        }
+    }
+}
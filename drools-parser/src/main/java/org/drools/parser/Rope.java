@@ -0,0 +1,364 @@
+package org.drools.parser;
+
+import java.util.function.Consumer;
+
+/**
+ * Immutable text stored as a balanced tree of chunks, so that replacing a range costs O(log n) whatever the length of
+ * the text, and the versions of a text share all their unchanged chunks. Nodes count their line breaks, so finding the
+ * offset of a line is O(log n) too. Offsets and characters are UTF-16 units, as in LSP positions.
+ */
+public final class Rope implements CharSequence {
+
+    static final int MAX_CHUNK = 1024;
+
+    public static final Rope EMPTY = new Rope(Leaf.EMPTY);
+
+    private final Node root;
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    public static Rope of(CharSequence text) {
+        if (text instanceof Rope) {
+            return (Rope) text;
+        }
+        return text.length() == 0 ? EMPTY : new Rope(build(text.toString(), 0, text.length()));
+    }
+
+    private static Node build(String text, int start, int end) {
+        if (end - start <= MAX_CHUNK) {
+            return new Leaf(text.substring(start, end));
+        }
+        int chunks = (end - start + MAX_CHUNK - 1) / MAX_CHUNK;
+        int middle = start + (chunks / 2) * MAX_CHUNK;
+        return new Branch(build(text, start, middle), build(text, middle, end));
+    }
+
+    @Override
+    public int length() {
+        return root.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        checkIndex(index, root.length);
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (index < branch.left.length) {
+                node = branch.left;
+            } else {
+                index -= branch.left.length;
+                node = branch.right;
+            }
+        }
+        return ((Leaf) node).text.charAt(index);
+    }
+
+    /**
+     * @return the rope with the characters between start (inclusive) and end (exclusive) replaced by the given text
+     */
+    public Rope replace(int start, int end, CharSequence text) {
+        checkRange(start, end, root.length);
+        Node[] head = split(root, start);
+        Node[] tail = split(head[1], end - start);
+        Node inserted = text.length() == 0 ? Leaf.EMPTY : Rope.of(text).root;
+        return new Rope(join(join(head[0], inserted), tail[1]));
+    }
+
+    public Rope insert(int offset, CharSequence text) {
+        return replace(offset, offset, text);
+    }
+
+    public Rope delete(int start, int end) {
+        return replace(start, end, "");
+    }
+
+    /**
+     * @return the number of lines, one more than the number of line breaks
+     */
+    public int getLineCount() {
+        return root.lineBreaks + 1;
+    }
+
+    /**
+     * @param line 0-based line
+     * @param character 0-based character in the line, clamped to the end of the line as LSP positions
+     * @return the offset of the position, or the length of the text if the line is past its end
+     */
+    public int offsetOf(int line, int character) {
+        if (line > root.lineBreaks) {
+            return root.length;
+        }
+        int lineStart = lineStart(root, line);
+        int lineEnd = line == root.lineBreaks ? root.length : lineStart(root, line + 1) - 1;
+        return Math.min(lineStart + character, lineEnd);
+    }
+
+    private static int lineStart(Node node, int line) {
+        int offset = 0;
+        while (line > 0 && node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (line <= branch.left.lineBreaks) {
+                node = branch.left;
+            } else {
+                line -= branch.left.lineBreaks;
+                offset += branch.left.length;
+                node = branch.right;
+            }
+        }
+        if (line == 0) {
+            return offset;
+        }
+        String text = ((Leaf) node).text;
+        int index = -1;
+        for (int i = 0; i < line; i++) {
+            index = text.indexOf('\n', index + 1);
+        }
+        return offset + index + 1;
+    }
+
+    @Override
+    public Rope subSequence(int start, int end) {
+        checkRange(start, end, root.length);
+        return new Rope(split(split(root, end)[0], start)[1]);
+    }
+
+    /**
+     * @return the characters between start (inclusive) and end (exclusive), copied from the chunks holding them
+     */
+    public String substring(int start, int end) {
+        checkRange(start, end, root.length);
+        StringBuilder builder = new StringBuilder(end - start);
+        appendTo(root, start, end, builder);
+        return builder.toString();
+    }
+
+    private static void appendTo(Node node, int start, int end, StringBuilder builder) {
+        if (start >= end) {
+            return;
+        }
+        if (node instanceof Leaf) {
+            builder.append(((Leaf) node).text, start, end);
+            return;
+        }
+        Branch branch = (Branch) node;
+        int leftLength = branch.left.length;
+        if (start < leftLength) {
+            appendTo(branch.left, start, Math.min(end, leftLength), builder);
+        }
+        if (end > leftLength) {
+            appendTo(branch.right, Math.max(start - leftLength, 0), end - leftLength, builder);
+        }
+    }
+
+    /**
+     * Passes the chunks of the text in order, so that a reader of the whole text doesn't need to copy it. A chunk may
+     * end between the two halves of a surrogate pair.
+     */
+    public void forEachChunk(Consumer<String> action) {
+        forEachChunk(root, action);
+    }
+
+    private static void forEachChunk(Node node, Consumer<String> action) {
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            forEachChunk(branch.left, action);
+            node = branch.right;
+        }
+        if (node.length > 0) {
+            action.accept(((Leaf) node).text);
+        }
+    }
+
+    /**
+     * @return the start offset of the chunk holding the character at the index, see {@link #chunkAt}
+     */
+    int chunkStart(int index) {
+        int offset = 0;
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (index < offset + branch.left.length) {
+                node = branch.left;
+            } else {
+                offset += branch.left.length;
+                node = branch.right;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * @return the chunk holding the character at the index, so that sequential readers avoid a lookup per character
+     */
+    String chunkAt(int index) {
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (index < branch.left.length) {
+                node = branch.left;
+            } else {
+                index -= branch.left.length;
+                node = branch.right;
+            }
+        }
+        return ((Leaf) node).text;
+    }
+
+    int height() {
+        return root.height;
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, root.length);
+    }
+
+    private static Node[] split(Node node, int offset) {
+        if (offset <= 0) {
+            return new Node[]{Leaf.EMPTY, node};
+        }
+        if (offset >= node.length) {
+            return new Node[]{node, Leaf.EMPTY};
+        }
+        if (node instanceof Leaf) {
+            String text = ((Leaf) node).text;
+            return new Node[]{new Leaf(text.substring(0, offset)), new Leaf(text.substring(offset))};
+        }
+        Branch branch = (Branch) node;
+        if (offset < branch.left.length) {
+            Node[] parts = split(branch.left, offset);
+            return new Node[]{parts[0], join(parts[1], branch.right)};
+        }
+        if (offset > branch.left.length) {
+            Node[] parts = split(branch.right, offset - branch.left.length);
+            return new Node[]{join(branch.left, parts[0]), parts[1]};
+        }
+        return new Node[]{branch.left, branch.right};
+    }
+
+    /**
+     * Concatenation keeping the tree balanced as an AVL tree. Small chunks are merged into their neighbour, so that
+     * typing a character at a time doesn't fragment the text.
+     */
+    private static Node join(Node left, Node right) {
+        if (left.length == 0) {
+            return right;
+        }
+        if (right.length == 0) {
+            return left;
+        }
+        if (right instanceof Leaf && right.length < MAX_CHUNK) {
+            return appendLeaf(left, (Leaf) right);
+        }
+        if (left instanceof Leaf && left.length < MAX_CHUNK) {
+            return prependLeaf((Leaf) left, right);
+        }
+        if (left.height > right.height + 1) {
+            Branch branch = (Branch) left;
+            return balance(branch.left, join(branch.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch branch = (Branch) right;
+            return balance(join(left, branch.left), branch.right);
+        }
+        return new Branch(left, right);
+    }
+
+    private static Node appendLeaf(Node node, Leaf leaf) {
+        if (node instanceof Leaf) {
+            Leaf last = (Leaf) node;
+            return last.length + leaf.length <= MAX_CHUNK ? new Leaf(last.text + leaf.text) : new Branch(last, leaf);
+        }
+        Branch branch = (Branch) node;
+        return balance(branch.left, appendLeaf(branch.right, leaf));
+    }
+
+    private static Node prependLeaf(Leaf leaf, Node node) {
+        if (node instanceof Leaf) {
+            Leaf first = (Leaf) node;
+            return leaf.length + first.length <= MAX_CHUNK ? new Leaf(leaf.text + first.text) : new Branch(leaf, first);
+        }
+        Branch branch = (Branch) node;
+        return balance(prependLeaf(leaf, branch.left), branch.right);
+    }
+
+    private static Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            Branch branch = (Branch) left;
+            if (branch.left.height >= branch.right.height) {
+                return new Branch(branch.left, new Branch(branch.right, right));
+            }
+            Branch inner = (Branch) branch.right;
+            return new Branch(new Branch(branch.left, inner.left), new Branch(inner.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch branch = (Branch) right;
+            if (branch.right.height >= branch.left.height) {
+                return new Branch(new Branch(left, branch.left), branch.right);
+            }
+            Branch inner = (Branch) branch.left;
+            return new Branch(new Branch(left, inner.left), new Branch(inner.right, branch.right));
+        }
+        return new Branch(left, right);
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+    }
+
+    private static void checkRange(int start, int end, int length) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + length);
+        }
+    }
+
+    private abstract static class Node {
+
+        final int length;
+        final int lineBreaks;
+        final int height;
+
+        Node(int length, int lineBreaks, int height) {
+            this.length = length;
+            this.lineBreaks = lineBreaks;
+            this.height = height;
+        }
+    }
+
+    private static final class Leaf extends Node {
+
+        static final Leaf EMPTY = new Leaf("");
+
+        final String text;
+
+        Leaf(String text) {
+            super(text.length(), countLineBreaks(text), 0);
+            this.text = text;
+        }
+
+        private static int countLineBreaks(String text) {
+            int count = 0;
+            for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static final class Branch extends Node {
+
+        final Node left;
+        final Node right;
+
+        Branch(Node left, Node right) {
+            super(left.length + right.length, left.lineBreaks + right.lineBreaks, Math.max(left.height, right.height) + 1);
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.drools.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * {@link CharStream} reading a {@link Rope} in place, without flattening it into a string. The chunk being read is
+ * kept at hand, so that lexing stays linear. Like the rope, the stream is made of UTF-16 units: token indexes are
+ * then offsets in the text, and surrogate pairs are matched by the lexer rules covering them.
+ */
+public class RopeCharStream implements CharStream {
+
+    private final Rope rope;
+    private final String sourceName;
+
+    private int index;
+
+    private String chunk = "";
+    private int chunkStart;
+
+    public RopeCharStream(Rope rope) {
+        this(rope, UNKNOWN_SOURCE_NAME);
+    }
+
+    public RopeCharStream(Rope rope, String sourceName) {
+        this.rope = rope;
+        this.sourceName = sourceName;
+    }
+
+    @Override
+    public void consume() {
+        if (index >= rope.length()) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        index++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0; // undefined
+        }
+        int position = i > 0 ? index + i - 1 : index + i;
+        if (position < 0 || position >= rope.length()) {
+            return IntStream.EOF;
+        }
+        if (position < chunkStart || position >= chunkStart + chunk.length()) {
+            chunkStart = rope.chunkStart(position);
+            chunk = rope.chunkAt(position);
+        }
+        return chunk.charAt(position - chunkStart);
+    }
+
+    @Override
+    public int mark() {
+        return -1; // the whole rope is always available
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public void seek(int index) {
+        this.index = Math.min(index, rope.length());
+    }
+
+    @Override
+    public int size() {
+        return rope.length();
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = Math.max(interval.a, 0);
+        int stop = Math.min(interval.b, rope.length() - 1);
+        return start > stop ? "" : rope.substring(start, stop + 1);
+    }
+
+    @Override
+    public String toString() {
+        return rope.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package org.drools.parser;
+
+/**
+ * Hash of the normalized tokens of a top-level statement, i.e. of its default channel tokens only,
+ * so that whitespaces, comments and the position of the statement in the document don't affect it.
+ */
+public class StatementFingerprint {
+
+    private final StatementKey key;
+    private final long fingerprint;
+    private final int startCharacter;
+    private final int endCharacter;
+    private final int line;
+
+    public StatementFingerprint(StatementKey key, long fingerprint, int startCharacter, int endCharacter, int line) {
+        this.key = key;
+        this.fingerprint = fingerprint;
+        this.startCharacter = startCharacter;
+        this.endCharacter = endCharacter;
+        this.line = line;
+    }
+
+    public StatementKey getKey() {
+        return key;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getStartCharacter() {
+        return startCharacter;
+    }
+
+    public int getEndCharacter() {
+        return endCharacter;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public boolean sameContentAs(StatementFingerprint other) {
+        return other != null && fingerprint == other.fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementFingerprint{" +
+                "key=" + key +
+                ", fingerprint=" + Long.toHexString(fingerprint) +
+                ", startCharacter=" + startCharacter +
+                ", endCharacter=" + endCharacter +
+                ", line=" + line +
+                '}';
+    }
+}
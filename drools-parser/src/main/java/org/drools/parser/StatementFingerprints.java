@@ -0,0 +1,120 @@
+package org.drools.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import static org.drools.parser.ParserStringUtils.safeStripStringDelimiters;
+
+/**
+ * Fingerprints of the ruledef, functiondef, globaldef and importdef statements of a compilation unit, in document order.
+ */
+public class StatementFingerprints {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<StatementFingerprint> statements;
+    private final Map<StatementKey, StatementFingerprint> statementsByKey;
+
+    private StatementFingerprints(List<StatementFingerprint> statements) {
+        this.statements = Collections.unmodifiableList(statements);
+        Map<StatementKey, StatementFingerprint> byKey = new LinkedHashMap<>();
+        statements.forEach(statement -> byKey.put(statement.getKey(), statement));
+        this.statementsByKey = Collections.unmodifiableMap(byKey);
+    }
+
+    public static StatementFingerprints of(DRLParser.CompilationUnitContext ctx) {
+        List<StatementFingerprint> statements = new ArrayList<>();
+        StatementKeyGenerator keyGenerator = new StatementKeyGenerator();
+        for (DRLParser.DrlStatementdefContext statementdef : ctx.drlStatementdef()) {
+            ParserRuleContext statement;
+            StatementKey key;
+            if (statementdef.ruledef() != null && statementdef.ruledef().name != null) {
+                statement = statementdef.ruledef();
+                key = keyGenerator.next(StatementKey.Kind.RULE, safeStripStringDelimiters(statementdef.ruledef().name.getText()));
+            } else if (statementdef.functiondef() != null && statementdef.functiondef().IDENTIFIER() != null) {
+                statement = statementdef.functiondef();
+                key = keyGenerator.next(StatementKey.Kind.FUNCTION, statementdef.functiondef().IDENTIFIER().getText());
+            } else if (statementdef.globaldef() != null && statementdef.globaldef().drlIdentifier() != null) {
+                statement = statementdef.globaldef();
+                key = keyGenerator.next(StatementKey.Kind.GLOBAL, statementdef.globaldef().drlIdentifier().getText());
+            } else if (statementdef.importdef() != null && statementdef.importdef().drlQualifiedName() != null) {
+                DRLParser.ImportdefContext importdef = statementdef.importdef();
+                statement = importdef;
+                String target = importdef.drlQualifiedName().getText() + (importdef.MUL() != null ? ".*" : "");
+                boolean functionImport = importdef.DRL_FUNCTION() != null || importdef.STATIC() != null;
+                key = keyGenerator.next(functionImport ? StatementKey.Kind.FUNCTION_IMPORT : StatementKey.Kind.IMPORT, target);
+            } else {
+                continue;
+            }
+            statements.add(fingerprint(key, statement));
+        }
+        return new StatementFingerprints(statements);
+    }
+
+    public List<StatementFingerprint> getStatements() {
+        return statements;
+    }
+
+    public StatementFingerprint get(StatementKey key) {
+        return statementsByKey.get(key);
+    }
+
+    public boolean contains(StatementKey key) {
+        return statementsByKey.containsKey(key);
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    private static StatementFingerprint fingerprint(StatementKey key, ParserRuleContext statement) {
+        Token start = statement.getStart();
+        Token stop = statement.getStop() != null ? statement.getStop() : start;
+        return new StatementFingerprint(key, hash(statement, FNV_OFFSET_BASIS), start.getStartIndex(), stop.getStopIndex(), start.getLine());
+    }
+
+    /**
+     * FNV-1a over the type and text of every token in the tree. Hidden channel tokens never reach the parse tree,
+     * so whitespaces and comments are naturally left out.
+     */
+    private static long hash(ParseTree tree, long hash) {
+        if (tree instanceof TerminalNode) {
+            Token token = ((TerminalNode) tree).getSymbol();
+            hash = (hash ^ token.getType()) * FNV_PRIME;
+            String text = token.getText();
+            for (int i = 0; i < text.length(); i++) {
+                hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+            }
+            // token separator, so that "ab" "c" and "a" "bc" differ
+            return (hash ^ 0xff) * FNV_PRIME;
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            hash = hash(tree.getChild(i), hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Numbers statements having the same kind and name in document order, consistently with the order
+     * in which the corresponding descrs are added to the PackageDescr
+     */
+    static class StatementKeyGenerator {
+
+        private final Map<String, Integer> occurrences = new HashMap<>();
+
+        StatementKey next(StatementKey.Kind kind, String name) {
+            int occurrence = occurrences.merge(kind + ":" + name, 1, Integer::sum) - 1;
+            return new StatementKey(kind, name, occurrence);
+        }
+    }
+}
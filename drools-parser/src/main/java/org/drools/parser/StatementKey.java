@@ -0,0 +1,66 @@
+package org.drools.parser;
+
+import java.util.Objects;
+
+/**
+ * Identifies a top-level DRL statement across different versions of the same document.
+ * The occurrence disambiguates statements sharing the same kind and name (e.g. duplicated rule names).
+ */
+public class StatementKey {
+
+    public enum Kind {
+        IMPORT,
+        FUNCTION_IMPORT,
+        GLOBAL,
+        FUNCTION,
+        RULE
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final int occurrence;
+
+    public StatementKey(Kind kind, String name) {
+        this(kind, name, 0);
+    }
+
+    public StatementKey(Kind kind, String name, int occurrence) {
+        this.kind = kind;
+        this.name = name;
+        this.occurrence = occurrence;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getOccurrence() {
+        return occurrence;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StatementKey that = (StatementKey) o;
+        return occurrence == that.occurrence && kind == that.kind && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, name, occurrence);
+    }
+
+    @Override
+    public String toString() {
+        return kind + ":" + name + (occurrence > 0 ? "#" + occurrence : "");
+    }
+}
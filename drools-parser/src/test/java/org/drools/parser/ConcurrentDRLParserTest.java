@@ -0,0 +1,130 @@
+package org.drools.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.drools.drl.ast.descr.RuleDescr;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrentDRLParserTest {
+
+    private static String drl(int i) {
+        return "package org.test;\n" +
+                "import org.test.model.Person;\n" +
+                "rule R" + i + " when\n" +
+                "  $p:Person( age >= " + i + " )\n" +
+                "then\n" +
+                "  System.out.println($p.getName());\n" +
+                "end\n";
+    }
+
+    @Test
+    void parse_returnsImmutableResult() {
+        ParseResult result = new ConcurrentDRLParser().parse(drl(1));
+
+        assertThat(result.hasErrors()).isFalse();
+        assertThat(result.getPackageDescr().getRules()).extracting(RuleDescr::getName).containsExactly("R1");
+        assertThat(result.getStatements().getStatements()).hasSize(2);
+        assertThat(result.getStatements().get(new StatementKey(StatementKey.Kind.RULE, "R1")).getLine()).isEqualTo(3);
+        assertThat(result.getParseStats().getErrorCount()).isZero();
+        assertThatThrownBy(() -> result.getErrors().add(new DRLParserError(1, 1, "error"))).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void parse_errorsAreNotSharedBetweenCalls() {
+        ConcurrentDRLParser parser = new ConcurrentDRLParser();
+
+        ParseResult broken = parser.parse("rule R when Person( then end");
+        ParseResult valid = parser.parse(drl(1));
+
+        assertThat(broken.hasErrors()).isTrue();
+        assertThat(valid.hasErrors()).isFalse();
+    }
+
+    @Test
+    void parseAll_onCustomExecutor() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            ConcurrentDRLParser parser = new ConcurrentDRLParser(command -> {
+                executions.incrementAndGet();
+                executorService.execute(command);
+            });
+
+            List<String> sources = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                sources.add(i % 10 == 0 ? "rule R" + i + " when Person( then end" : drl(i));
+            }
+
+            List<CompletableFuture<ParseResult>> futures = parser.parseAll(sources);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+            assertThat(executions.get()).isEqualTo(50);
+            for (int i = 0; i < 50; i++) {
+                ParseResult result = futures.get(i).get();
+                if (i % 10 == 0) {
+                    assertThat(result.hasErrors()).isTrue();
+                } else {
+                    assertThat(result.hasErrors()).isFalse();
+                    assertThat(result.getPackageDescr().getRules().get(0).getName()).isEqualTo("R" + i);
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void wrapper_keepsOnlyLastParse() {
+        DRLParserWrapper wrapper = new DRLParserWrapper();
+
+        wrapper.parse("rule R when Person( then end");
+        assertThat(wrapper.hasErrors()).isTrue();
+
+        wrapper.parse(drl(1));
+        assertThat(wrapper.hasErrors()).isFalse();
+        assertThat(wrapper.getParseResult().getPackageDescr().getRules()).hasSize(1);
+    }
+
+    @Test
+    void parse_stopsWhenCancelled() throws Exception {
+        StringBuilder drl = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            drl.append(drl(i));
+        }
+        ConcurrentDRLParser parser = new ConcurrentDRLParser();
+
+        // while lexing: no more tokens are fetched
+        AtomicInteger checks = new AtomicInteger();
+        assertThatThrownBy(() -> parser.parse(CharStreams.fromString(drl.toString()), () -> checks.incrementAndGet() > 100))
+                .isInstanceOf(CancellationException.class);
+        assertThat(checks.get()).isEqualTo(101);
+        checks.set(0);
+        CancellableTokenStream tokens = new CancellableTokenStream(new DRLLexer(CharStreams.fromString(drl.toString())), () -> checks.incrementAndGet() > 100);
+        assertThatThrownBy(tokens::fill).isInstanceOf(CancellationException.class);
+        assertThat(tokens.size()).isEqualTo(100);
+
+        // while visiting the parse tree: no more children are visited
+        DRLParser.CompilationUnitContext tree = DRLParserHelper.createParseTree(drl.toString());
+        AtomicBoolean cancelled = new AtomicBoolean(true);
+        assertThatThrownBy(() -> DRLParserHelper.compilationUnitContext2PackageDescr(tree, cancelled::get))
+                .isInstanceOf(CancellationException.class);
+
+        // cancelled while waiting for the executor: never started
+        CompletableFuture<ParseResult> parse = parser.parseAsync(Rope.of(drl.toString().repeat(20)), cancelled::get);
+        assertThatThrownBy(() -> parse.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(CancellationException.class);
+        cancelled.set(false);
+        assertThat(parser.parseAsync(Rope.of(drl.toString()), cancelled::get).get(30, TimeUnit.SECONDS).hasErrors()).isFalse();
+    }
+}
@@ -96,4 +96,22 @@ class DRLParserTest {
         assertThat((int) computeTokenIndex(parser, 9, 5)).isEqualTo(82);
         assertThat((int) computeTokenIndex(parser, 10, 0)).isEqualTo(82);  // EOF
     }
+
+    @Test
+    void parse_collectsParseStats() {
+        DRLParserWrapper wrapper = new DRLParserWrapper();
+        wrapper.parse(drl);
+
+        ParseStats stats = wrapper.getParseStats();
+        assertThat(stats.getTokenCount()).isGreaterThan(83); // 83 default channel tokens + whitespaces
+        assertThat(stats.getParseTreeNodeCount()).isGreaterThan(stats.getTokenCount() / 2);
+        assertThat(stats.getErrorCount()).isZero();
+        assertThat(stats.getLexingNanos()).isPositive();
+        assertThat(stats.getParsingNanos()).isPositive();
+        assertThat(stats.getVisitingNanos()).isPositive();
+        assertThat(stats.getTotalNanos()).isEqualTo(stats.getLexingNanos() + stats.getParsingNanos() + stats.getVisitingNanos());
+
+        wrapper.parse("rule R when Person( then end");
+        assertThat(wrapper.getParseStats().getErrorCount()).isPositive();
+    }
 }
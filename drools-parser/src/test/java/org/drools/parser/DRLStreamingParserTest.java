@@ -0,0 +1,133 @@
+package org.drools.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.drl.ast.descr.BaseDescr;
+import org.drools.drl.ast.descr.FunctionDescr;
+import org.drools.drl.ast.descr.FunctionImportDescr;
+import org.drools.drl.ast.descr.GlobalDescr;
+import org.drools.drl.ast.descr.ImportDescr;
+import org.drools.drl.ast.descr.PackageDescr;
+import org.drools.drl.ast.descr.RuleDescr;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.drools.parser.DRLParserHelper.parse;
+
+class DRLStreamingParserTest {
+
+    private static final String drl =
+            "package org.test;\n" +
+                    "import org.test.model.Person;\n" +
+                    "import function org.test.Util.check;\n" +
+                    "global String result;\n" +
+                    "dialect \"mvel\"\n" +
+                    "function String hello(String name) {\n" +
+                    "    return name.toUpperCase();\n" +
+                    "}\n" +
+                    "rule R1 when\n" +
+                    "  $p:Person( age >= 18 )\n" +
+                    "then\n" +
+                    "  System.out.println($p.getName());\n" +
+                    "end\n" +
+                    "rule R2 when\n" +
+                    "  Person( name == \"Mario\" )\n" +
+                    "then\n" +
+                    "end\n";
+
+    @Test
+    void parse_deliversStatementsInOrder() {
+        List<BaseDescr> descrs = new ArrayList<>();
+        List<String> packageNames = new ArrayList<>();
+
+        List<DRLParserError> errors = DRLStreamingParser.parse(drl, new DRLStatementConsumer() {
+            @Override
+            public void onPackage(String packageName) {
+                packageNames.add(packageName);
+            }
+
+            @Override
+            public void onImport(ImportDescr importDescr) {
+                descrs.add(importDescr);
+            }
+
+            @Override
+            public void onGlobal(GlobalDescr globalDescr) {
+                descrs.add(globalDescr);
+            }
+
+            @Override
+            public void onFunction(FunctionDescr functionDescr) {
+                descrs.add(functionDescr);
+            }
+
+            @Override
+            public void onRule(RuleDescr ruleDescr) {
+                descrs.add(ruleDescr);
+            }
+        });
+
+        assertThat(errors).isEmpty();
+        assertThat(packageNames).containsExactly("org.test");
+        assertThat(descrs).hasSize(6);
+        assertThat(descrs.get(0)).isExactlyInstanceOf(ImportDescr.class);
+        assertThat(descrs.get(1)).isInstanceOf(FunctionImportDescr.class);
+        assertThat(descrs.get(2)).isInstanceOf(GlobalDescr.class);
+
+        FunctionDescr functionDescr = (FunctionDescr) descrs.get(3);
+        assertThat(functionDescr.getName()).isEqualTo("hello");
+        assertThat(functionDescr.getDialect()).isEqualTo("mvel");
+        assertThat(functionDescr.getBody()).isEqualToIgnoringWhitespace("{ return name.toUpperCase(); }");
+
+        assertThat(((RuleDescr) descrs.get(4)).getName()).isEqualTo("R1");
+        assertThat(((RuleDescr) descrs.get(5)).getName()).isEqualTo("R2");
+    }
+
+    @Test
+    void parse_producesSameDescrsAsFullParse() {
+        PackageDescr packageDescr = parse(drl);
+
+        List<RuleDescr> rules = new ArrayList<>();
+        DRLStreamingParser.parse(drl, new DRLStatementConsumer() {
+            @Override
+            public void onRule(RuleDescr ruleDescr) {
+                rules.add(ruleDescr);
+            }
+        });
+
+        assertThat(rules).hasSameSizeAs(packageDescr.getRules());
+        for (int i = 0; i < rules.size(); i++) {
+            RuleDescr expected = packageDescr.getRules().get(i);
+            RuleDescr actual = rules.get(i);
+            assertThat(actual.getName()).isEqualTo(expected.getName());
+            assertThat(actual.getLhs().toString()).isEqualTo(expected.getLhs().toString());
+            assertThat(actual.getConsequence()).isEqualTo(expected.getConsequence());
+        }
+    }
+
+    @Test
+    void parse_continuesAfterBrokenStatement() {
+        String brokenDrl =
+                "package org.test;\n" +
+                        "rule R1 when\n" +
+                        "  Person( age >= )\n" +
+                        "then\n" +
+                        "end\n" +
+                        "rule R2 when\n" +
+                        "  Person()\n" +
+                        "then\n" +
+                        "end\n";
+
+        List<String> ruleNames = new ArrayList<>();
+        List<DRLParserError> errors = DRLStreamingParser.parse(brokenDrl, new DRLStatementConsumer() {
+            @Override
+            public void onRule(RuleDescr ruleDescr) {
+                ruleNames.add(ruleDescr.getName());
+            }
+        });
+
+        assertThat(errors).isNotEmpty();
+        assertThat(ruleNames).contains("R2");
+    }
+}
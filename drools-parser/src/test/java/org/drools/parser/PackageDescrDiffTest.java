@@ -0,0 +1,103 @@
+package org.drools.parser;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.drools.drl.ast.descr.BaseDescr;
+import org.drools.drl.ast.descr.ExprConstraintDescr;
+import org.drools.drl.ast.descr.PatternDescr;
+import org.drools.drl.ast.descr.RuleDescr;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.drools.parser.DRLParserHelper.createParseTree;
+
+class PackageDescrDiffTest {
+
+    private static final String drl =
+            "package org.test;\n" +
+                    "import org.test.model.Person;\n" +
+                    "global String result;\n" +
+                    "rule R1 when\n" +
+                    "  $p:Person( age >= 18 )\n" +
+                    "then\n" +
+                    "  System.out.println($p.getName());\n" +
+                    "end\n" +
+                    "rule R2 when\n" +
+                    "  Person( age < 18 )\n" +
+                    "then\n" +
+                    "end\n" +
+                    "rule R3 when\n" +
+                    "  Person()\n" +
+                    "then\n" +
+                    "end\n";
+
+    @Test
+    void fingerprint_ignoresWhitespacesAndComments() {
+        String reformatted = drl.replace("rule R1 when\n", "// a comment\nrule   R1\n  when\n")
+                .replace("age >= 18", "age>=18");
+
+        StatementFingerprints original = StatementFingerprints.of(createParseTree(drl));
+        StatementFingerprints formatted = StatementFingerprints.of(createParseTree(reformatted));
+
+        assertThat(original.size()).isEqualTo(5);
+        StatementKey r1 = new StatementKey(StatementKey.Kind.RULE, "R1");
+        assertThat(formatted.get(r1).getFingerprint()).isEqualTo(original.get(r1).getFingerprint());
+        assertThat(formatted.get(r1).getStartCharacter()).isNotEqualTo(original.get(r1).getStartCharacter());
+    }
+
+    @Test
+    void diff_sameDocument() {
+        assertThat(PackageDescrDiff.diff(drl, drl).isEmpty()).isTrue();
+    }
+
+    @Test
+    void diff_addedRemovedModified() {
+        String changed = drl.replace("age < 18", "age < 21")
+                .replace("global String result;\n", "global Integer counter;\n")
+                .replace("rule R3", "rule R4");
+
+        PackageDescrDiff diff = PackageDescrDiff.diff(drl, changed);
+
+        assertThat(keys(diff.getModified())).containsExactly("RULE:R2");
+        assertThat(keys(diff.getRemoved())).containsExactly("GLOBAL:result", "RULE:R3");
+        assertThat(keys(diff.getAdded())).containsExactly("GLOBAL:counter", "RULE:R4");
+        assertThat(diff.getMoved()).isEmpty();
+
+        PackageDescrDiff.Entry modified = diff.getModified().get(0);
+        assertThat(constraintOf(modified.getBefore())).isEqualTo("age < 18");
+        assertThat(constraintOf(modified.getAfter())).isEqualTo("age < 21");
+    }
+
+    @Test
+    void diff_moved() {
+        String r1 = drl.substring(drl.indexOf("rule R1"), drl.indexOf("rule R2"));
+        String moved = drl.replace(r1, "") + r1;
+
+        PackageDescrDiff diff = PackageDescrDiff.diff(drl, moved);
+
+        assertThat(keys(diff.getMoved())).containsExactly("RULE:R1");
+        assertThat(diff.getAdded()).isEmpty();
+        assertThat(diff.getRemoved()).isEmpty();
+        assertThat(diff.getModified()).isEmpty();
+    }
+
+    @Test
+    void diff_duplicatedRuleNames() {
+        String duplicated = drl.replace("rule R3", "rule R2");
+
+        PackageDescrDiff diff = PackageDescrDiff.diff(drl, duplicated);
+
+        assertThat(keys(diff.getRemoved())).containsExactly("RULE:R3");
+        assertThat(keys(diff.getAdded())).containsExactly("RULE:R2#1");
+    }
+
+    private String constraintOf(BaseDescr ruleDescr) {
+        PatternDescr patternDescr = (PatternDescr) ((RuleDescr) ruleDescr).getLhs().getDescrs().get(0);
+        return ((ExprConstraintDescr) patternDescr.getConstraint().getDescrs().get(0)).getExpression();
+    }
+
+    private List<String> keys(List<PackageDescrDiff.Entry> entries) {
+        return entries.stream().map(PackageDescrDiff.Entry::toString).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+package org.drools.parser;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RopeTest {
+
+    private static final String drl =
+            "package org.test;\n" +
+                    "rule R1 when\n" +
+                    "  $p : Person( name == \"Mario\" )\n" +
+                    "then\n" +
+                    "  System.out.println($p);\n" +
+                    "end\n";
+
+    @Test
+    void replace_sameAsString() {
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder(drl.repeat(200));
+        Rope rope = Rope.of(expected);
+        for (int i = 0; i < 5000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + random.nextInt(5));
+            String inserted = random.nextInt(3) == 0 ? "" : "x\n".substring(random.nextInt(2));
+            expected.replace(start, end, inserted);
+            rope = rope.replace(start, end, inserted);
+        }
+        assertThat(rope.toString()).isEqualTo(expected.toString());
+        assertThat(rope.length()).isEqualTo(expected.length());
+        assertThat(rope.getLineCount()).isEqualTo(expected.toString().split("\n", -1).length);
+        // still balanced after thousands of edits
+        assertThat(rope.height()).isLessThanOrEqualTo(20);
+        StringBuilder chunks = new StringBuilder();
+        rope.forEachChunk(chunk -> {
+            assertThat(chunk.length()).isBetween(1, Rope.MAX_CHUNK);
+            chunks.append(chunk);
+        });
+        assertThat(chunks.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void offsetOf() {
+        Rope rope = Rope.of(drl);
+        assertThat(rope.offsetOf(0, 0)).isZero();
+        assertThat(rope.offsetOf(1, 5)).isEqualTo(drl.indexOf("R1"));
+        assertThat(rope.offsetOf(1, 100)).isEqualTo(drl.indexOf('\n', drl.indexOf("rule"))); // clamped to the line end
+        assertThat(rope.offsetOf(100, 0)).isEqualTo(drl.length());
+    }
+
+    @Test
+    void charStream_lexesAsString() {
+        Rope rope = Rope.of(drl.repeat(20)).insert(3, "// comment\n");
+        List<String> expected = tokens(new DRLLexer(CharStreams.fromString(rope.toString())));
+        assertThat(tokens(new DRLLexer(new RopeCharStream(rope)))).isEqualTo(expected);
+    }
+
+    private static List<String> tokens(DRLLexer lexer) {
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        tokens.fill();
+        return tokens.getTokens().stream()
+                .map(token -> token.getType() + ":" + token.getStartIndex() + ":" + (token.getType() == Token.EOF ? "" : token.getText()))
+                .collect(Collectors.toList());
+    }
+}
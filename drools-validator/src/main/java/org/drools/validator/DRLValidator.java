@@ -0,0 +1,120 @@
+package org.drools.validator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.drools.parser.ConcurrentDRLParser;
+
+/**
+ * Validates all the .drl files found walking the given paths. Files are parsed in parallel on a work-stealing pool
+ * while the directory trees are still being walked, and at most a few files per thread are in flight at any time,
+ * so memory stays bounded regardless of how many files are validated.
+ */
+public class DRLValidator {
+
+    private static final int IN_FLIGHT_FILES_PER_THREAD = 4;
+
+    private static final ConcurrentDRLParser PARSER = new ConcurrentDRLParser();
+
+    private final int parallelism;
+    private final ValidationReporter reporter;
+
+    public DRLValidator(int parallelism, ValidationReporter reporter) {
+        this.parallelism = parallelism;
+        this.reporter = reporter;
+    }
+
+    public ValidationSummary validate(List<Path> paths) throws IOException, InterruptedException {
+        LongAdder fileCount = new LongAdder();
+        LongAdder byteCount = new LongAdder();
+        LongAdder errorCount = new LongAdder();
+        LongAdder filesWithErrorsCount = new LongAdder();
+        LongAdder failedFileCount = new LongAdder();
+        AtomicReference<Throwable> reportFailure = new AtomicReference<>();
+
+        int maxInFlight = parallelism * IN_FLIGHT_FILES_PER_THREAD;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        long start = System.nanoTime();
+        reporter.start();
+        try {
+            for (Path path : paths) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    Iterator<Path> drlFiles = files.filter(DRLValidator::isDrlFile).iterator();
+                    while (drlFiles.hasNext() && reportFailure.get() == null) {
+                        Path drlFile = drlFiles.next();
+                        inFlight.acquire();
+                        pool.execute(() -> {
+                            try {
+                                FileValidation validation;
+                                try {
+                                    validation = validateFile(drlFile);
+                                } catch (Throwable t) {
+                                    // a parser bug, or a stack overflow on a deeply nested rule, fails this file only
+                                    validation = new FileValidation(drlFile, t);
+                                }
+                                fileCount.increment();
+                                byteCount.add(validation.getSizeInBytes());
+                                if (validation.isFailed()) {
+                                    failedFileCount.increment();
+                                }
+                                if (!validation.getErrors().isEmpty()) {
+                                    filesWithErrorsCount.increment();
+                                    errorCount.add(validation.getErrors().size());
+                                }
+                                reporter.report(validation);
+                            } catch (Throwable t) {
+                                reportFailure.compareAndSet(null, t);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            // all permits back means all the submitted files have been reported
+            inFlight.acquire(maxInFlight);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Throwable failure = reportFailure.get();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new IOException("Unable to report validation results", failure);
+        }
+
+        ValidationSummary summary = new ValidationSummary(fileCount.sum(), byteCount.sum(), errorCount.sum(),
+                                                          filesWithErrorsCount.sum(), failedFileCount.sum(), System.nanoTime() - start);
+        reporter.finish(summary);
+        return summary;
+    }
+
+    static FileValidation validateFile(Path drlFile) {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(drlFile);
+        } catch (IOException e) {
+            return new FileValidation(drlFile, e);
+        }
+        return new FileValidation(drlFile, content.length, PARSER.parse(new String(content, StandardCharsets.UTF_8)).getErrors());
+    }
+
+    private static boolean isDrlFile(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().endsWith(".drl") && Files.isRegularFile(path);
+    }
+}
@@ -0,0 +1,71 @@
+package org.drools.validator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.drools.parser.DRLParserError;
+
+public class FileValidation {
+
+    private final Path path;
+    private final long sizeInBytes;
+    private final List<DRLParserError> errors;
+    private final Throwable failure;
+
+    public FileValidation(Path path, long sizeInBytes, List<DRLParserError> errors) {
+        this(path, sizeInBytes, errors, null);
+    }
+
+    public FileValidation(Path path, Throwable failure) {
+        this(path, 0, List.of(), failure);
+    }
+
+    private FileValidation(Path path, long sizeInBytes, List<DRLParserError> errors, Throwable failure) {
+        this.path = path;
+        this.sizeInBytes = sizeInBytes;
+        this.errors = errors;
+        this.failure = failure;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the path with '/' separators, as expected by both report formats
+     */
+    public String getUri() {
+        return path.toString().replace('\\', '/');
+    }
+
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public List<DRLParserError> getErrors() {
+        return errors;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return true if the file couldn't be read or the parser failed on it, so it couldn't be validated at all
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    public String getFailureMessage() {
+        return (failure instanceof IOException ? "Unable to read file: " : "Unable to validate file: ") + failure;
+    }
+
+    public static String messageOf(DRLParserError error) {
+        if (error.getMessage() != null) {
+            return error.getMessage();
+        }
+        return error.getException() != null ? error.getException().toString() : "Unknown error";
+    }
+}
@@ -0,0 +1,44 @@
+package org.drools.validator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.drools.parser.DRLParserError;
+
+import static org.drools.validator.JsonUtils.quote;
+
+/**
+ * Writes one JSON object per line for each error, e.g.
+ * <pre>{"file":"rules/a.drl","line":3,"column":12,"message":"mismatched input ..."}</pre>
+ */
+public class JsonLinesReporter implements ValidationReporter {
+
+    private final Writer writer;
+
+    public JsonLinesReporter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public synchronized void report(FileValidation fileValidation) throws IOException {
+        if (fileValidation.isFailed()) {
+            writer.write("{\"file\":" + quote(fileValidation.getUri()) +
+                                 ",\"message\":" + quote(fileValidation.getFailureMessage()) + "}\n");
+        }
+        for (DRLParserError error : fileValidation.getErrors()) {
+            // errors raised while building the descrs don't have a position
+            writer.write("{\"file\":" + quote(fileValidation.getUri()) +
+                                 (error.getLineNumber() > 0 ? ",\"line\":" + error.getLineNumber() + ",\"column\":" + error.getColumn() : "") +
+                                 ",\"message\":" + quote(FileValidation.messageOf(error)) + "}\n");
+        }
+    }
+
+    @Override
+    public synchronized void finish(ValidationSummary summary) throws IOException {
+        writer.flush();
+    }
+}
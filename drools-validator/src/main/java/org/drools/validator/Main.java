@@ -0,0 +1,95 @@
+package org.drools.validator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line entry point, e.g.
+ * <pre>java -jar drools-validator.jar --format sarif --threads 8 src/main/resources</pre>
+ * Errors are written to the standard output, the throughput summary to the standard error.
+ * The exit code is 0 when no error is found, 1 when some file has errors and 2 on failures or invalid arguments.
+ */
+public class Main {
+
+    private static final String USAGE = "Usage: drools-validator [--format jsonl|sarif] [--threads N] <path>...";
+
+    public static void main(String[] args) {
+        System.exit(run(args, new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))));
+    }
+
+    static int run(String[] args, Writer out) {
+        String format = "jsonl";
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> paths = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format":
+                        format = args[++i];
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--help":
+                        System.err.println(USAGE);
+                        return ValidationSummary.EXIT_OK;
+                    default:
+                        paths.add(Paths.get(args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return usageError("Invalid arguments");
+        }
+
+        if (paths.isEmpty()) {
+            return usageError("No path to validate");
+        }
+        if (threads < 1) {
+            return usageError("--threads must be positive");
+        }
+        for (Path path : paths) {
+            if (!Files.exists(path)) {
+                return usageError("Path not found: " + path);
+            }
+        }
+
+        ValidationReporter reporter;
+        switch (format) {
+            case "jsonl":
+                reporter = new JsonLinesReporter(out);
+                break;
+            case "sarif":
+                reporter = new SarifReporter(out);
+                break;
+            default:
+                return usageError("Unknown format: " + format);
+        }
+
+        try {
+            ValidationSummary summary = new DRLValidator(threads, reporter).validate(paths);
+            System.err.println(summary);
+            return summary.getExitCode();
+        } catch (IOException e) {
+            System.err.println("Validation failed: " + e);
+            return ValidationSummary.EXIT_FAILURE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ValidationSummary.EXIT_FAILURE;
+        }
+    }
+
+    private static int usageError(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        return ValidationSummary.EXIT_FAILURE;
+    }
+}
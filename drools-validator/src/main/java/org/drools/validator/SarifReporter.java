@@ -0,0 +1,64 @@
+package org.drools.validator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.drools.parser.DRLParserError;
+
+import static org.drools.validator.JsonUtils.quote;
+
+/**
+ * Writes a SARIF 2.1.0 log with a single run. Results are appended to the log as they are reported,
+ * so nothing but the current result is kept in memory.
+ */
+public class SarifReporter implements ValidationReporter {
+
+    static final String SYNTAX_RULE_ID = "DRL-SYNTAX";
+    static final String READ_RULE_ID = "DRL-READ";
+
+    private final Writer writer;
+    private boolean firstResult = true;
+
+    public SarifReporter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        writer.write("{\"version\":\"2.1.0\"," +
+                             "\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\"," +
+                             "\"runs\":[{\"tool\":{\"driver\":{\"name\":\"drools-validator\",\"rules\":[" +
+                             "{\"id\":\"" + SYNTAX_RULE_ID + "\",\"shortDescription\":{\"text\":\"DRL syntax error\"}}," +
+                             "{\"id\":\"" + READ_RULE_ID + "\",\"shortDescription\":{\"text\":\"DRL file cannot be read or validated\"}}" +
+                             "]}},\"results\":[\n");
+    }
+
+    @Override
+    public synchronized void report(FileValidation fileValidation) throws IOException {
+        if (fileValidation.isFailed()) {
+            writeResult(READ_RULE_ID, fileValidation.getFailureMessage(), fileValidation.getUri(), 0, 0);
+        }
+        for (DRLParserError error : fileValidation.getErrors()) {
+            writeResult(SYNTAX_RULE_ID, FileValidation.messageOf(error), fileValidation.getUri(), error.getLineNumber(), error.getColumn());
+        }
+    }
+
+    private void writeResult(String ruleId, String message, String uri, int line, int column) throws IOException {
+        if (!firstResult) {
+            writer.write(",\n");
+        }
+        firstResult = false;
+        writer.write("{\"ruleId\":\"" + ruleId + "\",\"level\":\"error\"," +
+                             "\"message\":{\"text\":" + quote(message) + "}," +
+                             "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":" + quote(uri) + "}" +
+                             // SARIF lines and columns are 1-based, while ANTLR columns are 0-based
+                             (line > 0 ? ",\"region\":{\"startLine\":" + line + ",\"startColumn\":" + (column + 1) + "}" : "") +
+                             "}}]}");
+    }
+
+    @Override
+    public synchronized void finish(ValidationSummary summary) throws IOException {
+        writer.write("\n]}]}\n");
+        writer.flush();
+    }
+}
@@ -0,0 +1,16 @@
+package org.drools.validator;
+
+import java.io.IOException;
+
+/**
+ * Streams the outcome of a validation. {@link #report(FileValidation)} is invoked concurrently by the validating
+ * threads, as soon as each file has been parsed, so implementations must be thread-safe.
+ */
+public interface ValidationReporter {
+
+    void start() throws IOException;
+
+    void report(FileValidation fileValidation) throws IOException;
+
+    void finish(ValidationSummary summary) throws IOException;
+}
@@ -0,0 +1,74 @@
+package org.drools.validator;
+
+public class ValidationSummary {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_ERRORS_FOUND = 1;
+    public static final int EXIT_FAILURE = 2;
+
+    private final long fileCount;
+    private final long byteCount;
+    private final long errorCount;
+    private final long filesWithErrorsCount;
+    private final long failedFileCount;
+    private final long elapsedNanos;
+
+    public ValidationSummary(long fileCount, long byteCount, long errorCount, long filesWithErrorsCount, long failedFileCount, long elapsedNanos) {
+        this.fileCount = fileCount;
+        this.byteCount = byteCount;
+        this.errorCount = errorCount;
+        this.filesWithErrorsCount = filesWithErrorsCount;
+        this.failedFileCount = failedFileCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public long getFilesWithErrorsCount() {
+        return filesWithErrorsCount;
+    }
+
+    public long getFailedFileCount() {
+        return failedFileCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getFilesPerSecond() {
+        return elapsedNanos == 0 ? 0 : fileCount * 1_000_000_000d / elapsedNanos;
+    }
+
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : (byteCount / (1024d * 1024d)) * 1_000_000_000d / elapsedNanos;
+    }
+
+    /**
+     * @return {@link #EXIT_FAILURE} if some file couldn't be read or validated, {@link #EXIT_ERRORS_FOUND} if some file has errors,
+     * {@link #EXIT_OK} otherwise
+     */
+    public int getExitCode() {
+        if (failedFileCount > 0) {
+            return EXIT_FAILURE;
+        }
+        return errorCount > 0 ? EXIT_ERRORS_FOUND : EXIT_OK;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Validated %d files (%.2f MB) in %.3f s: %.1f files/s, %.2f MB/s, %d errors in %d files, %d failed files",
+                             fileCount, byteCount / (1024d * 1024d), elapsedNanos / 1_000_000_000d, getFilesPerSecond(),
+                             getMegabytesPerSecond(), errorCount, filesWithErrorsCount, failedFileCount);
+    }
+}
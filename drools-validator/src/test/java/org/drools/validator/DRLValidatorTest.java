@@ -0,0 +1,132 @@
+package org.drools.validator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DRLValidatorTest {
+
+    private static final String VALID_DRL =
+            "package org.test;\n" +
+                    "rule R1 when\n" +
+                    "  Person( age >= 18 )\n" +
+                    "then\n" +
+                    "end\n";
+
+    private static final String INVALID_DRL =
+            "package org.test;\n" +
+                    "rule R1 when\n" +
+                    "  Person( age >= )\n" +
+                    "then\n" +
+                    "end\n";
+
+    @TempDir
+    Path root;
+
+    @Test
+    void validate_validFiles() throws IOException {
+        writeFile("a.drl", VALID_DRL);
+        writeFile("nested/b.drl", VALID_DRL);
+        writeFile("nested/not-a-rule.txt", INVALID_DRL);
+
+        StringWriter out = new StringWriter();
+        int exitCode = Main.run(new String[]{"--threads", "2", root.toString()}, out);
+
+        assertThat(exitCode).isEqualTo(ValidationSummary.EXIT_OK);
+        assertThat(out.toString()).isEmpty();
+    }
+
+    @Test
+    void validate_jsonLines() throws IOException {
+        writeFile("a.drl", VALID_DRL);
+        writeFile("nested/deeper/b.drl", INVALID_DRL);
+
+        StringWriter out = new StringWriter();
+        int exitCode = Main.run(new String[]{"--format", "jsonl", root.toString()}, out);
+
+        assertThat(exitCode).isEqualTo(ValidationSummary.EXIT_ERRORS_FOUND);
+        List<String> lines = out.toString().lines().collect(Collectors.toList());
+        assertThat(lines).isNotEmpty().allSatisfy(line -> assertThat(line).startsWith("{\"file\":").contains("nested/deeper/b.drl").endsWith("}"));
+        assertThat(lines.get(0)).contains("\"line\":3,\"column\":17");
+    }
+
+    @Test
+    void validate_sarif() throws IOException {
+        writeFile("b.drl", INVALID_DRL);
+
+        StringWriter out = new StringWriter();
+        int exitCode = Main.run(new String[]{"--format", "sarif", root.toString()}, out);
+
+        assertThat(exitCode).isEqualTo(ValidationSummary.EXIT_ERRORS_FOUND);
+        String sarif = out.toString();
+        assertThat(sarif).startsWith("{\"version\":\"2.1.0\"")
+                .contains("\"ruleId\":\"" + SarifReporter.SYNTAX_RULE_ID + "\"", "b.drl\"}", "\"startLine\":3")
+                .endsWith("]}]}\n");
+    }
+
+    @Test
+    void validate_summary() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            writeFile("dir" + (i % 3) + "/rule" + i + ".drl", i % 5 == 0 ? INVALID_DRL : VALID_DRL);
+        }
+
+        ValidationSummary summary = new DRLValidator(4, new JsonLinesReporter(new StringWriter())).validate(List.of(root));
+
+        assertThat(summary.getFileCount()).isEqualTo(20);
+        assertThat(summary.getFilesWithErrorsCount()).isEqualTo(4);
+        assertThat(summary.getByteCount()).isEqualTo(16L * VALID_DRL.length() + 4L * INVALID_DRL.length());
+        assertThat(summary.getFilesPerSecond()).isPositive();
+    }
+
+    @Test
+    void validate_reporterFailure() throws IOException {
+        writeFile("a.drl", VALID_DRL);
+        writeFile("b.drl", INVALID_DRL);
+
+        ValidationReporter failingReporter = new JsonLinesReporter(new StringWriter()) {
+            @Override
+            public synchronized void report(FileValidation fileValidation) {
+                throw new IllegalStateException("broken reporter");
+            }
+        };
+
+        assertThatThrownBy(() -> new DRLValidator(2, failingReporter).validate(List.of(root)))
+                .isInstanceOf(IOException.class)
+                .hasRootCauseMessage("broken reporter");
+    }
+
+    @Test
+    void failedFile_exitCode() {
+        FileValidation failed = new FileValidation(root.resolve("a.drl"), new StackOverflowError());
+        assertThat(failed.isFailed()).isTrue();
+        assertThat(failed.getFailureMessage()).startsWith("Unable to validate file: ");
+        assertThat(new ValidationSummary(1, 0, 0, 0, 1, 1).getExitCode()).isEqualTo(ValidationSummary.EXIT_FAILURE);
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThat(Main.run(new String[]{}, new StringWriter())).isEqualTo(ValidationSummary.EXIT_FAILURE);
+        assertThat(Main.run(new String[]{"--format", "xml", root.toString()}, new StringWriter())).isEqualTo(ValidationSummary.EXIT_FAILURE);
+        assertThat(Main.run(new String[]{root.resolve("missing").toString()}, new StringWriter())).isEqualTo(ValidationSummary.EXIT_FAILURE);
+    }
+
+    @Test
+    void jsonQuote() {
+        assertThat(JsonUtils.quote("a \"b\"\n\\c")).isEqualTo("\"a \\\"b\\\"\\n\\\\c\"");
+    }
+
+    private void writeFile(String relativePath, String content) throws IOException {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}